@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.TxOptions;
+import griffon.plugins.ebean.benchmarks.domain.Item;
+import io.ebean.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts {@code rows} beans per invocation through {@code DatabaseHandler}, with and without
+ * JDBC batching, inside a single transaction.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BatchInsertBenchmark {
+    @Param({"100", "1000"})
+    public int rows;
+
+    @Param({"50"})
+    public int batchSize;
+
+    private BenchmarkApplication application;
+    private DatabaseHandler databaseHandler;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        System.setProperty("griffon.ebean.benchmarks.eager", "true");
+        application = BenchmarkApplication.start();
+        databaseHandler = application.getInstance(DatabaseHandler.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        databaseHandler.withEbean((databaseName, database) -> database.find(Item.class).delete());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.stop();
+    }
+
+    @Benchmark
+    public int batchedInsert() {
+        return insert(true);
+    }
+
+    @Benchmark
+    public int rowByRowInsert() {
+        return insert(false);
+    }
+
+    @Benchmark
+    public int transactionalInsert() {
+        return databaseHandler.withEbeanTransaction(TxOptions.defaults().withBatchSize(batchSize), (databaseName, database) -> {
+            for (int i = 0; i < rows; i++) {
+                database.save(new Item("item-" + i, i));
+            }
+            return rows;
+        });
+    }
+
+    private int insert(boolean batched) {
+        return databaseHandler.withEbean((databaseName, database) -> {
+            try (Transaction transaction = database.beginTransaction()) {
+                transaction.setBatchMode(batched);
+                transaction.setBatchSize(batchSize);
+                for (int i = 0; i < rows; i++) {
+                    database.save(new Item("item-" + i, i), transaction);
+                }
+                transaction.commit();
+            }
+            return rows;
+        });
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.ApplicationBootstrapper;
+import griffon.core.GriffonApplication;
+import org.codehaus.griffon.runtime.core.DefaultApplicationBootstrapper;
+import org.codehaus.griffon.runtime.core.DefaultGriffonApplication;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Boots a headless Griffon application configured with the {@code DataSource} and {@code Ebean}
+ * resources found in the benchmark classpath.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class BenchmarkApplication {
+    private final GriffonApplication application;
+
+    private BenchmarkApplication(@Nonnull GriffonApplication application) {
+        this.application = requireNonNull(application, "Argument 'application' must not be null");
+    }
+
+    @Nonnull
+    static BenchmarkApplication start() throws Exception {
+        GriffonApplication application = new DefaultGriffonApplication(new String[0]);
+        ApplicationBootstrapper bootstrapper = new DefaultApplicationBootstrapper(application);
+        bootstrapper.bootstrap();
+        bootstrapper.run();
+        return new BenchmarkApplication(application);
+    }
+
+    @Nonnull
+    <T> T getInstance(@Nonnull Class<T> type) {
+        return application.getInjector().getInstance(type);
+    }
+
+    void stop() {
+        application.shutdown();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.util.GriffonClassUtils;
+import io.ebean.config.DatabaseConfig;
+import org.codehaus.griffon.runtime.ebean.DatabaseConfigBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the property binding step of {@code DefaultDatabaseFactory.create} scales with the
+ * number of entries in a {@code database} configuration block, comparing reflective binding through
+ * {@code GriffonClassUtils} with the method handles cached by {@code DatabaseConfigBinder}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DatabaseConfigBindingBenchmark {
+    private static final Map<String, Object> ENTRIES = new LinkedHashMap<>();
+
+    static {
+        ENTRIES.put("queryBatchSize", 100);
+        ENTRIES.put("lazyLoadBatchSize", 10);
+        ENTRIES.put("persistBatchSize", 20);
+        ENTRIES.put("jdbcFetchSizeFindList", 0);
+        ENTRIES.put("jdbcFetchSizeFindEach", 100);
+        ENTRIES.put("cacheMaxSize", 10000);
+        ENTRIES.put("cacheMaxIdleTime", 600);
+        ENTRIES.put("cacheMaxTimeToLive", 21600);
+        ENTRIES.put("queryCacheMaxSize", 1000);
+        ENTRIES.put("queryCacheMaxIdleTime", 600);
+        ENTRIES.put("queryCacheMaxTimeToLive", 21600);
+        ENTRIES.put("databaseSequenceBatchSize", 20);
+        ENTRIES.put("expressionNativeIlike", false);
+        ENTRIES.put("updateChangesOnly", true);
+        ENTRIES.put("updateAllPropertiesInBatch", false);
+        ENTRIES.put("collectQueryOrigins", true);
+        ENTRIES.put("collectQueryStatsByNode", true);
+        ENTRIES.put("dbOffline", false);
+        ENTRIES.put("ddlExtra", true);
+        ENTRIES.put("maxCallStack", 5);
+        ENTRIES.put("skipCacheAfterWrite", true);
+        ENTRIES.put("disableLazyLoading", false);
+        ENTRIES.put("eagerFetchLobs", false);
+        ENTRIES.put("register", true);
+    }
+
+    @Param({"0", "8", "24"})
+    public int entries;
+
+    private Map<String, Object> config;
+
+    @Setup
+    public void setup() {
+        config = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, Object>> iterator = ENTRIES.entrySet().iterator();
+        for (int i = 0; i < entries && iterator.hasNext(); i++) {
+            Map.Entry<String, Object> e = iterator.next();
+            config.put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Benchmark
+    public DatabaseConfig bind() {
+        DatabaseConfig databaseConfig = new DatabaseConfig();
+        for (Map.Entry<String, Object> e : config.entrySet()) {
+            GriffonClassUtils.setPropertyValue(databaseConfig, e.getKey(), e.getValue());
+        }
+        return databaseConfig;
+    }
+
+    @Benchmark
+    public DatabaseConfig bindWithBinder() {
+        DatabaseConfig databaseConfig = new DatabaseConfig();
+        for (Map.Entry<String, Object> e : config.entrySet()) {
+            DatabaseConfigBinder.bind(databaseConfig, e.getKey(), e.getValue());
+        }
+        return databaseConfig;
+    }
+}
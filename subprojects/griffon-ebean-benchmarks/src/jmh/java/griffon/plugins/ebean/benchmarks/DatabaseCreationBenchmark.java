@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.plugins.ebean.DatabaseHandler;
+import io.ebean.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lazy creation path of {@code DatabaseHandler}: the first call after a database
+ * has been closed creates its {@code DataSource}, runs DDL and builds a new {@code Database}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class DatabaseCreationBenchmark {
+    private BenchmarkApplication application;
+    private DatabaseHandler databaseHandler;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        System.setProperty("griffon.ebean.benchmarks.eager", "false");
+        application = BenchmarkApplication.start();
+        databaseHandler = application.getInstance(DatabaseHandler.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void close() {
+        databaseHandler.closeEbean();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.stop();
+    }
+
+    @Benchmark
+    public Database lazyCreation() {
+        return databaseHandler.withEbean((databaseName, database) -> database);
+    }
+}
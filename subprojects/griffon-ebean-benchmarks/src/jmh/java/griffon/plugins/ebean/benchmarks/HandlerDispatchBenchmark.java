@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.plugins.ebean.DatabaseCallback;
+import griffon.plugins.ebean.DatabaseHandler;
+import io.ebean.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead {@code DatabaseHandler} adds on top of invoking a callback directly
+ * with an already connected {@code Database}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HandlerDispatchBenchmark {
+    private static final DatabaseCallback<Database> CALLBACK = (databaseName, database) -> database;
+
+    private BenchmarkApplication application;
+    private DatabaseHandler databaseHandler;
+    private Database database;
+
+    @Setup
+    public void setup() throws Exception {
+        application = BenchmarkApplication.start();
+        databaseHandler = application.getInstance(DatabaseHandler.class);
+        database = databaseHandler.withEbean(CALLBACK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.stop();
+    }
+
+    @Benchmark
+    public Database directCallback() {
+        return CALLBACK.handle("default", database);
+    }
+
+    @Benchmark
+    public Database withEbean() {
+        return databaseHandler.withEbean(CALLBACK);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Database withEbeanContended() {
+        return databaseHandler.withEbean(CALLBACK);
+    }
+
+    @Benchmark
+    public Database withEbeanAsync() {
+        return databaseHandler.withEbeanAsync(CALLBACK).join();
+    }
+}
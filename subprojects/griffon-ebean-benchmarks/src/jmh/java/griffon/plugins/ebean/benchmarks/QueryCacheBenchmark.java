@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.benchmarks.domain.Item;
+import io.ebean.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same query through {@code DatabaseHandler} hitting the query cache, missing it
+ * (the cache is cleared before the query) and bypassing it.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class QueryCacheBenchmark {
+    private static final int ROWS = 1000;
+
+    private BenchmarkApplication application;
+    private DatabaseHandler databaseHandler;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("griffon.ebean.benchmarks.eager", "true");
+        application = BenchmarkApplication.start();
+        databaseHandler = application.getInstance(DatabaseHandler.class);
+        databaseHandler.withEbean((databaseName, database) -> {
+            List<Item> items = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                items.add(new Item("item-" + i, i));
+            }
+            return database.saveAll(items);
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.stop();
+    }
+
+    @Benchmark
+    public List<Item> queryCacheHit() {
+        return databaseHandler.withEbean((databaseName, database) -> query(database, true));
+    }
+
+    @Benchmark
+    public List<Item> queryCacheMiss() {
+        return databaseHandler.withEbean((databaseName, database) -> {
+            database.getServerCacheManager().clear(Item.class);
+            return query(database, true);
+        });
+    }
+
+    @Benchmark
+    public List<Item> queryCacheBypassed() {
+        return databaseHandler.withEbean((databaseName, database) -> query(database, false));
+    }
+
+    private static List<Item> query(Database database, boolean useQueryCache) {
+        return database.find(Item.class)
+            .where().ge("quantity", ROWS / 2)
+            .setUseQueryCache(useQueryCache)
+            .findList();
+    }
+}
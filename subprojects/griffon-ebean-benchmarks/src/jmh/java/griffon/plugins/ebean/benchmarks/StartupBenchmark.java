@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.benchmarks;
+
+import griffon.plugins.ebean.DatabaseHandler;
+import io.ebean.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares where the cost of connecting a {@code Database} lands when {@code connect_on_startup}
+ * is disabled (paid by the first call) and when it is enabled (paid by the {@code Startup} phase),
+ * with and without the metadata cache. The cache is filled by the first warmup iteration.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"false", "true"})
+    public boolean connectOnStartup;
+
+    @Param({"false", "true"})
+    public boolean metadataCache;
+
+    private BenchmarkApplication application;
+    private Path metadataDirectory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        metadataDirectory = Files.createTempDirectory("ebean-metadata");
+        System.setProperty("griffon.ebean.benchmarks.eager", String.valueOf(connectOnStartup));
+        System.setProperty("griffon.ebean.benchmarks.metadata_cache", String.valueOf(metadataCache));
+        System.setProperty("griffon.ebean.benchmarks.metadata_directory", metadataDirectory.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(metadataDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        if (application != null) {
+            application.stop();
+            application = null;
+        }
+    }
+
+    @Benchmark
+    public BenchmarkApplication startup() throws Exception {
+        application = BenchmarkApplication.start();
+        return application;
+    }
+
+    @Benchmark
+    public Database startupAndFirstCall() throws Exception {
+        application = BenchmarkApplication.start();
+        return application.getInstance(DatabaseHandler.class)
+            .withEbean((databaseName, database) -> database);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.exceptions.BulkImportException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings of {@code DatabaseHandler.bulkImport()}. Instances are immutable.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class BulkImportOptions {
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final BulkImportOptions DEFAULTS = new BulkImportOptions(DEFAULT_CHUNK_SIZE, 1, 0L, Collections.<Long>emptySortedSet(), TxOptions.defaults());
+
+    private final int chunkSize;
+    private final int parallelism;
+    private final long startChunk;
+    private final SortedSet<Long> skippedChunks;
+    private final TxOptions txOptions;
+
+    private BulkImportOptions(int chunkSize, int parallelism, long startChunk, @Nonnull SortedSet<Long> skippedChunks, @Nonnull TxOptions txOptions) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.startChunk = startChunk;
+        this.skippedChunks = skippedChunks;
+        this.txOptions = txOptions;
+    }
+
+    /**
+     * Chunks of 1000 beans, imported one at a time from the first chunk.
+     */
+    @Nonnull
+    public static BulkImportOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Sets how many beans are saved per transaction.
+     */
+    @Nonnull
+    public BulkImportOptions withChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Argument 'chunkSize' must be greater than zero");
+        }
+        return new BulkImportOptions(chunkSize, parallelism, startChunk, skippedChunks, txOptions);
+    }
+
+    /**
+     * Sets how many chunks may be imported at the same time, each one holding its own connection.
+     * Chunks run on the executor of the database, so its {@code executor.threads} setting caps this value.
+     */
+    @Nonnull
+    public BulkImportOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Argument 'parallelism' must be greater than zero");
+        }
+        return new BulkImportOptions(chunkSize, parallelism, startChunk, skippedChunks, txOptions);
+    }
+
+    /**
+     * Skips the beans of every chunk before {@code startChunk}, as reported by {@code BulkImportException.getResumeChunk()}.
+     */
+    @Nonnull
+    public BulkImportOptions withStartChunk(long startChunk) {
+        if (startChunk < 0) {
+            throw new IllegalArgumentException("Argument 'startChunk' must not be negative");
+        }
+        return new BulkImportOptions(chunkSize, parallelism, startChunk, skippedChunks, txOptions);
+    }
+
+    /**
+     * Skips the beans of the given chunks, as reported by {@code BulkImportException.getCommittedChunks()}. Their
+     * indexes keep counting from the first chunk, skipped or not.
+     */
+    @Nonnull
+    public BulkImportOptions withSkippedChunks(@Nonnull Collection<Long> skippedChunks) {
+        requireNonNull(skippedChunks, "Argument 'skippedChunks' must not be null");
+        SortedSet<Long> chunks = new TreeSet<>();
+        for (Long chunk : skippedChunks) {
+            if (chunk == null || chunk < 0) {
+                throw new IllegalArgumentException("Argument 'skippedChunks' must not hold null or negative values");
+            }
+            chunks.add(chunk);
+        }
+        return new BulkImportOptions(chunkSize, parallelism, startChunk, Collections.unmodifiableSortedSet(chunks), txOptions);
+    }
+
+    /**
+     * Resumes a failed import: starts at its resume chunk and skips the chunks it committed past that point.
+     */
+    @Nonnull
+    public BulkImportOptions withResumeFrom(@Nonnull BulkImportException failure) {
+        requireNonNull(failure, "Argument 'failure' must not be null");
+        return withStartChunk(failure.getResumeChunk()).withSkippedChunks(failure.getCommittedChunks());
+    }
+
+    /**
+     * Sets the options of the transaction of each chunk. The JDBC batch size defaults to the chunk size.
+     */
+    @Nonnull
+    public BulkImportOptions withTxOptions(@Nonnull TxOptions txOptions) {
+        requireNonNull(txOptions, "Argument 'txOptions' must not be null");
+        return new BulkImportOptions(chunkSize, parallelism, startChunk, skippedChunks, txOptions);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getStartChunk() {
+        return startChunk;
+    }
+
+    @Nonnull
+    public SortedSet<Long> getSkippedChunks() {
+        return skippedChunks;
+    }
+
+    @Nonnull
+    public TxOptions getTxOptions() {
+        return txOptions;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportOptions[chunkSize=" + chunkSize +
+            ", parallelism=" + parallelism +
+            ", startChunk=" + startChunk +
+            ", skippedChunks=" + skippedChunks +
+            ", txOptions=" + txOptions + "]";
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a successful {@code DatabaseHandler.bulkImport()} call.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class BulkImportResult {
+    private final long rows;
+    private final long chunks;
+    private final long nextChunk;
+    private final long elapsedNanos;
+
+    public BulkImportResult(long rows, long chunks, long nextChunk, long elapsedNanos) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.nextChunk = nextChunk;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Number of rows committed by this run.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Number of chunks committed by this run.
+     */
+    public long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Index of the chunk following the last one imported.
+     */
+    public long getNextChunk() {
+        return nextChunk;
+    }
+
+    public long getElapsed(@Nonnull TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0d;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportResult[rows=" + rows +
+            ", chunks=" + chunks +
+            ", nextChunk=" + nextChunk +
+            ", elapsedMillis=" + getElapsed(TimeUnit.MILLISECONDS) +
+            ", rowsPerSecond=" + Math.round(getRowsPerSecond()) + "]";
+    }
+}
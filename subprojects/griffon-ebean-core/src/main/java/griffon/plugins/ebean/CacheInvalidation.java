@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tables of a database modified by a committed transaction on another node, whose cached beans and queries must be
+ * discarded.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class CacheInvalidation {
+    private final String databaseName;
+    private final Set<String> tables;
+
+    public CacheInvalidation(@Nonnull String databaseName, @Nonnull Set<String> tables) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(tables, "Argument 'tables' must not be null");
+        this.tables = Collections.unmodifiableSet(new LinkedHashSet<>(tables));
+    }
+
+    @Nonnull
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @Nonnull
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        CacheInvalidation that = (CacheInvalidation) o;
+        return databaseName.equals(that.databaseName) && tables.equals(that.tables);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(databaseName, tables);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidation[" + databaseName + ", " + tables + "]";
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries L2 cache invalidations between the nodes of a cluster. Invalidations sent by a node must be delivered to
+ * every other node, but not to the sender itself. Delivery is best effort.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface CacheInvalidationTransport {
+    /**
+     * Joins the cluster.
+     *
+     * @param receiver invoked with the invalidations sent by other nodes, possibly from a transport owned thread
+     */
+    void open(@Nonnull Consumer<List<CacheInvalidation>> receiver);
+
+    /**
+     * Sends a batch of invalidations to the other nodes.
+     */
+    void send(@Nonnull List<CacheInvalidation> invalidations);
+
+    /**
+     * Leaves the cluster. No invalidations are received afterwards.
+     */
+    void close();
+}
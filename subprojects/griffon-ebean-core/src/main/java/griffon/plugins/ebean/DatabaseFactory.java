@@ -31,6 +31,58 @@ public interface DatabaseFactory extends ObjectFactory<Database> {
     @Nonnull
     Set<String> getDatabaseNames();
 
+    /**
+     * Creates an instance that takes over from one still in use. The schema is left untouched and the instance is not
+     * registered with Ebean, the name it goes by still belongs to the instance it replaces.
+     *
+     * @param databaseName the name of the database.
+     *
+     * @return a new instance of the database.
+     *
+     * @since 3.0.0
+     */
+    @Nonnull
+    Database createReplacement(@Nonnull String databaseName);
+
+    /**
+     * Defines or redefines a database. The given configuration takes precedence over the one found in the
+     * {@code ebean} configuration and applies to instances created from now on.
+     *
+     * @param databaseName the name of the database.
+     * @param config       the configuration of the database.
+     *
+     * @throws IllegalArgumentException if the configuration holds unknown properties.
+     * @since 3.0.0
+     */
+    void defineDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config);
+
+    /**
+     * Removes a database definition. Instances of this database can no longer be created.
+     *
+     * @param databaseName the name of the database.
+     *
+     * @return {@code true} if the database was defined.
+     *
+     * @since 3.0.0
+     */
+    boolean undefineDatabase(@Nonnull String databaseName);
+
+    /**
+     * Reads the database names of the {@code ebean} configuration again, after it has been reloaded. The settings of
+     * every configured database are validated before any name is registered or dropped. Names no longer configured are
+     * dropped unless the database has been defined at runtime.
+     *
+     * @return the names of the databases added by the configuration.
+     *
+     * @throws IllegalArgumentException if the configuration of a database holds unknown properties.
+     * @since 3.0.0
+     */
+    @Nonnull
+    Set<String> refreshDatabaseNames();
+
     @Nonnull
     Map<String, Object> getConfigurationFor(@Nonnull String databaseName);
+
+    @Nonnull
+    StartupMode getStartupMode(@Nonnull String databaseName);
 }
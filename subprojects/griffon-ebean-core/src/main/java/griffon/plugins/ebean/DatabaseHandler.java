@@ -22,6 +22,9 @@ import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
 import griffon.annotations.core.Nonnull;
 import griffon.annotations.core.Nullable;
 
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Andres Almiray
  */
@@ -35,6 +38,50 @@ public interface DatabaseHandler {
     <R> R withEbean(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback)
         throws RuntimeDatabaseException;
 
+    @Nullable
+    <R> R withEbeanReadOnly(@Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nullable
+    <R> R withEbeanReadOnly(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nullable
+    <R> R withEbeanTransaction(@Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nullable
+    <R> R withEbeanTransaction(@Nonnull String databaseName, @Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nonnull
+    <T> BulkImportResult bulkImport(@Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options)
+        throws RuntimeDatabaseException;
+
+    @Nonnull
+    <T> BulkImportResult bulkImport(@Nonnull String databaseName, @Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options)
+        throws RuntimeDatabaseException;
+
+    @Nonnull
+    <T> QueryStream<T> streamQuery(@Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options);
+
+    @Nonnull
+    <T> QueryStream<T> streamQuery(@Nonnull String databaseName, @Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options);
+
+    @Nullable
+    <R> R withEbeanCached(@Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nullable
+    <R> R withEbeanCached(@Nonnull String databaseName, @Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nonnull
+    <R> CompletableFuture<R> withEbeanAsync(@Nonnull DatabaseCallback<R> callback);
+
+    @Nonnull
+    <R> CompletableFuture<R> withEbeanAsync(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback);
+
     void closeEbean();
 
     void closeEbean(@Nonnull String databaseName);
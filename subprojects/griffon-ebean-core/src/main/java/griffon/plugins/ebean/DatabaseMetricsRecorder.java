@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import io.ebean.Database;
+
+/**
+ * Receives performance data from the plugin so that it may be forwarded to an external metrics system.
+ * Implementations are invoked on the calling thread and must return quickly.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DatabaseMetricsRecorder {
+    void callbackExecuted(@Nonnull String databaseName, long durationNanos, boolean failed);
+
+    void databaseCreated(@Nonnull String databaseName, @Nonnull Database database, long durationNanos);
+
+    void databaseDestroyed(@Nonnull String databaseName, @Nonnull Database database, long durationNanos);
+
+    /**
+     * Invoked after the {@code warmup} steps of a new database ran, before it is handed to callers.
+     *
+     * @since 3.0.0
+     */
+    default void databaseWarmedUp(@Nonnull String databaseName, @Nonnull Database database, long durationNanos) {
+        // nothing to record by default
+    }
+
+    /**
+     * Invoked after a batch of the write-behind queue has been written. The latency is measured from the moment the
+     * oldest bean of the batch was queued.
+     *
+     * @since 3.0.0
+     */
+    default void writeBehindFlushed(@Nonnull String databaseName, int beans, long latencyNanos, boolean failed) {
+        // nothing to record by default
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import io.ebean.Database;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adds, changes and removes database definitions while the application runs, and applies changes made to the
+ * {@code ebean} configuration. Operations run in the background, one at a time per database name; instances being
+ * replaced or removed are closed once their running callbacks have finished.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DatabaseRegistry {
+    // tag::methods[]
+    @Nonnull
+    CompletableFuture<Database> registerDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config);
+
+    @Nonnull
+    CompletableFuture<Void> reconfigureDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config);
+
+    @Nonnull
+    CompletableFuture<Void> unregisterDatabase(@Nonnull String databaseName);
+
+    @Nonnull
+    CompletableFuture<Set<String>> reloadDatabases();
+    // end::methods[]
+}
@@ -17,6 +17,8 @@
  */
 package griffon.plugins.ebean;
 
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
 import griffon.core.storage.ObjectStorage;
 import io.ebean.Database;
 
@@ -24,4 +26,30 @@ import io.ebean.Database;
  * @author Andres Almiray
  */
 public interface DatabaseStorage extends ObjectStorage<Database> {
+    /**
+     * Returns the instance stored under the given name and pins it, ensuring it won't be evicted
+     * until a matching call to {@link #release(String, Database)} is made.
+     *
+     * @param name the name of the database.
+     *
+     * @return the pinned instance or {@code null} if there is none.
+     *
+     * @since 3.0.0
+     */
+    @Nullable
+    default Database acquire(@Nonnull String name) {
+        return get(name);
+    }
+
+    /**
+     * Unpins an instance previously obtained with {@link #acquire(String)}.
+     *
+     * @param name     the name of the database.
+     * @param instance the pinned instance.
+     *
+     * @since 3.0.0
+     */
+    default void release(@Nonnull String name, @Nonnull Database instance) {
+        // nothing to release by default
+    }
 }
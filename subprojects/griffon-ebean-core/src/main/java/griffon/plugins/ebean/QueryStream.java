@@ -0,0 +1,44 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Rows of a query read by another thread and handed over in batches. The reading thread waits whenever
+ * the consumer falls behind, so only a bounded number of rows is held in memory.
+ * <p>
+ * Closing the stream stops the query and waits until its transaction and connection have been released.
+ * Instances must always be closed, preferably with try-with-resources.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface QueryStream<T> extends Iterator<T>, AutoCloseable {
+    /**
+     * Returns a sequential {@code Stream} over the remaining rows. Closing it closes this instance.
+     */
+    @Nonnull
+    Stream<T> stream();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,102 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+/**
+ * Settings of {@code DatabaseHandler.streamQuery()}. Instances are immutable.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class QueryStreamOptions {
+    private static final QueryStreamOptions DEFAULTS = new QueryStreamOptions(null, 100, 4);
+
+    private final Integer fetchSize;
+    private final int batchSize;
+    private final int bufferedBatches;
+
+    private QueryStreamOptions(@Nullable Integer fetchSize, int batchSize, int bufferedBatches) {
+        this.fetchSize = fetchSize;
+        this.batchSize = batchSize;
+        this.bufferedBatches = bufferedBatches;
+    }
+
+    /**
+     * Batches of 100 rows, at most 4 of them waiting for the consumer, and the JDBC driver's fetch size.
+     */
+    @Nonnull
+    public static QueryStreamOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Sets the JDBC fetch size hint of the query.
+     */
+    @Nonnull
+    public QueryStreamOptions withFetchSize(@Nullable Integer fetchSize) {
+        if (fetchSize != null && fetchSize < 1) {
+            throw new IllegalArgumentException("Argument 'fetchSize' must be greater than zero");
+        }
+        return new QueryStreamOptions(fetchSize, batchSize, bufferedBatches);
+    }
+
+    /**
+     * Sets how many rows are handed to the consumer at once.
+     */
+    @Nonnull
+    public QueryStreamOptions withBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Argument 'batchSize' must be greater than zero");
+        }
+        return new QueryStreamOptions(fetchSize, batchSize, bufferedBatches);
+    }
+
+    /**
+     * Sets how many batches may wait for the consumer before the query is paused.
+     */
+    @Nonnull
+    public QueryStreamOptions withBufferedBatches(int bufferedBatches) {
+        if (bufferedBatches < 1) {
+            throw new IllegalArgumentException("Argument 'bufferedBatches' must be greater than zero");
+        }
+        return new QueryStreamOptions(fetchSize, batchSize, bufferedBatches);
+    }
+
+    @Nullable
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getBufferedBatches() {
+        return bufferedBatches;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStreamOptions[fetchSize=" + fetchSize +
+            ", batchSize=" + batchSize +
+            ", bufferedBatches=" + bufferedBatches + "]";
+    }
+}
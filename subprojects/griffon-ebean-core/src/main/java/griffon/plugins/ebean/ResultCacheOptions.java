@@ -0,0 +1,112 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings of {@code DatabaseHandler.withEbeanCached()}. Instances are immutable.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class ResultCacheOptions {
+    private final String key;
+    private final long ttl;
+    private final Set<String> tables;
+
+    private ResultCacheOptions(@Nonnull String key, long ttl, @Nonnull Set<String> tables) {
+        this.key = key;
+        this.ttl = ttl;
+        this.tables = tables;
+    }
+
+    /**
+     * Caches the result under the given key for the default time to live of the database, dropping it whenever any
+     * table of the database is modified.
+     */
+    @Nonnull
+    public static ResultCacheOptions of(@Nonnull String key) {
+        return new ResultCacheOptions(requireNonBlank(key, "Argument 'key' must not be blank"), 0L, Collections.<String>emptySet());
+    }
+
+    /**
+     * Sets how long the result is kept, in milliseconds. {@code 0} uses the default of the database.
+     */
+    @Nonnull
+    public ResultCacheOptions withTtl(long ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Argument 'ttl' must not be negative");
+        }
+        return new ResultCacheOptions(key, ttl, tables);
+    }
+
+    /**
+     * Sets the tables the result is read from. The result is dropped only when one of them is modified.
+     */
+    @Nonnull
+    public ResultCacheOptions withTables(@Nonnull String... tables) {
+        requireNonNull(tables, "Argument 'tables' must not be null");
+        return withTables(Arrays.asList(tables));
+    }
+
+    /**
+     * Sets the tables the result is read from. The result is dropped only when one of them is modified.
+     */
+    @Nonnull
+    public ResultCacheOptions withTables(@Nonnull Collection<String> tables) {
+        requireNonNull(tables, "Argument 'tables' must not be null");
+        Set<String> names = new LinkedHashSet<>();
+        for (String table : tables) {
+            // table names are matched case insensitively
+            names.add(requireNonBlank(table, "Argument 'tables' must not contain blank names").toLowerCase(Locale.ENGLISH));
+        }
+        return new ResultCacheOptions(key, ttl, Collections.unmodifiableSet(names));
+    }
+
+    @Nonnull
+    public String getKey() {
+        return key;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    @Nonnull
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCacheOptions[key=" + key +
+            ", ttl=" + ttl +
+            ", tables=" + tables + "]";
+    }
+}
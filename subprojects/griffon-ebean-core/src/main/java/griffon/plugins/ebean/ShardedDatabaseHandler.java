@@ -0,0 +1,53 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Dispatches callbacks to the databases listed as shards, using the bound {@code ShardResolver} to pick one.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface ShardedDatabaseHandler {
+    // tag::methods[]
+    @Nonnull
+    List<String> getShardNames();
+
+    @Nonnull
+    String resolveShard(@Nonnull Object key);
+
+    @Nullable
+    <R> R withShard(@Nonnull Object key, @Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    @Nonnull
+    <R> Map<String, R> withAllShards(@Nonnull DatabaseCallback<R> callback)
+        throws RuntimeDatabaseException;
+
+    <R, A> A withAllShards(@Nonnull DatabaseCallback<R> callback, @Nonnull Collector<? super R, ?, A> collector)
+        throws RuntimeDatabaseException;
+    // end::methods[]
+}
@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+/**
+ * Defines when a {@code io.ebean.Database} is connected, as set by the {@code connect_on_startup} property.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public enum StartupMode {
+    /**
+     * Connects on first use. Matches {@code connect_on_startup = false}.
+     */
+    LAZY,
+    /**
+     * Connects during the {@code Startup} phase, blocking it. Matches {@code connect_on_startup = true}.
+     */
+    EAGER,
+    /**
+     * Connects on a background thread once the {@code Startup} phase begins. Matches {@code connect_on_startup = 'background'}.
+     */
+    BACKGROUND;
+
+    @Nonnull
+    public static StartupMode of(@Nullable Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? EAGER : LAZY;
+        } else if (value != null) {
+            String mode = String.valueOf(value).trim();
+            if (BACKGROUND.name().equalsIgnoreCase(mode)) {
+                return BACKGROUND;
+            }
+            return Boolean.parseBoolean(mode) ? EAGER : LAZY;
+        }
+        return LAZY;
+    }
+}
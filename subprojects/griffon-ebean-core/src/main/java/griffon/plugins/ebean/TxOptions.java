@@ -0,0 +1,159 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.annotation.TxIsolation;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings applied to the transaction started by {@code DatabaseHandler.withEbeanTransaction()}.
+ * Settings left unset fall back to the {@code transaction} block of the database configuration,
+ * then to Ebean's own defaults. Instances are immutable.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class TxOptions {
+    private static final TxOptions DEFAULTS = new TxOptions(null, null, null, null, null);
+
+    private final TxIsolation isolation;
+    private final Boolean readOnly;
+    private final Boolean batchMode;
+    private final Integer batchSize;
+    private final Boolean flushOnQuery;
+
+    private TxOptions(@Nullable TxIsolation isolation, @Nullable Boolean readOnly, @Nullable Boolean batchMode, @Nullable Integer batchSize, @Nullable Boolean flushOnQuery) {
+        this.isolation = isolation;
+        this.readOnly = readOnly;
+        this.batchMode = batchMode;
+        this.batchSize = batchSize;
+        this.flushOnQuery = flushOnQuery;
+    }
+
+    /**
+     * Options with every setting unset.
+     */
+    @Nonnull
+    public static TxOptions defaults() {
+        return DEFAULTS;
+    }
+
+    @Nonnull
+    public TxOptions withIsolation(@Nullable TxIsolation isolation) {
+        return new TxOptions(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    @Nonnull
+    public TxOptions withReadOnly(@Nullable Boolean readOnly) {
+        return new TxOptions(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    @Nonnull
+    public TxOptions withBatchMode(@Nullable Boolean batchMode) {
+        return new TxOptions(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    /**
+     * Sets the JDBC batch size. A positive size also turns batch mode on unless it was set explicitly.
+     */
+    @Nonnull
+    public TxOptions withBatchSize(@Nullable Integer batchSize) {
+        if (batchSize != null && batchSize < 1) {
+            throw new IllegalArgumentException("Argument 'batchSize' must be greater than zero");
+        }
+        return new TxOptions(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    @Nonnull
+    public TxOptions withFlushOnQuery(@Nullable Boolean flushOnQuery) {
+        return new TxOptions(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    /**
+     * Returns a copy of these options where every unset setting is taken from {@code fallback}.
+     */
+    @Nonnull
+    public TxOptions orElse(@Nonnull TxOptions fallback) {
+        requireNonNull(fallback, "Argument 'fallback' must not be null");
+        return new TxOptions(
+            isolation != null ? isolation : fallback.isolation,
+            readOnly != null ? readOnly : fallback.readOnly,
+            batchMode != null ? batchMode : fallback.batchMode,
+            batchSize != null ? batchSize : fallback.batchSize,
+            flushOnQuery != null ? flushOnQuery : fallback.flushOnQuery);
+    }
+
+    @Nullable
+    public TxIsolation getIsolation() {
+        return isolation;
+    }
+
+    @Nullable
+    public Boolean getReadOnly() {
+        return readOnly;
+    }
+
+    @Nullable
+    public Boolean getBatchMode() {
+        if (batchMode == null && batchSize != null) {
+            return Boolean.TRUE;
+        }
+        return batchMode;
+    }
+
+    @Nullable
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    @Nullable
+    public Boolean getFlushOnQuery() {
+        return flushOnQuery;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        TxOptions that = (TxOptions) o;
+        return isolation == that.isolation &&
+            Objects.equals(readOnly, that.readOnly) &&
+            Objects.equals(batchMode, that.batchMode) &&
+            Objects.equals(batchSize, that.batchSize) &&
+            Objects.equals(flushOnQuery, that.flushOnQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isolation, readOnly, batchMode, batchSize, flushOnQuery);
+    }
+
+    @Override
+    public String toString() {
+        return "TxOptions[isolation=" + isolation +
+            ", readOnly=" + readOnly +
+            ", batchMode=" + batchMode +
+            ", batchSize=" + batchSize +
+            ", flushOnQuery=" + flushOnQuery + "]";
+    }
+}
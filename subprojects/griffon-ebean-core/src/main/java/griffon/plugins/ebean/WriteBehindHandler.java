@@ -0,0 +1,65 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Saves beans in the background, combining many small writes into batched transactions. Each database opts in with a
+ * {@code write_behind} block; beans given to a database without one are saved right away.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface WriteBehindHandler {
+    // tag::methods[]
+    /**
+     * @return {@code true} if the bean was queued, {@code false} if the overflow policy dropped it.
+     */
+    boolean saveBehind(@Nonnull Object bean)
+        throws RuntimeDatabaseException;
+
+    /**
+     * @return {@code true} if the bean was queued, {@code false} if the overflow policy dropped it.
+     */
+    boolean saveBehind(@Nonnull String databaseName, @Nonnull Object bean)
+        throws RuntimeDatabaseException;
+
+    /**
+     * Writes the beans queued so far without waiting for the current batch window to end.
+     *
+     * @return a future completed once those beans have been written, exceptionally if any of them could not be.
+     */
+    @Nonnull
+    CompletableFuture<Void> flushBehind();
+
+    @Nonnull
+    CompletableFuture<Void> flushBehind(@Nonnull String databaseName);
+
+    /**
+     * Writes the queued beans and stops the queue. It is opened again on the next call to {@code saveBehind}.
+     *
+     * @param timeout maximum time in milliseconds to wait for the queued beans to be written
+     * @return {@code true} if the queue drained before the timeout elapsed. Beans that failed to be written are logged.
+     */
+    boolean closeBehind(@Nonnull String databaseName, long timeout);
+    // end::methods[]
+}
@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.exceptions;
+
+import griffon.annotations.core.Nonnull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thrown when a chunk of a bulk import fails. Chunks before {@link #getResumeChunk()} have been committed, and so have
+ * those listed by {@link #getCommittedChunks()} when chunks were imported in parallel. Passing this exception to
+ * {@code BulkImportOptions.withResumeFrom()} resumes the import where it stopped without saving any of them again.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class BulkImportException extends RuntimeDatabaseException {
+    private final long resumeChunk;
+    private final long rowsImported;
+    private final SortedSet<Long> committedChunks;
+
+    public BulkImportException(@Nonnull String databaseName, long resumeChunk, long rowsImported, @Nonnull Throwable cause) {
+        this(databaseName, resumeChunk, rowsImported, Collections.<Long>emptySet(), cause);
+    }
+
+    public BulkImportException(@Nonnull String databaseName, long resumeChunk, long rowsImported, @Nonnull Set<Long> committedChunks, @Nonnull Throwable cause) {
+        super(databaseName, "Bulk import on ebean '" + databaseName + "' failed at chunk " + resumeChunk + " after " + rowsImported + " rows", cause);
+        requireNonNull(committedChunks, "Argument 'committedChunks' must not be null");
+        this.resumeChunk = resumeChunk;
+        this.rowsImported = rowsImported;
+        this.committedChunks = Collections.unmodifiableSortedSet(new TreeSet<>(committedChunks));
+    }
+
+    /**
+     * Index of the first chunk that was not committed.
+     */
+    public long getResumeChunk() {
+        return resumeChunk;
+    }
+
+    /**
+     * Indexes of the chunks after {@link #getResumeChunk()} that have been committed, either by this run or by the run it
+     * resumed. Only parallel imports commit chunks out of order, the set is empty otherwise.
+     */
+    @Nonnull
+    public SortedSet<Long> getCommittedChunks() {
+        return committedChunks;
+    }
+
+    /**
+     * Number of rows committed by this run before it failed.
+     */
+    public long getRowsImported() {
+        return rowsImported;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package griffon.plugins.ebean.exceptions;
+
+import griffon.annotations.core.Nonnull;
+
+/**
+ * Thrown when a callback is submitted after the application started shutting down, or after its database was closed.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseShutdownException extends RuntimeDatabaseException {
+    public DatabaseShutdownException(@Nonnull String databaseName) {
+        super(databaseName, "Callback rejected by ebean '" + databaseName + "': the application is shutting down");
+    }
+
+    public DatabaseShutdownException(@Nonnull String databaseName, @Nonnull String reason) {
+        super(databaseName, "Callback rejected by ebean '" + databaseName + "': " + reason);
+    }
+}
@@ -35,6 +35,16 @@ public class RuntimeDatabaseException extends GriffonException {
         this.databaseName = databaseName;
     }
 
+    protected RuntimeDatabaseException(@Nonnull String databaseName, @Nonnull String message) {
+        super(message);
+        this.databaseName = requireNonBlank(databaseName, "databaseName");
+    }
+
+    protected RuntimeDatabaseException(@Nonnull String databaseName, @Nonnull String message, @Nonnull Throwable cause) {
+        super(message, requireNonNull(cause, "cause"));
+        this.databaseName = requireNonBlank(databaseName, "databaseName");
+    }
+
     @Nonnull
     private static String format(@Nonnull String databaseName) {
         requireNonBlank(databaseName, "databaseName");
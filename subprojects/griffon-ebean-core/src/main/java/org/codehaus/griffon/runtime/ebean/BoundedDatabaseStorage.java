@@ -0,0 +1,344 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseStorage;
+import io.ebean.Database;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@code DatabaseStorage} that keeps at most {@code maxSize} instances, evicting the least recently used
+ * one when full, and closes instances that have not been used for {@code idleTimeout} milliseconds.
+ * Evicted instances are closed with {@link DatabaseFactory#destroy(String, Database)} and created again on
+ * their next use. Instances pinned with {@link #acquire(String)} are never evicted.
+ * <p>
+ * Only {@link #acquire(String)} and {@link #release(String, Database)} count as a use, {@link #get(String)} is a
+ * plain lookup that does not lock and does not keep an instance from going idle, monitoring relies on it.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class BoundedDatabaseStorage implements DatabaseStorage {
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedDatabaseStorage.class);
+    private static final String ERROR_NAME_BLANK = "Argument 'name' must not be blank";
+
+    private final DatabaseFactory databaseFactory;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // guards pins, evictions and the closing markers; lookups never take it
+    private final Object lock = new Object();
+    private final Set<String> closing = new HashSet<>();
+    private final Set<String> evicted = new HashSet<>();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong recreationCount = new AtomicLong();
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * @param databaseFactory the factory used to close evicted instances.
+     * @param maxSize         max number of instances to keep, unbounded if zero or negative.
+     * @param idleTimeout     time in milliseconds after which an unused instance is closed, never if zero or negative.
+     * @param sweepInterval   time in milliseconds between idle checks.
+     */
+    public BoundedDatabaseStorage(@Nonnull DatabaseFactory databaseFactory, int maxSize, long idleTimeout, long sweepInterval) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.maxSize = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
+        this.idleTimeout = idleTimeout > 0 ? idleTimeout : 0L;
+
+        if (this.idleTimeout > 0 && sweepInterval > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ebean-storage-sweeper"));
+            sweeper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        evictIdle();
+                    } catch (RuntimeException e) {
+                        LOG.warn("Could not evict idle databases", e);
+                    }
+                }
+            }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    @Override
+    public void set(@Nonnull String name, @Nullable Database instance) {
+        requireNonBlank(name, ERROR_NAME_BLANK);
+        if (instance == null) {
+            remove(name);
+            return;
+        }
+
+        List<Victim> victims;
+        synchronized (lock) {
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                entry.database = instance;
+                entry.touch();
+            } else {
+                entries.put(name, new Entry(instance));
+            }
+            if (evicted.remove(name)) {
+                recreationCount.incrementAndGet();
+                LOG.debug("Database '{}' was created again after eviction", name);
+            }
+            victims = selectOverflow(name);
+        }
+        close(victims);
+    }
+
+    @Nullable
+    @Override
+    public Database get(@Nonnull String name) {
+        requireNonBlank(name, ERROR_NAME_BLANK);
+        Entry entry = entries.get(name);
+        return entry != null ? entry.database : null;
+    }
+
+    @Nullable
+    @Override
+    public Database acquire(@Nonnull String name) {
+        requireNonBlank(name, ERROR_NAME_BLANK);
+        synchronized (lock) {
+            awaitClosed(name);
+            Entry entry = entries.get(name);
+            if (entry == null) {
+                return null;
+            }
+            entry.pins++;
+            entry.touch();
+            return entry.database;
+        }
+    }
+
+    @Override
+    public void release(@Nonnull String name, @Nonnull Database instance) {
+        requireNonBlank(name, ERROR_NAME_BLANK);
+        requireNonNull(instance, "Argument 'instance' must not be null");
+        synchronized (lock) {
+            Entry entry = entries.get(name);
+            // the instance may have been removed or replaced explicitly while pinned
+            if (entry != null && entry.database == instance && entry.pins > 0) {
+                entry.pins--;
+                entry.touch();
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Database remove(@Nonnull String name) {
+        requireNonBlank(name, ERROR_NAME_BLANK);
+        synchronized (lock) {
+            evicted.remove(name);
+            Entry entry = entries.remove(name);
+            return entry != null ? entry.database : null;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getKeys() {
+        return new LinkedHashSet<>(entries.keySet());
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            entries.clear();
+            evicted.clear();
+        }
+    }
+
+    /**
+     * Closes every unpinned instance that has been idle for longer than the configured timeout.
+     *
+     * @return the number of evicted instances.
+     */
+    public int evictIdle() {
+        if (idleTimeout <= 0) {
+            return 0;
+        }
+
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        List<Victim> victims = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().pins == 0 && e.getValue().lastUsed - deadline < 0 && !closing.contains(e.getKey())) {
+                    victims.add(detach(e.getKey(), "idle"));
+                }
+            }
+        }
+        close(victims);
+        return victims.size();
+    }
+
+    /**
+     * Stops the idle sweeper. Stored instances are left untouched.
+     */
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public int getPinnedCount() {
+        int count = 0;
+        synchronized (lock) {
+            for (Entry entry : entries.values()) {
+                if (entry.pins > 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getRecreationCount() {
+        return recreationCount.get();
+    }
+
+    @Nonnull
+    private List<Victim> selectOverflow(@Nonnull String protectedName) {
+        // the least recently used unpinned instance goes first; the instance just stored is never a candidate
+        List<Victim> victims = new ArrayList<>();
+        while (entries.size() > maxSize) {
+            String eldest = null;
+            long eldestUse = 0L;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.pins == 0 && !e.getKey().equals(protectedName) && !closing.contains(e.getKey()) &&
+                    (eldest == null || entry.lastUsed - eldestUse < 0)) {
+                    eldest = e.getKey();
+                    eldestUse = entry.lastUsed;
+                }
+            }
+            if (eldest == null) {
+                break;
+            }
+            victims.add(detach(eldest, "size"));
+        }
+        return victims;
+    }
+
+    @Nonnull
+    private Victim detach(@Nonnull String name, @Nonnull String reason) {
+        // the name stays marked as closing until the instance is closed so that a re-creation
+        // through acquire() does not reuse resources that are about to be released
+        Entry entry = entries.remove(name);
+        closing.add(name);
+        evicted.add(name);
+        return new Victim(name, entry.database, reason);
+    }
+
+    private void close(@Nonnull List<Victim> victims) {
+        for (Victim victim : victims) {
+            try {
+                databaseFactory.destroy(victim.name, victim.database);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not close evicted database '{}'", victim.name, e);
+            } finally {
+                synchronized (lock) {
+                    closing.remove(victim.name);
+                    lock.notifyAll();
+                }
+                evictionCount.incrementAndGet();
+            }
+            LOG.info("Evicted database '{}' ({})", victim.name, victim.reason);
+        }
+    }
+
+    private void awaitClosed(@Nonnull String name) {
+        boolean interrupted = false;
+        while (closing.contains(name)) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                // closing is bounded by the factory, keep waiting and restore the flag afterwards
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Entry {
+        private volatile Database database;
+        private int pins;
+        private volatile long lastUsed;
+
+        private Entry(@Nonnull Database database) {
+            this.database = database;
+            touch();
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+    }
+
+    private static class Victim {
+        private final String name;
+        private final Database database;
+        private final String reason;
+
+        private Victim(@Nonnull String name, @Nonnull Database database, @Nonnull String reason) {
+            this.name = name;
+            this.database = database;
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.BulkImportOptions;
+import griffon.plugins.ebean.BulkImportResult;
+import griffon.plugins.ebean.DatabaseCallback;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.TxOptions;
+import griffon.plugins.ebean.exceptions.BulkImportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits a sequence of beans into chunks and saves each chunk in its own transaction.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class BulkImport<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkImport.class);
+
+    private final DatabaseHandler databaseHandler;
+    private final String databaseName;
+    private final Iterator<T> beans;
+    private final BulkImportOptions options;
+    private final TxOptions txOptions;
+    private final int concurrency;
+
+    BulkImport(@Nonnull DatabaseHandler databaseHandler, @Nonnull String databaseName, @Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options, @Nonnull TxOptions txOptions, int concurrency) {
+        this.databaseHandler = databaseHandler;
+        this.databaseName = databaseName;
+        this.beans = beans;
+        this.options = options;
+        this.txOptions = txOptions;
+        this.concurrency = concurrency;
+    }
+
+    @Nonnull
+    BulkImportResult execute() {
+        long start = System.nanoTime();
+        skipCommittedChunks();
+
+        BulkImportResult result = options.getParallelism() > 1 ? executeInParallel(start) : executeSequentially(start);
+        LOG.info("Imported {} rows in {} chunks into database '{}' in {}ms ({} rows/s)", result.getRows(), result.getChunks(),
+            databaseName, result.getElapsed(TimeUnit.MILLISECONDS), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    @Nonnull
+    private BulkImportResult executeSequentially(long start) {
+        long index = options.getStartChunk();
+        long chunks = 0;
+        long rows = 0;
+        try {
+            while (beans.hasNext()) {
+                List<T> chunk = nextChunk();
+                if (options.getSkippedChunks().contains(index)) {
+                    index++;
+                    continue;
+                }
+                rows += databaseHandler.withEbean(databaseName, chunkCallback(chunk));
+                chunkCommitted(index++, chunk.size());
+                chunks++;
+            }
+        } catch (RuntimeException e) {
+            throw failure(index, Collections.<Long>emptySet(), rows, e);
+        }
+        return new BulkImportResult(rows, chunks, index, System.nanoTime() - start);
+    }
+
+    @Nonnull
+    private BulkImportResult executeInParallel(long start) {
+        int parallelism = options.getParallelism();
+        if (parallelism > concurrency) {
+            // chunks beyond what the executor runs would only wait in its queue, holding their beans in memory
+            LOG.warn("Bulk import into database '{}' asked for a parallelism of {} but its executor runs {} callbacks at a time. Using a parallelism of {}",
+                databaseName, parallelism, concurrency, concurrency);
+            parallelism = concurrency;
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        Set<Long> committed = new ConcurrentSkipListSet<>();
+        LongAdder rows = new LongAdder();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // beans are read on the calling thread, at most 'parallelism' chunks are held in memory at any time
+        long index = options.getStartChunk();
+        try {
+            while (failure.get() == null && beans.hasNext()) {
+                permits.acquire();
+                List<T> chunk;
+                try {
+                    chunk = nextChunk();
+                } catch (RuntimeException e) {
+                    permits.release();
+                    failure.compareAndSet(null, e);
+                    break;
+                }
+
+                long chunkIndex = index++;
+                if (options.getSkippedChunks().contains(chunkIndex)) {
+                    permits.release();
+                    continue;
+                }
+
+                try {
+                    databaseHandler.withEbeanAsync(databaseName, chunkCallback(chunk)).whenComplete((count, t) -> {
+                        if (t == null) {
+                            committed.add(chunkIndex);
+                            rows.add(count);
+                            chunkCommitted(chunkIndex, count);
+                        } else {
+                            failure.compareAndSet(null, t);
+                        }
+                        permits.release();
+                    });
+                } catch (RuntimeException e) {
+                    // the chunk was never submitted, so its completion handler will not release the permit
+                    permits.release();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            permits.acquireUninterruptibly(parallelism);
+        }
+
+        if (failure.get() != null) {
+            throw failure(options.getStartChunk(), committed, rows.sum(), failure.get());
+        }
+        return new BulkImportResult(rows.sum(), committed.size(), index, System.nanoTime() - start);
+    }
+
+    /**
+     * Builds the failure of this run. Chunks may have been committed out of order, so every committed chunk past the
+     * first gap is reported along with the chunks this run skipped, letting a resumed run skip all of them.
+     *
+     * @param resumeChunk the first chunk that may not have been committed
+     */
+    @Nonnull
+    private BulkImportException failure(long resumeChunk, @Nonnull Set<Long> committed, long rows, @Nonnull Throwable cause) {
+        TreeSet<Long> done = new TreeSet<>(committed);
+        done.addAll(options.getSkippedChunks());
+        while (done.contains(resumeChunk)) {
+            resumeChunk++;
+        }
+        return new BulkImportException(databaseName, resumeChunk, rows, done.tailSet(resumeChunk, false), cause);
+    }
+
+    @Nonnull
+    private DatabaseCallback<Integer> chunkCallback(@Nonnull List<T> chunk) {
+        return (name, database) -> DefaultDatabaseHandler.inTransaction(name, database, txOptions, (n, d) -> {
+            d.saveAll(chunk);
+            return chunk.size();
+        });
+    }
+
+    private void chunkCommitted(long index, int size) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Committed chunk {} ({} rows) on database '{}'", index, size, databaseName);
+        }
+    }
+
+    private void skipCommittedChunks() {
+        long skip = options.getStartChunk() * options.getChunkSize();
+        for (long i = 0; i < skip && beans.hasNext(); i++) {
+            beans.next();
+        }
+    }
+
+    @Nonnull
+    private List<T> nextChunk() {
+        List<T> chunk = new ArrayList<>(options.getChunkSize());
+        while (chunk.size() < options.getChunkSize() && beans.hasNext()) {
+            chunk.add(beans.next());
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.exceptions.DatabaseBulkheadFullException;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Limits how many callbacks may run concurrently against a single database and how many may wait for a slot.
+ * <p>
+ * Permits are held per thread: a callback nested inside another one on the same database reuses the permit of the
+ * outer callback instead of waiting for a second slot, which could never be granted once every slot is taken by
+ * outer callbacks.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseBulkhead {
+    private final String databaseName;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long acquireTimeout;
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * @param databaseName   the database guarded by this bulkhead
+     * @param maxConcurrent  maximum number of callbacks running at once, {@code 0} or less disables the limit
+     * @param maxQueued      maximum number of callers waiting for a slot
+     * @param acquireTimeout maximum time in milliseconds a caller waits for a slot
+     */
+    public DatabaseBulkhead(@Nonnull String databaseName, int maxConcurrent, int maxQueued, long acquireTimeout) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.acquireTimeout = Math.max(0, acquireTimeout);
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+    }
+
+    public void acquire() {
+        int[] depth = held.get();
+        if (depth[0] > 0) {
+            depth[0]++;
+            return;
+        }
+
+        if (permits != null && !permits.tryAcquire()) {
+            waitForPermit();
+        }
+        depth[0] = 1;
+        inFlight.incrementAndGet();
+    }
+
+    public void release() {
+        int[] depth = held.get();
+        if (--depth[0] > 0) {
+            return;
+        }
+
+        held.remove();
+        inFlight.decrementAndGet();
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private void waitForPermit() {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new DatabaseBulkheadFullException(databaseName, "too many queued callers (" + maxQueued + ")");
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new RuntimeDatabaseException(databaseName, e);
+        } finally {
+            queued.decrementAndGet();
+        }
+
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new DatabaseBulkheadFullException(databaseName, "no slot available after " + acquireTimeout + " ms");
+        }
+    }
+
+    @Nonnull
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public boolean isLimited() {
+        return permits != null;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
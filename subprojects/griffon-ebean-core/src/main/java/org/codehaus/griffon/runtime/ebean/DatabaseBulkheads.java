@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.DatabaseFactory;
+
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.ConfigUtils.getConfigValue;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps one {@code DatabaseBulkhead} per database name, configured by the {@code bulkhead} block of each database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseBulkheads {
+    private static final String KEY_BULKHEAD = "bulkhead";
+    private static final String KEY_MAX_CONCURRENT = "max_concurrent";
+    private static final String KEY_MAX_QUEUED = "max_queued";
+    private static final String KEY_ACQUIRE_TIMEOUT = "acquire_timeout";
+    private static final int DEFAULT_MAX_QUEUED = Integer.MAX_VALUE;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT = 30000L;
+
+    private final DatabaseFactory databaseFactory;
+    private final ConcurrentMap<String, DatabaseBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Inject
+    public DatabaseBulkheads(@Nonnull DatabaseFactory databaseFactory) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+    }
+
+    @Nonnull
+    public DatabaseBulkhead getBulkhead(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        DatabaseBulkhead bulkhead = bulkheads.get(databaseName);
+        if (bulkhead == null) {
+            bulkhead = createBulkhead(databaseName);
+            DatabaseBulkhead existing = bulkheads.putIfAbsent(databaseName, bulkhead);
+            if (existing != null) {
+                bulkhead = existing;
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Drops the bulkhead of the given database, the next call creates a new one from the current configuration.
+     * Callers holding a permit from the previous bulkhead release it as usual.
+     */
+    public void invalidate(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        bulkheads.remove(databaseName);
+    }
+
+    @Nonnull
+    protected DatabaseBulkhead createBulkhead(@Nonnull String databaseName) {
+        Map<String, Object> config = getConfigValue(databaseFactory.getConfigurationFor(databaseName), KEY_BULKHEAD, Collections.<String, Object>emptyMap());
+        return new DatabaseBulkhead(databaseName,
+            getConfigValueAsInt(config, KEY_MAX_CONCURRENT, 0),
+            getConfigValueAsInt(config, KEY_MAX_QUEUED, DEFAULT_MAX_QUEUED),
+            getConfigValueAsLong(config, KEY_ACQUIRE_TIMEOUT, DEFAULT_ACQUIRE_TIMEOUT));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.util.GriffonClassUtils;
+import io.ebean.config.DatabaseConfig;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Copies configuration entries onto a {@code DatabaseConfig}. The setters of every {@code DatabaseConfig} property
+ * are resolved once, as method handles; binding a value is a map lookup and a direct invocation. Values of a
+ * different type than the property are converted when they are numbers, strings or enum names, and handed to
+ * {@code GriffonClassUtils.setPropertyValue()} otherwise.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DatabaseConfigBinder {
+    private static final Map<String, Setter> SETTERS = resolveSetters();
+
+    private DatabaseConfigBinder() {
+        // prevent instantiation
+    }
+
+    public static boolean isBindable(@Nonnull String propertyName) {
+        return SETTERS.containsKey(propertyName);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code DatabaseConfig} has no such writable property
+     */
+    public static void bind(@Nonnull DatabaseConfig databaseConfig, @Nonnull String propertyName, @Nullable Object value) {
+        requireNonNull(databaseConfig, "Argument 'databaseConfig' must not be null");
+        requireNonBlank(propertyName, "Argument 'propertyName' must not be blank");
+        Setter setter = SETTERS.get(propertyName);
+        if (setter == null) {
+            throw new IllegalArgumentException("Unknown property '" + propertyName + "' of " + DatabaseConfig.class.getName());
+        }
+        setter.set(databaseConfig, propertyName, value);
+    }
+
+    @Nonnull
+    private static Map<String, Setter> resolveSetters() {
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(DatabaseConfig.class, Object.class);
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Could not introspect " + DatabaseConfig.class.getName(), e);
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType setterType = MethodType.methodType(void.class, DatabaseConfig.class, Object.class);
+        Map<String, Setter> setters = new HashMap<>();
+        for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+            Method writeMethod = descriptor.getWriteMethod();
+            if (writeMethod == null) {
+                continue;
+            }
+            try {
+                MethodHandle handle = lookup.unreflect(writeMethod);
+                // the return value of fluent setters is dropped
+                handle = handle.asType(handle.type().changeReturnType(void.class)).asType(setterType);
+                setters.put(descriptor.getName(), new Setter(handle, writeMethod.getParameterTypes()[0]));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Could not access " + writeMethod, e);
+            }
+        }
+        return Collections.unmodifiableMap(setters);
+    }
+
+    private static final class Setter {
+        private final MethodHandle handle;
+        private final Class<?> type;
+        private final Class<?> boxedType;
+
+        private Setter(@Nonnull MethodHandle handle, @Nonnull Class<?> type) {
+            this.handle = handle;
+            this.type = type;
+            this.boxedType = box(type);
+        }
+
+        private void set(@Nonnull DatabaseConfig databaseConfig, @Nonnull String propertyName, @Nullable Object value) {
+            Object converted = convert(value);
+            if (converted == null && (value != null || type.isPrimitive())) {
+                GriffonClassUtils.setPropertyValue(databaseConfig, propertyName, value);
+                return;
+            }
+
+            try {
+                handle.invokeExact(databaseConfig, converted);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Could not set property '" + propertyName + "'", t);
+            }
+        }
+
+        /**
+         * @return the value as an instance of the property type, or {@code null} if it cannot be converted
+         */
+        @Nullable
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object convert(@Nullable Object value) {
+            if (value == null || boxedType.isInstance(value)) {
+                return value;
+            }
+
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                if (boxedType == Integer.class) {
+                    return number.intValue();
+                } else if (boxedType == Long.class) {
+                    return number.longValue();
+                } else if (boxedType == Double.class) {
+                    return number.doubleValue();
+                } else if (boxedType == Float.class) {
+                    return number.floatValue();
+                } else if (boxedType == Short.class) {
+                    return number.shortValue();
+                } else if (boxedType == Byte.class) {
+                    return number.byteValue();
+                }
+            } else if (value instanceof CharSequence) {
+                String text = value.toString().trim();
+                try {
+                    if (boxedType == String.class) {
+                        return value.toString();
+                    } else if (boxedType == Boolean.class) {
+                        return Boolean.valueOf(text);
+                    } else if (boxedType == Integer.class) {
+                        return Integer.valueOf(text);
+                    } else if (boxedType == Long.class) {
+                        return Long.valueOf(text);
+                    } else if (boxedType == Double.class) {
+                        return Double.valueOf(text);
+                    } else if (boxedType == Float.class) {
+                        return Float.valueOf(text);
+                    } else if (boxedType.isEnum()) {
+                        return Enum.valueOf((Class<? extends Enum>) boxedType, text);
+                    }
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        @Nonnull
+        private static Class<?> box(@Nonnull Class<?> type) {
+            if (!type.isPrimitive()) {
+                return type;
+            } else if (type == int.class) {
+                return Integer.class;
+            } else if (type == long.class) {
+                return Long.class;
+            } else if (type == boolean.class) {
+                return Boolean.class;
+            } else if (type == double.class) {
+                return Double.class;
+            } else if (type == float.class) {
+                return Float.class;
+            } else if (type == short.class) {
+                return Short.class;
+            } else if (type == byte.class) {
+                return Byte.class;
+            }
+            return Character.class;
+        }
+    }
+}
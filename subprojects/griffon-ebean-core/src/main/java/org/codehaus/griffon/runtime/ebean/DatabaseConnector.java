@@ -0,0 +1,212 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.DatabaseCallback;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+import io.ebean.Database;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Connects databases ahead of their first use on a pool of its own, either waiting for all of them or in the background.
+ * <p>
+ * Once the connector has been abandoned, databases whose connection completes afterwards are closed again, so that
+ * neither a failed parallel startup nor an early shutdown leaves them open.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class DatabaseConnector {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseConnector.class);
+
+    private final DatabaseHandler databaseHandler;
+    private final ExecutorService executor;
+    private final Set<String> connected = new LinkedHashSet<>();
+    private boolean abandoned;
+
+    DatabaseConnector(@Nonnull DatabaseHandler databaseHandler, @Nonnull String threadNamePrefix, int threads) {
+        this.databaseHandler = requireNonNull(databaseHandler, "Argument 'databaseHandler' must not be null");
+        requireNonBlank(threadNamePrefix, "Argument 'threadNamePrefix' must not be blank");
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new NamedThreadFactory(threadNamePrefix));
+    }
+
+    @Nonnull
+    static String connect(@Nonnull DatabaseHandler databaseHandler, @Nonnull String databaseName) {
+        long start = System.nanoTime();
+        databaseHandler.withEbean(databaseName, new DatabaseCallback<Void>() {
+            @Override
+            public Void handle(@Nonnull String databaseName, @Nonnull Database database) {
+                return null;
+            }
+        });
+        LOG.info("Connected to database '{}' in {} ms", databaseName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return databaseName;
+    }
+
+    /**
+     * Connects the given databases concurrently and waits for all of them. As soon as one fails the connector is
+     * abandoned: databases that did connect are closed and the failure is rethrown without waiting for the others.
+     */
+    void connectAll(@Nonnull List<String> databaseNames) {
+        requireNonNull(databaseNames, "Argument 'databaseNames' must not be null");
+        long start = System.nanoTime();
+        CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<String>, String> tasks = new LinkedHashMap<>();
+        try {
+            for (final String databaseName : databaseNames) {
+                tasks.put(completionService.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return connectAndTrack(databaseName);
+                    }
+                }), databaseName);
+            }
+
+            for (int i = 0; i < tasks.size(); i++) {
+                Future<String> future = completionService.take();
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    abandon(true);
+                    throw asRuntimeException(tasks.get(future), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(true);
+            throw new RuntimeDatabaseException(databaseNames.get(0), e);
+        } finally {
+            executor.shutdown();
+        }
+        LOG.info("Connected to databases {} in {} ms", databaseNames, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Starts connecting the given databases without waiting for them. Failures are logged, the databases involved are
+     * connected again on first use.
+     */
+    void connectInBackground(@Nonnull List<String> databaseNames) {
+        requireNonNull(databaseNames, "Argument 'databaseNames' must not be null");
+        for (final String databaseName : databaseNames) {
+            // early withEbean callers block on the same in-flight build instead of starting a new one
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        connectAndTrack(databaseName);
+                    } catch (RuntimeException e) {
+                        if (isAbandoned()) {
+                            LOG.debug("Could not connect to database '{}' in the background before shutdown", databaseName, e);
+                        } else {
+                            LOG.warn("Could not connect to database '{}' in the background. It will be connected on first use", databaseName, e);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Skips connections that have not started yet. Those in progress are left to finish, an interrupted bootstrap may
+     * leave files or pooled connections behind, and are closed as soon as their connection completes.
+     *
+     * @param closeConnected whether databases that already connected should be closed as well.
+     */
+    void abandon(boolean closeConnected) {
+        List<String> databaseNames;
+        synchronized (this) {
+            abandoned = true;
+            databaseNames = closeConnected ? new ArrayList<>(connected) : new ArrayList<String>();
+            connected.clear();
+        }
+        executor.shutdown();
+
+        for (String databaseName : databaseNames) {
+            close(databaseName);
+        }
+    }
+
+    synchronized boolean isAbandoned() {
+        return abandoned;
+    }
+
+    boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @Nonnull
+    private String connectAndTrack(@Nonnull String databaseName) {
+        if (isAbandoned()) {
+            LOG.debug("Skipping connection to database '{}', startup has been abandoned", databaseName);
+            return databaseName;
+        }
+        connect(databaseHandler, databaseName);
+        boolean late;
+        synchronized (this) {
+            late = abandoned;
+            if (!late) {
+                connected.add(databaseName);
+            }
+        }
+        if (late) {
+            close(databaseName);
+        }
+        return databaseName;
+    }
+
+    private void close(@Nonnull String databaseName) {
+        try {
+            LOG.debug("Closing database '{}' connected by an abandoned startup", databaseName);
+            databaseHandler.closeEbean(databaseName);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not close database '{}'", databaseName, e);
+        }
+    }
+
+    @Nonnull
+    private static RuntimeException asRuntimeException(@Nonnull String databaseName, @Nonnull Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new RuntimeDatabaseException(databaseName, (Exception) throwable);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.datasource.DataSourceFactory;
+import griffon.plugins.ebean.DatabaseFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static griffon.util.ConfigUtils.getConfigValue;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps one bounded executor per database name, configured by the {@code executor} block of each database.
+ * <p>
+ * Setting {@code mode = 'virtual'} in the top level {@code handler} block runs callbacks on virtual threads when the
+ * JVM supports them. The number of callbacks running at once is then capped by the size of the database's connection
+ * pool unless {@code threads} is set explicitly.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseExecutors {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseExecutors.class);
+    private static final String ERROR_DATABASE_NAME_BLANK = "Argument 'databaseName' must not be blank";
+    private static final String KEY_EXECUTOR = "executor";
+    private static final String KEY_THREADS = "threads";
+    private static final String KEY_QUEUE_SIZE = "queue_size";
+    private static final String KEY_REJECTION = "rejection";
+    private static final String REJECTION_ABORT = "abort";
+    private static final String REJECTION_BLOCK = "block";
+    private static final String REJECTION_CALLER_RUNS = "caller_runs";
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+    private static final String KEY_HANDLER = "handler";
+    private static final String KEY_MODE = "mode";
+    private static final String MODE_PLATFORM = "platform";
+    private static final String MODE_VIRTUAL = "virtual";
+    private static final String KEY_POOL = "pool";
+    private static final String KEY_MAXIMUM_POOL_SIZE = "maximumPoolSize";
+    private static final int DEFAULT_MAXIMUM_POOL_SIZE = 10;
+
+    private final DatabaseFactory databaseFactory;
+    private final DataSourceFactory dataSourceFactory;
+    private final ConcurrentMap<String, ExecutorService> executors = new ConcurrentHashMap<>();
+
+    @Inject
+    public DatabaseExecutors(@Nonnull DatabaseFactory databaseFactory, @Nonnull DataSourceFactory dataSourceFactory) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.dataSourceFactory = requireNonNull(dataSourceFactory, "Argument 'dataSourceFactory' must not be null");
+    }
+
+    @Nonnull
+    public ExecutorService getExecutor(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        ExecutorService executor = executors.get(databaseName);
+        if (executor != null) {
+            return executor;
+        }
+
+        if (!databaseFactory.getDatabaseNames().contains(databaseName)) {
+            throw new IllegalArgumentException("Database '" + databaseName + "' is not configured");
+        }
+
+        executor = createExecutor(databaseName);
+        ExecutorService existing = executors.putIfAbsent(databaseName, executor);
+        if (existing != null) {
+            executor.shutdown();
+            return existing;
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the executor of the given database. Tasks that were queued but not yet started are returned to the caller.
+     */
+    @Nonnull
+    public List<Runnable> shutdown(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        ExecutorService executor = executors.remove(databaseName);
+        if (executor == null) {
+            return Collections.<Runnable>emptyList();
+        }
+
+        if (executor instanceof VirtualThreadDatabaseExecutor) {
+            return ((VirtualThreadDatabaseExecutor) executor).shutdownPending();
+        }
+
+        executor.shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        ((ThreadPoolExecutor) executor).getQueue().drainTo(pending);
+        return pending;
+    }
+
+    /**
+     * Replaces the executor of the given database with a new one created from the current configuration on next use.
+     * Tasks already submitted to the previous executor still run.
+     */
+    public void retire(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        ExecutorService executor = executors.remove(databaseName);
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting tasks for the given database and waits for those already submitted to complete. The executor
+     * is kept so that {@link #shutdown(String)} can still collect whatever did not run in time.
+     *
+     * @return {@code true} if every submitted task completed before the timeout elapsed.
+     */
+    public boolean drain(@Nonnull String databaseName, long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        requireNonNull(unit, "Argument 'unit' must not be null");
+        ExecutorService executor = executors.get(databaseName);
+        if (executor == null) {
+            return true;
+        }
+
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns how many tasks of the given database may run at the same time.
+     */
+    public int getConcurrency(@Nonnull String databaseName) {
+        ExecutorService executor = getExecutor(databaseName);
+        if (executor instanceof VirtualThreadDatabaseExecutor) {
+            return ((VirtualThreadDatabaseExecutor) executor).getMaxRunning();
+        } else if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts the tasks of the given database that have been submitted but have not started running yet.
+     */
+    public int getPendingCount(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        ExecutorService executor = executors.get(databaseName);
+        if (executor instanceof VirtualThreadDatabaseExecutor) {
+            return ((VirtualThreadDatabaseExecutor) executor).getPendingCount();
+        } else if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return 0;
+    }
+
+    @Nonnull
+    protected ExecutorService createExecutor(@Nonnull String databaseName) {
+        Map<String, Object> config = getConfigValue(databaseFactory.getConfigurationFor(databaseName), KEY_EXECUTOR, Collections.<String, Object>emptyMap());
+        int queueSize = Math.max(1, getConfigValueAsInt(config, KEY_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+        boolean virtual = MODE_VIRTUAL.equals(resolveMode());
+        String rejection = resolveRejection(databaseName, getConfigValueAsString(config, KEY_REJECTION, REJECTION_ABORT), virtual);
+
+        if (virtual) {
+            // tie concurrency to the connection pool so callbacks queue on a cheap semaphore rather than inside the pool
+            int maxRunning = Math.max(1, getConfigValueAsInt(config, KEY_THREADS, resolveMaximumPoolSize(databaseName)));
+            VirtualThreadDatabaseExecutor executor = VirtualThreadDatabaseExecutor.create(maxRunning, queueSize, REJECTION_BLOCK.equals(rejection));
+            if (executor != null) {
+                LOG.debug("Creating virtual thread executor for database '{}' running at most {} callbacks, queue size {}", databaseName, maxRunning, queueSize);
+                return executor;
+            }
+            LOG.warn("Virtual threads are not supported by this JVM. Database '{}' falls back to a platform thread pool", databaseName);
+        }
+
+        int threads = Math.max(1, getConfigValueAsInt(config, KEY_THREADS, DEFAULT_THREADS));
+        LOG.debug("Creating executor for database '{}' with {} threads, queue size {} and '{}' rejection policy", databaseName, threads, queueSize, rejection);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            new NamedThreadFactory("ebean-" + databaseName),
+            resolveRejectionHandler(rejection));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Nonnull
+    private String resolveMode() {
+        Object handler = databaseFactory.getConfiguration().get(KEY_HANDLER);
+        if (!(handler instanceof Map)) {
+            return MODE_PLATFORM;
+        }
+
+        String mode = getConfigValueAsString(asMap(handler), KEY_MODE, MODE_PLATFORM).trim().toLowerCase(Locale.ENGLISH);
+        if (!MODE_PLATFORM.equals(mode) && !MODE_VIRTUAL.equals(mode)) {
+            throw new IllegalArgumentException("Invalid handler mode '" + mode + "'. Valid values are '" + MODE_PLATFORM + "' and '" + MODE_VIRTUAL + "'");
+        }
+        return mode;
+    }
+
+    @Nonnull
+    private static String resolveRejection(@Nonnull String databaseName, @Nonnull String value, boolean virtual) {
+        String rejection = value.trim().toLowerCase(Locale.ENGLISH);
+        switch (rejection) {
+            case REJECTION_ABORT:
+            case REJECTION_BLOCK:
+                return rejection;
+            case REJECTION_CALLER_RUNS:
+                if (!virtual) {
+                    return rejection;
+                }
+                throw new IllegalArgumentException("Executor rejection policy '" + rejection + "' of database '" + databaseName + "' is not supported with virtual threads. Use '"
+                    + REJECTION_ABORT + "' or '" + REJECTION_BLOCK + "'");
+            default:
+                throw new IllegalArgumentException("Invalid executor rejection policy '" + value + "' for database '" + databaseName + "'. Valid values are '"
+                    + REJECTION_ABORT + "', '" + REJECTION_BLOCK + "' and '" + REJECTION_CALLER_RUNS + "'");
+        }
+    }
+
+    int resolveMaximumPoolSize(@Nonnull String databaseName) {
+        // the pool belongs to the data source the database points to, which may not share its name
+        Object dataSource = DefaultDatabaseFactory.getDataSourceKey(databaseFactory.getConfigurationFor(databaseName), databaseName);
+        if (!(dataSource instanceof String)) {
+            // a data source given in the definition has no configuration to read its pool size from
+            return DEFAULT_MAXIMUM_POOL_SIZE;
+        }
+        Object pool = dataSourceFactory.getConfigurationFor((String) dataSource).get(KEY_POOL);
+        if (pool instanceof Map) {
+            return getConfigValueAsInt(asMap(pool), KEY_MAXIMUM_POOL_SIZE, DEFAULT_MAXIMUM_POOL_SIZE);
+        }
+        return DEFAULT_MAXIMUM_POOL_SIZE;
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(@Nonnull Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    @Nonnull
+    private static RejectedExecutionHandler resolveRejectionHandler(@Nonnull String rejection) {
+        switch (rejection) {
+            case REJECTION_BLOCK:
+                return new BlockingPolicy();
+            case REJECTION_CALLER_RUNS:
+                return new CallerRunsPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+
+    /**
+     * Makes the submitting thread wait until the queue has room, pushing back on callers when the database falls behind.
+     */
+    private static class BlockingPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the task on the submitting thread when the queue is full. Unlike {@link ThreadPoolExecutor.CallerRunsPolicy},
+     * which silently discards tasks once the executor has been shut down, it rejects them so that their callers learn
+     * about it.
+     */
+    private static class CallerRunsPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            runnable.run();
+        }
+    }
+}
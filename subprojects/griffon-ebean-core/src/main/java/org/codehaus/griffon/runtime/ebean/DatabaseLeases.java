@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import io.ebean.Database;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Counts the callbacks running on each {@code Database} instance, letting an instance that has been replaced
+ * finish its work before being closed.
+ * <p>
+ * Leases also act as the admission gate used during shutdown: once {@link #stopAdmitting()} has been called only
+ * threads that already hold a lease, i.e. nested callbacks, may enter.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseLeases {
+    private static final String ERROR_DATABASE_NULL = "Argument 'database' must not be null";
+    private static final long DRAIN_POLL_INTERVAL = 10L;
+
+    // entries are dropped as soon as their count reaches zero so that closed instances are not retained
+    private final ConcurrentMap<Database, Integer> leases = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[1]);
+    private volatile boolean admitting = true;
+
+    public void enter(@Nonnull Database database) {
+        requireNonNull(database, ERROR_DATABASE_NULL);
+        leases.merge(database, 1, Integer::sum);
+        held.get()[0]++;
+    }
+
+    public void exit(@Nonnull Database database) {
+        requireNonNull(database, ERROR_DATABASE_NULL);
+        leases.computeIfPresent(database, (k, count) -> count > 1 ? count - 1 : null);
+        held.get()[0]--;
+    }
+
+    /**
+     * Rejects new callbacks from now on. Callbacks already running, and callbacks nested inside them, are unaffected.
+     */
+    public void stopAdmitting() {
+        admitting = false;
+    }
+
+    public boolean isAdmitting() {
+        return admitting;
+    }
+
+    /**
+     * Whether a callback started by the current thread may run.
+     */
+    public boolean isAdmitted() {
+        return admitting || held.get()[0] > 0;
+    }
+
+    public int getLeaseCount(@Nonnull Database database) {
+        requireNonNull(database, ERROR_DATABASE_NULL);
+        Integer count = leases.get(database);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Waits until no callback runs on the given instance.
+     *
+     * @return {@code true} if the instance was drained before the timeout elapsed.
+     */
+    public boolean drain(@Nonnull Database database, long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        requireNonNull(database, ERROR_DATABASE_NULL);
+        requireNonNull(unit, "Argument 'unit' must not be null");
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (leases.containsKey(database)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(DRAIN_POLL_INTERVAL);
+        }
+        return true;
+    }
+}
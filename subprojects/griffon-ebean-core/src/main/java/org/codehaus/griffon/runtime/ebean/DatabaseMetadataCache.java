@@ -0,0 +1,286 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.core.env.Metadata;
+import io.ebean.Database;
+import io.ebean.plugin.BeanType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Remembers the entity classes Ebean found on the classpath the first time a database was created, so that later
+ * boots hand them to {@code DatabaseConfig.setClasses()} and skip the classpath scan. Each cache file records a hash
+ * of the bytecode of those classes, the Ebean version and the application version; any difference discards it.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseMetadataCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseMetadataCache.class);
+    private static final String KEY_METADATA_CACHE = "metadata_cache";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_DIRECTORY = "directory";
+    private static final String KEY_CLASSES = "classes";
+    private static final String PROPERTY_HASH = "hash";
+    private static final String PROPERTY_CLASSES = "classes";
+    private static final String PROPERTY_BOOT_NANOS = "boot_nanos";
+
+    private final Metadata metadata;
+
+    @Inject
+    public DatabaseMetadataCache(@Nonnull Metadata metadata) {
+        this.metadata = requireNonNull(metadata, "Argument 'metadata' must not be null");
+    }
+
+    /**
+     * Cached metadata of a single database.
+     */
+    public static final class Entry {
+        private final List<Class<?>> classes;
+        private final long bootNanos;
+
+        private Entry(@Nonnull List<Class<?>> classes, long bootNanos) {
+            this.classes = Collections.unmodifiableList(classes);
+            this.bootNanos = bootNanos;
+        }
+
+        @Nonnull
+        public List<Class<?>> getClasses() {
+            return classes;
+        }
+
+        /**
+         * Time Ebean took to create the database without the cache.
+         */
+        public long getBootNanos() {
+            return bootNanos;
+        }
+    }
+
+    /**
+     * Whether the given database opted in. Databases that list their {@code classes} are never scanned and gain nothing.
+     */
+    public boolean isEnabled(@Nonnull Map<String, Object> config) {
+        requireNonNull(config, "Argument 'config' must not be null");
+        return settings(config) != null && config.get(KEY_CLASSES) == null;
+    }
+
+    /**
+     * @return the cached metadata or {@code null} when there is none or it no longer matches the classes on the classpath.
+     */
+    @Nullable
+    public Entry load(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        if (!isEnabled(config)) {
+            return null;
+        }
+
+        Path file = fileFor(databaseName, config);
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Could not read metadata cache {}", file, e);
+            return null;
+        }
+
+        try {
+            List<Class<?>> classes = new ArrayList<>();
+            ClassLoader classLoader = classLoader();
+            for (String className : properties.getProperty(PROPERTY_CLASSES, "").split(",")) {
+                if (!className.isEmpty()) {
+                    classes.add(Class.forName(className, false, classLoader));
+                }
+            }
+            if (classes.isEmpty() || !hash(classes).equals(properties.getProperty(PROPERTY_HASH))) {
+                LOG.debug("Metadata cache of database '{}' is stale", databaseName);
+                return null;
+            }
+            return new Entry(classes, Long.parseLong(properties.getProperty(PROPERTY_BOOT_NANOS, "0")));
+        } catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+            LOG.debug("Metadata cache of database '{}' is stale", databaseName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Records the entity classes of a database that was created without the cache.
+     */
+    public void store(@Nonnull String databaseName, @Nonnull Map<String, Object> config, @Nonnull Database database, long bootNanos) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(database, "Argument 'database' must not be null");
+        if (!isEnabled(config)) {
+            return;
+        }
+
+        List<Class<?>> classes = new ArrayList<>();
+        for (BeanType<?> beanType : database.pluginApi().beanTypes()) {
+            classes.add(beanType.getBeanType());
+        }
+        if (classes.isEmpty()) {
+            return;
+        }
+
+        Path file = fileFor(databaseName, config);
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(PROPERTY_HASH, hash(classes));
+            properties.setProperty(PROPERTY_CLASSES, String.join(",", classNames(classes)));
+            properties.setProperty(PROPERTY_BOOT_NANOS, String.valueOf(bootNanos));
+
+            // written aside and moved in place, a concurrent reader never sees a partial file
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), databaseName, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Ebean metadata of database '" + databaseName + "'");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Could not write metadata cache {}", file, e);
+        }
+    }
+
+    /**
+     * Removes the cache of a database, for example when Ebean rejected the cached classes.
+     */
+    public void evict(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        if (settings(config) == null) {
+            return;
+        }
+        Path file = fileFor(databaseName, config);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete metadata cache {}", file, e);
+        }
+    }
+
+    @Nonnull
+    Path fileFor(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        Map<String, Object> settings = settings(config);
+        String directory = settings != null ? getConfigValueAsString(settings, KEY_DIRECTORY, null) : null;
+        Path root = directory != null ? Paths.get(directory) :
+            Paths.get(System.getProperty("user.home"), ".griffon", metadata.getApplicationName(), "ebean");
+        return root.resolve(databaseName + ".metadata");
+    }
+
+    @Nonnull
+    private String hash(@Nonnull List<Class<?>> classes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        update(digest, String.valueOf(metadata.getApplicationVersion()));
+        update(digest, String.valueOf(Database.class.getPackage().getImplementationVersion()));
+        for (Class<?> type : sorted(classes)) {
+            update(digest, type.getName());
+            String resource = type.getName().replace('.', '/') + ".class";
+            ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : classLoader();
+            try (InputStream in = classLoader.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalStateException("Could not read bytecode of " + type.getName());
+                }
+                byte[] buffer = new byte[8192];
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(@Nonnull MessageDigest digest, @Nonnull String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    @Nonnull
+    private static List<Class<?>> sorted(@Nonnull List<Class<?>> classes) {
+        List<Class<?>> sorted = new ArrayList<>(classes);
+        sorted.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return sorted;
+    }
+
+    @Nonnull
+    private static List<String> classNames(@Nonnull List<Class<?>> classes) {
+        TreeSet<String> names = new TreeSet<>();
+        for (Class<?> type : classes) {
+            names.add(type.getName());
+        }
+        return new ArrayList<>(names);
+    }
+
+    @Nonnull
+    private static ClassLoader classLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : DatabaseMetadataCache.class.getClassLoader();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> settings(@Nonnull Map<String, Object> config) {
+        // metadata_cache = true or metadata_cache { enabled = true; directory = '...' }
+        Object value = config.get(KEY_METADATA_CACHE);
+        if (value instanceof Map) {
+            Map<String, Object> settings = (Map<String, Object>) value;
+            return getConfigValueAsBoolean(settings, KEY_ENABLED, true) ? settings : null;
+        }
+        return value != null && Boolean.parseBoolean(String.valueOf(value)) ? Collections.<String, Object>emptyMap() : null;
+    }
+}
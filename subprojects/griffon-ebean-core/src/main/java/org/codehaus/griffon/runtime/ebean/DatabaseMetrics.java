@@ -0,0 +1,313 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.Database;
+import io.ebean.meta.MetaCountMetric;
+import io.ebean.meta.MetaQueryMetric;
+import io.ebean.meta.MetaTimedMetric;
+import io.ebean.meta.ServerMetrics;
+import org.codehaus.griffon.runtime.ebean.cache.OffHeapServerCachePlugin;
+import org.codehaus.griffon.runtime.ebean.monitor.CacheStatistics;
+import org.codehaus.griffon.runtime.ebean.monitor.ResultCacheStatistics;
+import org.codehaus.griffon.runtime.ebean.monitor.WriteBehindStatistics;
+import org.codehaus.griffon.runtime.ebean.monitor.QueryPlanStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Performance counters of a single database. Recording methods are lock-free and never allocate.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseMetrics {
+    private static final String TRANSACTION_METRIC_PREFIX = "txn.";
+    private static final String CACHE_HIT_SUFFIX = ".hit";
+    private static final String CACHE_MISS_SUFFIX = ".miss";
+
+    private final String databaseName;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder destructions = new LongAdder();
+    private volatile long lastCreationNanos;
+    private volatile long lastDestructionNanos;
+    private volatile long lastWarmupNanos;
+    private volatile OffHeapServerCachePlugin cachePlugin;
+    private volatile ResultCache resultCache;
+    private volatile WriteBehindQueue writeBehindQueue;
+    private volatile boolean metadataCached;
+    private volatile long metadataCacheSavedNanos;
+
+    // Ebean resets its own counters every time they are collected, totals are kept here
+    private final Map<String, QueryPlanStatistics> queryPlans = new LinkedHashMap<>();
+    private final Map<String, long[]> cacheCounts = new LinkedHashMap<>();
+    private long transactions;
+
+    public DatabaseMetrics(@Nonnull String databaseName) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+    }
+
+    @Nonnull
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    /**
+     * Marks the start of a callback.
+     *
+     * @return the start time to be handed back to {@link #callEnded(long, boolean)}
+     */
+    public long callStarted() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a callback.
+     *
+     * @return the callback's duration in nanoseconds
+     */
+    public long callEnded(long startNanos, boolean failed) {
+        long duration = System.nanoTime() - startNanos;
+        latency.record(duration);
+        inFlight.decrementAndGet();
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        return duration;
+    }
+
+    public void databaseCreated(long durationNanos) {
+        creations.increment();
+        lastCreationNanos = durationNanos;
+    }
+
+    public void databaseDestroyed(long durationNanos) {
+        destructions.increment();
+        lastDestructionNanos = durationNanos;
+    }
+
+    /**
+     * Records that the current instance was booted from cached metadata.
+     *
+     * @param savedNanos boot time saved compared to the boot that scanned the classpath
+     */
+    public void metadataCacheUsed(long savedNanos) {
+        metadataCached = true;
+        metadataCacheSavedNanos = savedNanos;
+    }
+
+    public void metadataCacheMissed() {
+        metadataCached = false;
+        metadataCacheSavedNanos = 0L;
+    }
+
+    public boolean isMetadataCached() {
+        return metadataCached;
+    }
+
+    public long getMetadataCacheSavedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metadataCacheSavedNanos);
+    }
+
+    /**
+     * Tracks the L2 cache plugin of the current instance, {@code null} when the off-heap cache is disabled.
+     */
+    public void setCachePlugin(@Nullable OffHeapServerCachePlugin cachePlugin) {
+        this.cachePlugin = cachePlugin;
+    }
+
+    @Nonnull
+    public List<CacheStatistics> getCacheStatistics() {
+        OffHeapServerCachePlugin plugin = cachePlugin;
+        return plugin != null ? plugin.getCacheStatistics() : Collections.<CacheStatistics>emptyList();
+    }
+
+    /**
+     * Tracks the result cache of the current instance, {@code null} when the result cache is disabled.
+     */
+    public void setResultCache(@Nullable ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    @Nullable
+    public ResultCacheStatistics getResultCacheStatistics() {
+        ResultCache cache = resultCache;
+        return cache != null ? cache.getStatistics() : null;
+    }
+
+    /**
+     * Tracks the write-behind queue of the database, {@code null} when write-behind is not enabled.
+     */
+    void setWriteBehindQueue(@Nullable WriteBehindQueue writeBehindQueue) {
+        this.writeBehindQueue = writeBehindQueue;
+    }
+
+    @Nullable
+    public WriteBehindStatistics getWriteBehindStatistics() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue != null ? queue.getStatistics() : null;
+    }
+
+    public int getWriteBehindDepth() {
+        WriteBehindQueue queue = writeBehindQueue;
+        return queue != null ? queue.getDepth() : 0;
+    }
+
+    /**
+     * Marks a callback turned away by the database's bulkhead before it could run.
+     */
+    public void bulkheadRejected() {
+        bulkheadRejections.increment();
+    }
+
+    public void databaseWarmedUp(long durationNanos) {
+        lastWarmupNanos = durationNanos;
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getBulkheadRejectedCount() {
+        return bulkheadRejections.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Nonnull
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCreationCount() {
+        return creations.sum();
+    }
+
+    public long getDestructionCount() {
+        return destructions.sum();
+    }
+
+    public long getLastCreationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastCreationNanos);
+    }
+
+    public long getLastWarmupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastWarmupNanos);
+    }
+
+    public long getLastDestructionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastDestructionNanos);
+    }
+
+    /**
+     * Pulls query, transaction and L2 cache metrics from the given database and adds them to the running totals.
+     */
+    public synchronized void collectEbeanMetrics(@Nonnull Database database) {
+        ServerMetrics serverMetrics = database.getMetaInfoManager().collectMetrics();
+        for (MetaTimedMetric metric : serverMetrics.getTimedMetrics()) {
+            if (metric.getName().startsWith(TRANSACTION_METRIC_PREFIX)) {
+                transactions += metric.getCount();
+            }
+        }
+
+        for (MetaQueryMetric metric : serverMetrics.getQueryMetrics()) {
+            QueryPlanStatistics statistics = queryPlans.get(metric.getName());
+            if (statistics == null) {
+                statistics = new QueryPlanStatistics(metric.getName(), metric.getSql());
+                queryPlans.put(metric.getName(), statistics);
+            }
+            statistics.add(metric.getCount(), metric.getTotal(), metric.getMax());
+        }
+
+        for (MetaCountMetric metric : serverMetrics.getCountMetrics()) {
+            String name = metric.getName();
+            if (name.endsWith(CACHE_HIT_SUFFIX)) {
+                cacheCountsFor(name.substring(0, name.length() - CACHE_HIT_SUFFIX.length()))[0] += metric.getCount();
+            } else if (name.endsWith(CACHE_MISS_SUFFIX)) {
+                cacheCountsFor(name.substring(0, name.length() - CACHE_MISS_SUFFIX.length()))[1] += metric.getCount();
+            }
+        }
+    }
+
+    @Nonnull
+    private long[] cacheCountsFor(@Nonnull String cacheName) {
+        long[] counts = cacheCounts.get(cacheName);
+        if (counts == null) {
+            counts = new long[2];
+            cacheCounts.put(cacheName, counts);
+        }
+        return counts;
+    }
+
+    public synchronized long getTransactionCount() {
+        return transactions;
+    }
+
+    @Nonnull
+    public synchronized List<QueryPlanStatistics> getQueryPlanStatistics() {
+        List<QueryPlanStatistics> statistics = new ArrayList<>();
+        for (QueryPlanStatistics s : queryPlans.values()) {
+            statistics.add(s.copy());
+        }
+        return statistics;
+    }
+
+    @Nullable
+    public synchronized QueryPlanStatistics getQueryPlanStatistics(@Nonnull String name) {
+        QueryPlanStatistics statistics = queryPlans.get(name);
+        return statistics != null ? statistics.copy() : null;
+    }
+
+    /**
+     * Returns the hit ratio, as a percentage, of every L2 cache that has been accessed.
+     */
+    @Nonnull
+    public synchronized Map<String, Integer> getCacheHitRatios() {
+        Map<String, Integer> ratios = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> e : cacheCounts.entrySet()) {
+            long hits = e.getValue()[0];
+            long total = hits + e.getValue()[1];
+            ratios.put(e.getKey(), total == 0 ? 0 : (int) (hits * 100 / total));
+        }
+        return ratios;
+    }
+}
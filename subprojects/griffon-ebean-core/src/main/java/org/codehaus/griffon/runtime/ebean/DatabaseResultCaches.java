@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.cache.ServerCacheNotify;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps one {@code ResultCache} per database name, configured by the {@code result_cache} block of each database.
+ * <p>
+ * Entries are dropped when Ebean reports modifications of the tables they were read from, which requires the L2 cache
+ * to be managed by the plugin. Databases with a result cache therefore always get the plugin's cache, kept on the heap
+ * unless the off-heap cache is enabled.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseResultCaches {
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_MAX_WEIGHT = "max_weight";
+    private static final String KEY_TTL = "ttl";
+    private static final long DEFAULT_MAX_WEIGHT = 10000L;
+    private static final long DEFAULT_TTL = 60000L;
+
+    private final ConcurrentMap<String, ResultCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the result cache of a database that is about to be created from the given {@code result_cache} entry.
+     * Either a boolean or a block with an {@code enabled} flag, which defaults to {@code true}.
+     *
+     * @return the new cache or {@code null} if the result cache is not enabled.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public ResultCache configure(@Nonnull String databaseName, @Nullable Object value) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        Map<String, Object> config;
+        if (value instanceof Map) {
+            config = (Map<String, Object>) value;
+        } else if (value != null && Boolean.parseBoolean(String.valueOf(value))) {
+            config = Collections.emptyMap();
+        } else {
+            caches.remove(databaseName);
+            return null;
+        }
+        if (!getConfigValueAsBoolean(config, KEY_ENABLED, true)) {
+            caches.remove(databaseName);
+            return null;
+        }
+
+        // results read through a previous instance are not carried over
+        ResultCache cache = new ResultCache(databaseName,
+            getConfigValueAsLong(config, KEY_MAX_WEIGHT, DEFAULT_MAX_WEIGHT),
+            getConfigValueAsLong(config, KEY_TTL, DEFAULT_TTL));
+        caches.put(databaseName, cache);
+        return cache;
+    }
+
+    /**
+     * @return the cache of the given database or {@code null} if the database has no result cache.
+     */
+    @Nullable
+    public ResultCache getCache(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        return caches.get(databaseName);
+    }
+
+    /**
+     * Wraps the listener Ebean notifies of table modifications so that results read from those tables are dropped.
+     */
+    @Nonnull
+    public ServerCacheNotify decorate(@Nonnull String databaseName, @Nonnull ServerCacheNotify listener) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(listener, "Argument 'listener' must not be null");
+        return notification -> {
+            listener.notify(notification);
+            Set<String> tables = notification.getDependentTables();
+            // resolved on every notification, the cache is replaced whenever the database is created again
+            ResultCache cache = caches.get(databaseName);
+            if (cache != null && tables != null) {
+                cache.invalidate(tables);
+            }
+        };
+    }
+
+    /**
+     * Drops every result of a cache created for an instance that is being closed. The cache is forgotten unless it
+     * has already been replaced by the cache of a newer instance, which is left untouched.
+     */
+    public void clear(@Nonnull String databaseName, @Nonnull ResultCache cache) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(cache, "Argument 'cache' must not be null");
+        cache.clear();
+        caches.remove(databaseName, cache);
+    }
+}
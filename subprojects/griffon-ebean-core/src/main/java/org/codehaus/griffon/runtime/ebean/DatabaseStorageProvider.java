@@ -0,0 +1,73 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseStorage;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.util.Collections;
+import java.util.Map;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Supplies a {@code BoundedDatabaseStorage} when the {@code storage} block sets either {@code max_size} or
+ * {@code idle_timeout}, a {@code DefaultDatabaseStorage} otherwise.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseStorageProvider implements Provider<DatabaseStorage> {
+    private static final String KEY_STORAGE = "storage";
+    private static final String KEY_MAX_SIZE = "max_size";
+    private static final String KEY_IDLE_TIMEOUT = "idle_timeout";
+    private static final String KEY_SWEEP_INTERVAL = "sweep_interval";
+    private static final long DEFAULT_SWEEP_INTERVAL = 30000L;
+
+    private final Configuration configuration;
+    private final DatabaseFactory databaseFactory;
+
+    @Inject
+    public DatabaseStorageProvider(@Nonnull @Named("ebean") Configuration configuration, @Nonnull DatabaseFactory databaseFactory) {
+        this.configuration = requireNonNull(configuration, "Argument 'configuration' must not be null");
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DatabaseStorage get() {
+        Object block = configuration.get(KEY_STORAGE);
+        Map<String, Object> storage = block instanceof Map ? (Map<String, Object>) block : Collections.<String, Object>emptyMap();
+
+        int maxSize = getConfigValueAsInt(storage, KEY_MAX_SIZE, 0);
+        long idleTimeout = getConfigValueAsLong(storage, KEY_IDLE_TIMEOUT, 0L);
+        if (maxSize <= 0 && idleTimeout <= 0) {
+            return new DefaultDatabaseStorage();
+        }
+
+        long sweepInterval = getConfigValueAsLong(storage, KEY_SWEEP_INTERVAL, Math.min(Math.max(idleTimeout, 1L), DEFAULT_SWEEP_INTERVAL));
+        return new BoundedDatabaseStorage(databaseFactory, maxSize, idleTimeout, sweepInterval);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.TxOptions;
+import io.ebean.annotation.TxIsolation;
+
+import javax.inject.Inject;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.ConfigUtils.getConfigValue;
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps the default {@code TxOptions} of each database, configured by the {@code transaction} block of each database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseTxDefaults {
+    private static final String KEY_TRANSACTION = "transaction";
+    private static final String KEY_ISOLATION = "isolation";
+    private static final String KEY_READ_ONLY = "read_only";
+    private static final String KEY_BATCH_MODE = "batch_mode";
+    private static final String KEY_BATCH_SIZE = "batch_size";
+    private static final String KEY_FLUSH_ON_QUERY = "flush_on_query";
+
+    private final DatabaseFactory databaseFactory;
+    private final ConcurrentMap<String, TxOptions> txOptions = new ConcurrentHashMap<>();
+
+    @Inject
+    public DatabaseTxDefaults(@Nonnull DatabaseFactory databaseFactory) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+    }
+
+    @Nonnull
+    public TxOptions getTxOptions(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        TxOptions options = txOptions.get(databaseName);
+        if (options == null) {
+            options = createTxOptions(databaseName);
+            TxOptions existing = txOptions.putIfAbsent(databaseName, options);
+            if (existing != null) {
+                options = existing;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Drops the cached options of the given database, the next call reads them from the current configuration.
+     */
+    public void invalidate(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        txOptions.remove(databaseName);
+    }
+
+    @Nonnull
+    protected TxOptions createTxOptions(@Nonnull String databaseName) {
+        Map<String, Object> config = getConfigValue(databaseFactory.getConfigurationFor(databaseName), KEY_TRANSACTION, Collections.<String, Object>emptyMap());
+
+        TxOptions options = TxOptions.defaults();
+        if (config.containsKey(KEY_ISOLATION)) {
+            options = options.withIsolation(parseIsolation(databaseName, config.get(KEY_ISOLATION)));
+        }
+        if (config.containsKey(KEY_READ_ONLY)) {
+            options = options.withReadOnly(getConfigValueAsBoolean(config, KEY_READ_ONLY, false));
+        }
+        if (config.containsKey(KEY_BATCH_MODE)) {
+            options = options.withBatchMode(getConfigValueAsBoolean(config, KEY_BATCH_MODE, false));
+        }
+        if (config.containsKey(KEY_BATCH_SIZE)) {
+            options = options.withBatchSize(getConfigValueAsInt(config, KEY_BATCH_SIZE, 0));
+        }
+        if (config.containsKey(KEY_FLUSH_ON_QUERY)) {
+            options = options.withFlushOnQuery(getConfigValueAsBoolean(config, KEY_FLUSH_ON_QUERY, true));
+        }
+        return options;
+    }
+
+    @Nonnull
+    private static TxIsolation parseIsolation(@Nonnull String databaseName, @Nonnull Object value) {
+        if (value instanceof TxIsolation) {
+            return (TxIsolation) value;
+        } else if (value instanceof Number) {
+            return TxIsolation.fromLevel(((Number) value).intValue());
+        }
+
+        String isolation = String.valueOf(value).trim().toUpperCase(Locale.ENGLISH).replace('-', '_').replace(' ', '_');
+        if ("READ_COMMITTED".equals(isolation)) {
+            // Ebean spells this constant with a single 'T'
+            return TxIsolation.READ_COMMITED;
+        }
+        for (TxIsolation candidate : TxIsolation.values()) {
+            if (candidate.name().equals(isolation)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Invalid transaction isolation '" + value + "' for database " + databaseName);
+    }
+}
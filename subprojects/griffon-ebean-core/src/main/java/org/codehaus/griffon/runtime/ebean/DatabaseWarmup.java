@@ -0,0 +1,236 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.CacheMode;
+import io.ebean.Database;
+import io.ebean.Transaction;
+import io.ebean.plugin.BeanType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Prepares a freshly created database for its first callers, as configured by its {@code warmup} block. Pool
+ * connections are opened and validated, warm-up queries are executed, every entity is queried once so that Ebean
+ * compiles its query plan, and the bean cache of selected entities is loaded.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class DatabaseWarmup {
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseWarmup.class);
+    private static final String KEY_WARMUP = "warmup";
+    private static final String KEY_CONNECTIONS = "connections";
+    private static final String KEY_QUERIES = "queries";
+    private static final String KEY_ENTITIES = "entities";
+    private static final String KEY_CACHES = "caches";
+    private static final String KEY_CACHE_MAX_ROWS = "cache_max_rows";
+    private static final String KEY_FAIL_ON_ERROR = "fail_on_error";
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final int connections;
+    private final List<String> queries;
+    private final boolean allEntities;
+    private final List<String> entities;
+    private final List<String> caches;
+    private final int cacheMaxRows;
+    private final boolean failOnError;
+
+    public DatabaseWarmup(int connections, @Nonnull List<String> queries, boolean allEntities, @Nonnull List<String> entities,
+                          @Nonnull List<String> caches, int cacheMaxRows, boolean failOnError) {
+        this.connections = connections;
+        this.queries = Collections.unmodifiableList(new ArrayList<>(requireNonNull(queries, "Argument 'queries' must not be null")));
+        this.allEntities = allEntities;
+        this.entities = Collections.unmodifiableList(new ArrayList<>(requireNonNull(entities, "Argument 'entities' must not be null")));
+        this.caches = Collections.unmodifiableList(new ArrayList<>(requireNonNull(caches, "Argument 'caches' must not be null")));
+        this.cacheMaxRows = cacheMaxRows;
+        this.failOnError = failOnError;
+    }
+
+    /**
+     * Reads the {@code warmup} block of a database configuration.
+     *
+     * @return the warm-up settings or {@code null} when the block is missing.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static DatabaseWarmup of(@Nonnull Map<String, Object> config) {
+        requireNonNull(config, "Argument 'config' must not be null");
+        Object block = config.get(KEY_WARMUP);
+        if (!(block instanceof Map)) {
+            return null;
+        }
+
+        Map<String, Object> warmup = (Map<String, Object>) block;
+        // entities = true queries every entity, a list only the named ones
+        Object entities = warmup.get(KEY_ENTITIES);
+        boolean allEntities = entities != null && !(entities instanceof Collection) && Boolean.parseBoolean(String.valueOf(entities));
+        return new DatabaseWarmup(
+            getConfigValueAsInt(warmup, KEY_CONNECTIONS, 0),
+            toList(warmup.get(KEY_QUERIES)),
+            allEntities,
+            allEntities ? Collections.<String>emptyList() : toList(entities),
+            toList(warmup.get(KEY_CACHES)),
+            getConfigValueAsInt(warmup, KEY_CACHE_MAX_ROWS, 10000),
+            getConfigValueAsBoolean(warmup, KEY_FAIL_ON_ERROR, false));
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    @Nonnull
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public boolean isAllEntities() {
+        return allEntities;
+    }
+
+    @Nonnull
+    public List<String> getEntities() {
+        return entities;
+    }
+
+    @Nonnull
+    public List<String> getCaches() {
+        return caches;
+    }
+
+    public boolean isFailOnError() {
+        return failOnError;
+    }
+
+    /**
+     * Runs every configured step. Failures are logged and skipped unless {@code fail_on_error} is set.
+     *
+     * @return the time spent warming up, in nanoseconds.
+     */
+    public long run(@Nonnull String databaseName, @Nonnull Database database) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(database, "Argument 'database' must not be null");
+        long start = System.nanoTime();
+
+        if (connections > 0) {
+            step(databaseName, "opening " + connections + " connections", () -> openConnections(database));
+        }
+        for (String query : queries) {
+            step(databaseName, "executing '" + query + "'", () -> database.sqlQuery(query).setMaxRows(1).findList());
+        }
+        for (Class<?> entity : resolveEntities(databaseName, database)) {
+            step(databaseName, "querying " + entity.getName(), () -> database.find(entity).setMaxRows(1).findList());
+        }
+        for (String cache : caches) {
+            step(databaseName, "loading the bean cache of " + cache, () -> database.find(loadClass(cache))
+                .setBeanCacheMode(CacheMode.PUT)
+                .setMaxRows(cacheMaxRows)
+                .findList());
+        }
+
+        long duration = System.nanoTime() - start;
+        LOG.debug("Warmed up database '{}' in {} ms", databaseName, duration / 1000000L);
+        return duration;
+    }
+
+    private void openConnections(@Nonnull Database database) {
+        // transactions are held open at the same time so that the pool grows to the requested size
+        List<Transaction> transactions = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Transaction transaction = database.createTransaction();
+                transactions.add(transaction);
+                if (!transaction.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    throw new IllegalStateException("Connection " + (i + 1) + " is not valid");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            for (Transaction transaction : transactions) {
+                transaction.end();
+            }
+        }
+    }
+
+    @Nonnull
+    private List<Class<?>> resolveEntities(@Nonnull String databaseName, @Nonnull Database database) {
+        List<Class<?>> classes = new ArrayList<>();
+        if (allEntities) {
+            for (BeanType<?> beanType : database.pluginApi().beanTypes()) {
+                classes.add(beanType.getBeanType());
+            }
+        } else {
+            for (String entity : entities) {
+                step(databaseName, "loading " + entity, () -> classes.add(loadClass(entity)));
+            }
+        }
+        return classes;
+    }
+
+    private void step(@Nonnull String databaseName, @Nonnull String description, @Nonnull Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            if (failOnError) {
+                throw new IllegalStateException("Warm-up of database '" + databaseName + "' failed " + description, e);
+            }
+            LOG.warn("Warm-up of database '{}' failed {}", databaseName, description, e);
+        }
+    }
+
+    @Nonnull
+    private static Class<?> loadClass(@Nonnull String className) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(className, false, classLoader != null ? classLoader : DatabaseWarmup.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Entity class " + className + " not found", e);
+        }
+    }
+
+    @Nonnull
+    private static List<String> toList(@Nullable Object value) {
+        List<String> values = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object o : (Collection<?>) value) {
+                values.add(o instanceof Class ? ((Class<?>) o).getName() : String.valueOf(o).trim());
+            }
+        } else if (value instanceof Class) {
+            values.add(((Class<?>) value).getName());
+        } else if (value != null) {
+            values.add(String.valueOf(value).trim());
+        }
+        values.removeIf(String::isEmpty);
+        return values;
+    }
+}
@@ -18,30 +18,56 @@
 package org.codehaus.griffon.runtime.ebean;
 
 import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
 import griffon.core.GriffonApplication;
 import griffon.core.injection.Injector;
 import griffon.plugins.datasource.DataSourceFactory;
 import griffon.plugins.datasource.DataSourceStorage;
 import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
 import griffon.plugins.ebean.EbeanBootstrap;
+import griffon.plugins.ebean.StartupMode;
 import griffon.plugins.ebean.events.DatabaseConnectEndEvent;
 import griffon.plugins.ebean.events.DatabaseConnectStartEvent;
 import griffon.plugins.ebean.events.DatabaseDisconnectEndEvent;
 import griffon.plugins.ebean.events.DatabaseDisconnectStartEvent;
-import griffon.util.GriffonClassUtils;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
 import io.ebean.Database;
+import io.ebean.cache.ServerCacheNotify;
 import io.ebean.config.DatabaseConfig;
 import org.codehaus.griffon.runtime.core.storage.AbstractObjectFactory;
+import org.codehaus.griffon.runtime.ebean.cache.OffHeapCacheSettings;
+import org.codehaus.griffon.runtime.ebean.cache.OffHeapServerCachePlugin;
+import org.codehaus.griffon.runtime.ebean.cluster.CacheInvalidationBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 import static griffon.util.ConfigUtils.getConfigValue;
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
 import static griffon.util.GriffonNameUtils.requireNonBlank;
 import static java.util.Objects.requireNonNull;
 
@@ -49,12 +75,32 @@ import static java.util.Objects.requireNonNull;
  * @author Andres Almiray
  */
 public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> implements DatabaseFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDatabaseFactory.class);
     private static final String ERROR_SESSION_FACTORY_NAME_BLANK = "Argument 'databaseName' must not be blank";
-    private static final String[] CUSTOM_PROPERTIES = {
+    private static final String KEY_REPLICAS = "replicas";
+    private static final String KEY_DATASOURCE = "datasource";
+    private static final String KEY_DATASOURCES = "datasources";
+    private static final Set<String> CUSTOM_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "bulkhead",
+        "cache",
         "connect_on_startup",
-        "schema"
-    };
-    private final Set<String> databaseNames = new LinkedHashSet<>();
+        "datasource",
+        "executor",
+        "metadata_cache",
+        "replicas",
+        "result_cache",
+        "schema",
+        "transaction",
+        "warmup",
+        "write_behind"
+    )));
+    private final Set<String> databaseNames = new CopyOnWriteArraySet<>();
+    private final ConcurrentMap<String, Map<String, Object>> definitions = new ConcurrentHashMap<>();
+    private final Map<Database, Map<String, Object>> instanceConfigs = Collections.synchronizedMap(new IdentityHashMap<Database, Map<String, Object>>());
+    private final Map<Object, Integer> dataSourceUsers = new HashMap<>();
+    private final Map<Database, OffHeapServerCachePlugin> cachePlugins = Collections.synchronizedMap(new IdentityHashMap<Database, OffHeapServerCachePlugin>());
+    private final Map<Database, ReplicaDataSource> replicaDataSources = Collections.synchronizedMap(new IdentityHashMap<Database, ReplicaDataSource>());
+    private final Map<Database, ResultCache> resultCaches = Collections.synchronizedMap(new IdentityHashMap<Database, ResultCache>());
     @Inject
     private DataSourceFactory dataSourceFactory;
 
@@ -64,15 +110,42 @@ public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> impl
     @Inject
     private Injector injector;
 
+    @Inject
+    private DatabaseMetricsRegistry databaseMetricsRegistry;
+
+    @Inject
+    private DatabaseMetricsRecorder databaseMetricsRecorder;
+
+    @Inject
+    private CacheInvalidationBroadcaster cacheInvalidationBroadcaster;
+
+    @Inject
+    private DatabaseMetadataCache databaseMetadataCache;
+
+    @Inject
+    private DatabaseResultCaches databaseResultCaches;
+
     @Inject
     public DefaultDatabaseFactory(@Nonnull @Named("ebean") griffon.core.Configuration configuration, @Nonnull GriffonApplication application) {
         super(configuration, application);
-        databaseNames.add(KEY_DEFAULT);
+        // misspelled properties fail at startup instead of when the database is first used
+        databaseNames.addAll(readDatabaseNames());
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private Set<String> readDatabaseNames() {
+        Set<String> names = new LinkedHashSet<>();
+        names.add(KEY_DEFAULT);
+        Object databases = getConfiguration().get(getPluralKey());
+        if (databases instanceof Map) {
+            names.addAll(((Map<String, Object>) databases).keySet());
+        }
 
-        if (configuration.containsKey(getPluralKey())) {
-            Map<String, Object> ebeanFactories = (Map<String, Object>) configuration.get(getPluralKey());
-            databaseNames.addAll(ebeanFactories.keySet());
+        for (String databaseName : names) {
+            validateConfig(databaseName, narrowConfig(databaseName));
         }
+        return names;
     }
 
     @Nonnull
@@ -81,6 +154,53 @@ public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> impl
         return databaseNames;
     }
 
+    @Nonnull
+    @Override
+    public Set<String> refreshDatabaseNames() {
+        Set<String> configured = readDatabaseNames();
+        // databases defined at runtime outlive their removal from the configuration
+        databaseNames.removeIf(databaseName -> !configured.contains(databaseName) && !definitions.containsKey(databaseName));
+        Set<String> added = new LinkedHashSet<>(configured);
+        added.removeAll(databaseNames);
+        databaseNames.addAll(added);
+        return Collections.unmodifiableSet(added);
+    }
+
+    @Override
+    public void defineDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(config, "Argument 'config' must not be null");
+        validateConfig(databaseName, config);
+        definitions.put(databaseName, Collections.unmodifiableMap(new LinkedHashMap<>(config)));
+        databaseNames.add(databaseName);
+    }
+
+    @Override
+    public boolean undefineDatabase(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        if (KEY_DEFAULT.equals(databaseName)) {
+            throw new IllegalArgumentException("Database '" + databaseName + "' cannot be removed");
+        }
+        definitions.remove(databaseName);
+        return databaseNames.remove(databaseName);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the configuration holds properties that are neither handled by the plugin
+     *                                  nor writable properties of {@code DatabaseConfig}
+     */
+    protected void validateConfig(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        Set<String> unknown = new TreeSet<>();
+        for (String key : config.keySet()) {
+            if (!CUSTOM_PROPERTIES.contains(key) && !DatabaseConfigBinder.isBindable(key)) {
+                unknown.add(key);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown properties " + unknown + " in configuration of database '" + databaseName + "'");
+        }
+    }
+
     @Nonnull
     @Override
     public Map<String, Object> getConfigurationFor(@Nonnull String databaseName) {
@@ -88,6 +208,21 @@ public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> impl
         return narrowConfig(databaseName);
     }
 
+    @Nonnull
+    @Override
+    public StartupMode getStartupMode(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        return StartupMode.of(narrowConfig(databaseName).get("connect_on_startup"));
+    }
+
+    @Nonnull
+    @Override
+    protected Map<String, Object> narrowConfig(@Nonnull String name) {
+        // definitions made at runtime take precedence over the ebean configuration
+        Map<String, Object> definition = definitions.get(name);
+        return definition != null ? definition : super.narrowConfig(name);
+    }
+
     @Nonnull
     @Override
     protected String getSingleKey() {
@@ -103,14 +238,55 @@ public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> impl
     @Nonnull
     @Override
     public Database create(@Nonnull String name) {
+        return create(name, false);
+    }
+
+    @Nonnull
+    @Override
+    public Database createReplacement(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        return create(databaseName, true);
+    }
+
+    @Nonnull
+    private Database create(@Nonnull String name, boolean replacement) {
+        long start = System.nanoTime();
         Map<String, Object> config = narrowConfig(name);
         event(DatabaseConnectStartEvent.of(name, config));
 
-        Database ebeanserver = createDatabase(config, name);
-        for (Object o : injector.getInstances(EbeanBootstrap.class)) {
-            ((EbeanBootstrap) o).init(name, ebeanserver);
+        Database ebeanserver = createDatabase(config, name, replacement);
+        instanceConfigs.put(ebeanserver, config);
+        try {
+            cacheInvalidationBroadcaster.register(name, ebeanserver);
+            for (Object o : injector.getInstances(EbeanBootstrap.class)) {
+                ((EbeanBootstrap) o).init(name, ebeanserver);
+            }
+
+            // first callers should not pay for opening connections and compiling query plans
+            DatabaseWarmup warmup = DatabaseWarmup.of(config);
+            if (warmup != null) {
+                long warmupDuration;
+                try {
+                    warmupDuration = warmup.run(name, ebeanserver);
+                } catch (RuntimeException e) {
+                    throw new RuntimeDatabaseException(name, e);
+                }
+                databaseMetricsRegistry.getMetrics(name).databaseWarmedUp(warmupDuration);
+                databaseMetricsRecorder.databaseWarmedUp(name, ebeanserver, warmupDuration);
+            }
+        } catch (RuntimeException e) {
+            // the instance holds its data sources, cache plugin and replica lag checker until destroyed
+            try {
+                destroy(name, ebeanserver);
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
         }
 
+        long duration = System.nanoTime() - start;
+        databaseMetricsRegistry.getMetrics(name).databaseCreated(duration);
+        databaseMetricsRecorder.databaseCreated(name, ebeanserver, duration);
         event(DatabaseConnectEndEvent.of(name, config, ebeanserver));
         return ebeanserver;
     }
@@ -118,36 +294,294 @@ public class DefaultDatabaseFactory extends AbstractObjectFactory<Database> impl
     @Override
     public void destroy(@Nonnull String name, @Nonnull Database instance) {
         requireNonNull(instance, "Argument 'instance' must not be null");
-        Map<String, Object> config = narrowConfig(name);
+        long start = System.nanoTime();
+        // the instance is closed with the configuration it was created with, it may have been redefined since
+        Map<String, Object> config = instanceConfigs.remove(instance);
+        if (config == null) {
+            config = narrowConfig(name);
+        }
         event(DatabaseDisconnectStartEvent.of(name, config, instance));
 
         for (Object o : injector.getInstances(EbeanBootstrap.class)) {
             ((EbeanBootstrap) o).destroy(name, instance);
         }
 
-        closeDataSource(name);
+        cacheInvalidationBroadcaster.unregister(name, instance);
+        // a replacement built since then has a cache of its own
+        ResultCache resultCache = resultCaches.remove(instance);
+        if (resultCache != null) {
+            databaseResultCaches.clear(name, resultCache);
+        }
+        // lets Ebean finish its own background work, such as batched flushes, while the data sources are still open
+        instance.shutdown(false, false);
+        OffHeapServerCachePlugin cachePlugin = cachePlugins.remove(instance);
+        if (cachePlugin != null) {
+            cachePlugin.close();
+        }
+        ReplicaDataSource replicaDataSource = replicaDataSources.remove(instance);
+        if (replicaDataSource != null) {
+            replicaDataSource.close();
+        }
+        releaseDataSources(config, name);
+        long duration = System.nanoTime() - start;
+        databaseMetricsRegistry.getMetrics(name).databaseDestroyed(duration);
+        databaseMetricsRecorder.databaseDestroyed(name, instance, duration);
 
         event(DatabaseDisconnectEndEvent.of(name, config));
     }
 
     @Nonnull
     protected Database createDatabase(@Nonnull Map<String, Object> config, @Nonnull String databaseName) {
+        return createDatabase(config, databaseName, false);
+    }
+
+    @Nonnull
+    protected Database createDatabase(@Nonnull Map<String, Object> config, @Nonnull String databaseName, boolean replacement) {
         String schemaCreate = getConfigValue(config, "schema", "create");
         boolean ddl = "create".equalsIgnoreCase(schemaCreate);
 
         DatabaseConfig databaseConfig = new DatabaseConfig();
-        databaseConfig.setDataSource(getDataSource(databaseName));
-        databaseConfig.setDdlGenerate(ddl);
-        databaseConfig.setDdlRun(ddl);
+        DataSource dataSource = acquireDataSource(config, databaseName);
+        OffHeapServerCachePlugin cachePlugin = null;
+        ReplicaDataSource replicaDataSource = null;
+        try {
+            replicaDataSource = createReplicaDataSource(config, databaseName, dataSource);
+            if (replicaDataSource != null) {
+                databaseConfig.setDataSource(new ReadWriteDataSource(databaseName, dataSource, replicaDataSource));
+                databaseConfig.setReadOnlyDataSource(replicaDataSource);
+            } else {
+                databaseConfig.setDataSource(dataSource);
+            }
+            databaseConfig.setDdlGenerate(ddl);
+            databaseConfig.setDdlRun(ddl);
 
-        for (Map.Entry<String, Object> e : config.entrySet()) {
-            if (Arrays.binarySearch(CUSTOM_PROPERTIES, e.getKey()) != -1) {
-                continue;
+            for (Map.Entry<String, Object> e : config.entrySet()) {
+                if (!CUSTOM_PROPERTIES.contains(e.getKey())) {
+                    DatabaseConfigBinder.bind(databaseConfig, e.getKey(), e.getValue());
+                }
+            }
+            if (replacement) {
+                // the schema holds the data of the instance in use, running its DDL again would drop it
+                databaseConfig.setDdlGenerate(false);
+                databaseConfig.setDdlRun(false);
+                databaseConfig.setRegister(false);
+                databaseConfig.setDefaultServer(false);
             }
-            GriffonClassUtils.setPropertyValue(databaseConfig, e.getKey(), e.getValue());
+
+            OffHeapCacheSettings cacheSettings = OffHeapCacheSettings.of(databaseName, config.get("cache"));
+            ResultCache resultCache = databaseResultCaches.configure(databaseName, config.get("result_cache"));
+            UnaryOperator<ServerCacheNotify> notifyDecorator = createNotifyDecorator(databaseName, resultCache != null);
+            if (cacheSettings != null || notifyDecorator != null) {
+                // caches are plugin managed whenever table modifications must be observed
+                cachePlugin = new OffHeapServerCachePlugin(databaseName, cacheSettings, notifyDecorator);
+                databaseConfig.setServerCachePlugin(cachePlugin);
+            }
+            databaseMetricsRegistry.getMetrics(databaseName).setResultCache(resultCache);
+
+            Database database = bootDatabase(databaseConfig, config, databaseName, cachePlugin);
+            if (cachePlugin != null) {
+                cachePlugins.put(database, cachePlugin);
+            }
+            if (replicaDataSource != null) {
+                replicaDataSources.put(database, replicaDataSource);
+            }
+            if (resultCache != null) {
+                resultCaches.put(database, resultCache);
+            }
+            databaseMetricsRegistry.getMetrics(databaseName).setCachePlugin(cachePlugin);
+            return database;
+        } catch (RuntimeException e) {
+            if (cachePlugin != null) {
+                cachePlugin.close();
+            }
+            // replicas are only held once their data source has been built
+            List<String> replicaNames = Collections.emptyList();
+            if (replicaDataSource != null) {
+                replicaDataSource.close();
+                replicaNames = replicaDataSource.getReplicaNames();
+            }
+            releaseDataSources(config, databaseName, replicaNames);
+            throw e;
+        }
+    }
+
+    @Nullable
+    private UnaryOperator<ServerCacheNotify> createNotifyDecorator(@Nonnull String databaseName, boolean resultCache) {
+        boolean broadcast = cacheInvalidationBroadcaster.isEnabled();
+        if (!broadcast && !resultCache) {
+            return null;
+        }
+        return listener -> {
+            ServerCacheNotify notify = resultCache ? databaseResultCaches.decorate(databaseName, listener) : listener;
+            return broadcast ? cacheInvalidationBroadcaster.decorate(databaseName, notify) : notify;
+        };
+    }
+
+    @Nonnull
+    private Database bootDatabase(@Nonnull DatabaseConfig databaseConfig, @Nonnull Map<String, Object> config, @Nonnull String databaseName, @Nullable OffHeapServerCachePlugin cachePlugin) {
+        DatabaseMetadataCache.Entry metadata = databaseMetadataCache.load(databaseName, config);
+        if (metadata != null) {
+            // explicit classes skip the classpath scan
+            databaseConfig.setClasses(new ArrayList<>(metadata.getClasses()));
+        }
+
+        long start = System.nanoTime();
+        Database database;
+        try {
+            database = io.ebean.DatabaseFactory.create(databaseConfig);
+        } catch (RuntimeException e) {
+            if (metadata == null) {
+                throw e;
+            }
+            LOG.warn("Could not create database '{}' from cached metadata. Scanning the classpath instead", databaseName, e);
+            databaseMetadataCache.evict(databaseName, config);
+            if (cachePlugin != null) {
+                cachePlugin.close();
+            }
+            databaseConfig.setClasses(new ArrayList<>());
+            metadata = null;
+            start = System.nanoTime();
+            database = io.ebean.DatabaseFactory.create(databaseConfig);
+        }
+        long duration = System.nanoTime() - start;
+
+        if (metadata != null) {
+            long saved = Math.max(0L, metadata.getBootNanos() - duration);
+            databaseMetricsRegistry.getMetrics(databaseName).metadataCacheUsed(saved);
+            LOG.info("Database '{}' booted in {} ms from cached metadata, {} ms faster than scanning the classpath", databaseName,
+                TimeUnit.NANOSECONDS.toMillis(duration), TimeUnit.NANOSECONDS.toMillis(saved));
+        } else if (databaseMetadataCache.isEnabled(config)) {
+            databaseMetricsRegistry.getMetrics(databaseName).metadataCacheMissed();
+            databaseMetadataCache.store(databaseName, config, database, duration);
+        }
+        return database;
+    }
+
+    @Nullable
+    protected ReplicaDataSource createReplicaDataSource(@Nonnull Map<String, Object> config, @Nonnull String databaseName, @Nonnull DataSource primary) {
+        List<String> replicaNames = getReplicaNames(config);
+        if (replicaNames.isEmpty()) {
+            return null;
         }
 
-        return io.ebean.DatabaseFactory.create(databaseConfig);
+        List<DataSource> replicas = new ArrayList<>();
+        try {
+            for (String replicaName : replicaNames) {
+                replicas.add(acquireDataSource(replicaName));
+            }
+
+            Map<String, Object> settings = getReplicaSettings(config);
+            return new ReplicaDataSource(databaseName, replicaNames, replicas,
+                getConfigValueAsBoolean(settings, "fallback", true) ? primary : null,
+                ReplicaDataSource.Balancing.of(getConfigValueAsString(settings, "balancing", null)),
+                getConfigValueAsLong(settings, "retry_after", 30000L),
+                getConfigValueAsString(settings, "lag_query", null),
+                getConfigValueAsLong(settings, "max_lag", 5000L),
+                getConfigValueAsLong(settings, "lag_check_interval", 5000L));
+        } catch (RuntimeException e) {
+            // only the replicas acquired so far are released here, the primary is left to the caller
+            for (String replicaName : replicaNames.subList(0, replicas.size())) {
+                releaseDataSource(databaseName, replicaName);
+            }
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getReplicaSettings(@Nonnull Map<String, Object> config) {
+        Object value = config.get(KEY_REPLICAS);
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        // replicas = 'name' or replicas = ['name1', 'name2']
+        return value != null ? Collections.singletonMap(KEY_DATASOURCES, value) : Collections.<String, Object>emptyMap();
+    }
+
+    @Nonnull
+    private static List<String> getReplicaNames(@Nonnull Map<String, Object> config) {
+        Object value = getReplicaSettings(config).get(KEY_DATASOURCES);
+        List<String> names = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object name : (Collection<?>) value) {
+                names.add(String.valueOf(name).trim());
+            }
+        } else if (value != null) {
+            for (String name : String.valueOf(value).split(",")) {
+                names.add(name.trim());
+            }
+        }
+        names.removeIf(String::isEmpty);
+        return names;
+    }
+
+    /**
+     * Resolves the primary data source of a database: the {@code DataSource} given by its {@code datasource} property,
+     * the data source named by that property, or the data source named after the database.
+     *
+     * @return either a {@code DataSource} or the name of a data source.
+     */
+    @Nonnull
+    static Object getDataSourceKey(@Nonnull Map<String, Object> config, @Nonnull String databaseName) {
+        Object value = config.get(KEY_DATASOURCE);
+        if (value instanceof DataSource) {
+            return value;
+        }
+        return value != null ? String.valueOf(value).trim() : databaseName;
+    }
+
+    @Nonnull
+    private DataSource acquireDataSource(@Nonnull Map<String, Object> config, @Nonnull String databaseName) {
+        return (DataSource) acquireDataSourceKey(getDataSourceKey(config, databaseName));
+    }
+
+    @Nonnull
+    private DataSource acquireDataSource(@Nonnull String dataSourceName) {
+        return (DataSource) acquireDataSourceKey(dataSourceName);
+    }
+
+    @Nonnull
+    private Object acquireDataSourceKey(@Nonnull Object key) {
+        // a data source may be shared, by an instance being replaced and its successor for example.
+        // Keys are either data source names or data sources given in a database definition
+        synchronized (dataSourceUsers) {
+            Object dataSource = key instanceof DataSource ? key : getDataSource((String) key);
+            Integer users = dataSourceUsers.get(key);
+            dataSourceUsers.put(key, users != null ? users + 1 : 1);
+            return dataSource;
+        }
+    }
+
+    private void releaseDataSources(@Nonnull Map<String, Object> config, @Nonnull String databaseName) {
+        releaseDataSources(config, databaseName, getReplicaNames(config));
+    }
+
+    private void releaseDataSources(@Nonnull Map<String, Object> config, @Nonnull String databaseName, @Nonnull List<String> replicaNames) {
+        releaseDataSource(databaseName, getDataSourceKey(config, databaseName));
+        for (String replica : replicaNames) {
+            releaseDataSource(databaseName, replica);
+        }
+    }
+
+    private void releaseDataSource(@Nonnull String databaseName, @Nonnull Object key) {
+        synchronized (dataSourceUsers) {
+            Integer users = dataSourceUsers.remove(key);
+            if (users != null && users > 1) {
+                dataSourceUsers.put(key, users - 1);
+                return;
+            }
+
+            if (key instanceof String) {
+                closeDataSource((String) key);
+            } else if (key instanceof AutoCloseable) {
+                // data sources given in a database definition are owned by the database
+                try {
+                    ((AutoCloseable) key).close();
+                } catch (Exception e) {
+                    throw new RuntimeDatabaseException(databaseName, e);
+                }
+            }
+        }
     }
 
     protected void closeDataSource(@Nonnull String dataSourceName) {
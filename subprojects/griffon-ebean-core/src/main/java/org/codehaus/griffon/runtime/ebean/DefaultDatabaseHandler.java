@@ -19,16 +19,37 @@ package org.codehaus.griffon.runtime.ebean;
 
 import griffon.annotations.core.Nonnull;
 import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.BulkImportOptions;
+import griffon.plugins.ebean.BulkImportResult;
 import griffon.plugins.ebean.DatabaseCallback;
 import griffon.plugins.ebean.DatabaseFactory;
 import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
 import griffon.plugins.ebean.DatabaseStorage;
+import griffon.plugins.ebean.QueryCallback;
+import griffon.plugins.ebean.QueryStream;
+import griffon.plugins.ebean.QueryStreamOptions;
+import griffon.plugins.ebean.ResultCacheOptions;
+import griffon.plugins.ebean.TxOptions;
+import griffon.plugins.ebean.exceptions.DatabaseShutdownException;
 import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
 import io.ebean.Database;
+import io.ebean.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import static griffon.util.GriffonNameUtils.requireNonBlank;
 import static java.util.Objects.requireNonNull;
@@ -40,14 +61,38 @@ public class DefaultDatabaseHandler implements DatabaseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultDatabaseHandler.class);
     private static final String ERROR_SESSION_FACTORY_NAME_BLANK = "Argument 'databaseName' must not be blank";
     private static final String ERROR_CALLBACK_NULL = "Argument 'callback' must not be null";
+    private static final String ERROR_OPTIONS_NULL = "Argument 'options' must not be null";
 
     private final DatabaseFactory databaseFactory;
     private final DatabaseStorage databaseStorage;
+    private final DatabaseExecutors databaseExecutors;
+    private final DatabaseBulkheads databaseBulkheads;
+    private final DatabaseMetricsRegistry databaseMetricsRegistry;
+    private final DatabaseMetricsRecorder databaseMetricsRecorder;
+    private final DatabaseTxDefaults databaseTxDefaults;
+    private final DatabaseLeases databaseLeases;
+    private final DatabaseResultCaches databaseResultCaches;
+    private final ConcurrentMap<String, FutureTask<Database>> pendingDatabases = new ConcurrentHashMap<>();
 
     @Inject
-    public DefaultDatabaseHandler(@Nonnull DatabaseFactory databaseFactory, @Nonnull DatabaseStorage databaseStorage) {
+    public DefaultDatabaseHandler(@Nonnull DatabaseFactory databaseFactory,
+                                  @Nonnull DatabaseStorage databaseStorage,
+                                  @Nonnull DatabaseExecutors databaseExecutors,
+                                  @Nonnull DatabaseBulkheads databaseBulkheads,
+                                  @Nonnull DatabaseMetricsRegistry databaseMetricsRegistry,
+                                  @Nonnull DatabaseMetricsRecorder databaseMetricsRecorder,
+                                  @Nonnull DatabaseTxDefaults databaseTxDefaults,
+                                  @Nonnull DatabaseLeases databaseLeases,
+                                  @Nonnull DatabaseResultCaches databaseResultCaches) {
         this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
         this.databaseStorage = requireNonNull(databaseStorage, "Argument 'databaseStorage' must not be null");
+        this.databaseExecutors = requireNonNull(databaseExecutors, "Argument 'databaseExecutors' must not be null");
+        this.databaseBulkheads = requireNonNull(databaseBulkheads, "Argument 'databaseBulkheads' must not be null");
+        this.databaseMetricsRegistry = requireNonNull(databaseMetricsRegistry, "Argument 'databaseMetricsRegistry' must not be null");
+        this.databaseMetricsRecorder = requireNonNull(databaseMetricsRecorder, "Argument 'databaseMetricsRecorder' must not be null");
+        this.databaseTxDefaults = requireNonNull(databaseTxDefaults, "Argument 'databaseTxDefaults' must not be null");
+        this.databaseLeases = requireNonNull(databaseLeases, "Argument 'databaseLeases' must not be null");
+        this.databaseResultCaches = requireNonNull(databaseResultCaches, "Argument 'databaseResultCaches' must not be null");
     }
 
     @Nullable
@@ -58,23 +103,220 @@ public class DefaultDatabaseHandler implements DatabaseHandler {
 
     @Nullable
     @Override
-    @SuppressWarnings("ThrowFromFinallyBlock")
     public <R> R withEbean(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
         requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
         requireNonNull(callback, ERROR_CALLBACK_NULL);
 
-        Database database = getDatabase(databaseName);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Executing statements on database '{}'", databaseName);
+        if (!databaseLeases.isAdmitted()) {
+            throw new DatabaseShutdownException(databaseName);
+        }
+        return execute(databaseName, callback, false);
+    }
+
+    @Nullable
+    @SuppressWarnings("ThrowFromFinallyBlock")
+    private <R> R execute(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback, boolean readOnly) {
+        Database database = acquireDatabase(databaseName);
+        try {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Executing statements on database '{}'", databaseName);
+            }
+
+            DatabaseBulkhead bulkhead = databaseBulkheads.getBulkhead(databaseName);
+            DatabaseMetrics metrics = databaseMetricsRegistry.getMetrics(databaseName);
+            try {
+                bulkhead.acquire();
+            } catch (RuntimeDatabaseException e) {
+                metrics.bulkheadRejected();
+                throw e;
+            }
+            long start = metrics.callStarted();
+            boolean failed = true;
+            // nested callbacks that are not read-only write through the primary, whatever encloses them
+            Set<String> routing = ReadWriteDataSource.routeToReplicas(databaseName, readOnly);
+            try {
+                R result = callback.handle(databaseName, database);
+                failed = false;
+                return result;
+            } catch (RuntimeDatabaseException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeDatabaseException(databaseName, e);
+            } finally {
+                ReadWriteDataSource.restoreRouting(routing);
+                databaseMetricsRecorder.callbackExecuted(databaseName, metrics.callEnded(start, failed), failed);
+                bulkhead.release();
+            }
+        } finally {
+            databaseLeases.exit(database);
+            databaseStorage.release(databaseName, database);
+        }
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanReadOnly(@Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        return withEbeanReadOnly(DefaultDatabaseFactory.KEY_DEFAULT, callback);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanReadOnly(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        if (!databaseLeases.isAdmitted()) {
+            throw new DatabaseShutdownException(databaseName);
+        }
+        return execute(databaseName, callback, true);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanTransaction(@Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        return withEbeanTransaction(DefaultDatabaseFactory.KEY_DEFAULT, options, callback);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanTransaction(@Nonnull String databaseName, @Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(options, ERROR_OPTIONS_NULL);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        TxOptions txOptions = options.orElse(databaseTxDefaults.getTxOptions(databaseName));
+        return withEbean(databaseName, (name, database) -> inTransaction(name, database, txOptions, callback));
+    }
+
+    @Nullable
+    static <R> R inTransaction(@Nonnull String databaseName, @Nonnull Database database, @Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback) {
+        Transaction transaction = options.getIsolation() != null ? database.beginTransaction(options.getIsolation()) : database.beginTransaction();
+        try {
+            if (options.getReadOnly() != null) {
+                transaction.setReadOnly(options.getReadOnly());
+            }
+            if (options.getBatchMode() != null) {
+                transaction.setBatchMode(options.getBatchMode());
+            }
+            if (options.getBatchSize() != null) {
+                transaction.setBatchSize(options.getBatchSize());
+            }
+            if (options.getFlushOnQuery() != null) {
+                transaction.setFlushOnQuery(options.getFlushOnQuery());
+            }
+
+            R result = callback.handle(databaseName, database);
+            transaction.commit();
+            return result;
+        } finally {
+            // rolls back unless the transaction was committed
+            transaction.end();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> BulkImportResult bulkImport(@Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options) throws RuntimeDatabaseException {
+        return bulkImport(DefaultDatabaseFactory.KEY_DEFAULT, beans, options);
+    }
+
+    @Nonnull
+    @Override
+    public <T> BulkImportResult bulkImport(@Nonnull String databaseName, @Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options) throws RuntimeDatabaseException {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(beans, "Argument 'beans' must not be null");
+        requireNonNull(options, ERROR_OPTIONS_NULL);
+
+        TxOptions txOptions = options.getTxOptions().orElse(databaseTxDefaults.getTxOptions(databaseName));
+        if (txOptions.getBatchSize() == null) {
+            txOptions = txOptions.withBatchSize(options.getChunkSize());
+        }
+        int concurrency = options.getParallelism() > 1 ? databaseExecutors.getConcurrency(databaseName) : 1;
+        return new BulkImport<>(this, databaseName, beans, options, txOptions, concurrency).execute();
+    }
+
+    @Nonnull
+    @Override
+    public <T> QueryStream<T> streamQuery(@Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options) {
+        return streamQuery(DefaultDatabaseFactory.KEY_DEFAULT, query, options);
+    }
+
+    @Nonnull
+    @Override
+    public <T> QueryStream<T> streamQuery(@Nonnull String databaseName, @Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(query, "Argument 'query' must not be null");
+        requireNonNull(options, ERROR_OPTIONS_NULL);
+
+        TxOptions txOptions = TxOptions.defaults().withReadOnly(true).orElse(databaseTxDefaults.getTxOptions(databaseName));
+        DefaultQueryStream<T> stream = new DefaultQueryStream<>(databaseName, query, options, txOptions);
+        stream.start(this);
+        return stream;
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanCached(@Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        return withEbeanCached(DefaultDatabaseFactory.KEY_DEFAULT, options, callback);
+    }
+
+    @Nullable
+    @Override
+    public <R> R withEbeanCached(@Nonnull String databaseName, @Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(options, ERROR_OPTIONS_NULL);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        if (!databaseLeases.isAdmitted()) {
+            throw new DatabaseShutdownException(databaseName);
+        }
+
+        // the result cache is set up when the instance is created
+        getDatabase(databaseName);
+        ResultCache cache = databaseResultCaches.getCache(databaseName);
+        if (cache == null) {
+            return withEbean(databaseName, callback);
         }
 
         try {
-            return callback.handle(databaseName, database);
+            // loaded from the primary, a lagging replica could cache rows older than the last invalidation
+            return cache.get(options, () -> withEbean(databaseName, callback));
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeDatabaseException(databaseName, e);
         }
     }
 
+    @Nonnull
+    @Override
+    public <R> CompletableFuture<R> withEbeanAsync(@Nonnull DatabaseCallback<R> callback) {
+        return withEbeanAsync(DefaultDatabaseFactory.KEY_DEFAULT, callback);
+    }
+
+    @Nonnull
+    @Override
+    public <R> CompletableFuture<R> withEbeanAsync(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) {
+        requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+
+        AsyncCall<R> call = new AsyncCall<>(databaseName, callback);
+        if (!databaseLeases.isAdmitted()) {
+            call.future.completeExceptionally(new DatabaseShutdownException(databaseName));
+            return call.future;
+        }
+        ExecutorService executor = databaseExecutors.getExecutor(databaseName);
+        try {
+            executor.execute(call);
+        } catch (RejectedExecutionException e) {
+            // the executor may have been shut down by closeEbean() or a reload since it was looked up
+            call.future.completeExceptionally(executor.isShutdown()
+                ? new DatabaseShutdownException(databaseName, "the database has been closed")
+                : new RuntimeDatabaseException(databaseName, e));
+        }
+        return call.future;
+    }
+
     @Override
     public void closeEbean() {
         closeEbean(DefaultDatabaseFactory.KEY_DEFAULT);
@@ -83,6 +325,12 @@ public class DefaultDatabaseHandler implements DatabaseHandler {
     @Override
     public void closeEbean(@Nonnull String databaseName) {
         requireNonBlank(databaseName, ERROR_SESSION_FACTORY_NAME_BLANK);
+        for (Runnable pending : databaseExecutors.shutdown(databaseName)) {
+            if (pending instanceof AsyncCall) {
+                ((AsyncCall<?>) pending).future.completeExceptionally(new CancellationException("Database '" + databaseName + "' has been closed"));
+            }
+        }
+
         Database ebean = databaseStorage.get(databaseName);
         if (ebean != null) {
             databaseFactory.destroy(databaseName, ebean);
@@ -90,13 +338,122 @@ public class DefaultDatabaseHandler implements DatabaseHandler {
         }
     }
 
+    @Nonnull
+    private Database acquireDatabase(@Nonnull String databaseName) {
+        // the instance is pinned for the duration of the callback, a bounded storage may evict it
+        // between creation and pinning in which case it's simply created again
+        while (true) {
+            Database database = databaseStorage.acquire(databaseName);
+            if (database == null) {
+                getDatabase(databaseName);
+                continue;
+            }
+
+            // the lease must be visible before the instance can be replaced, otherwise try again with its successor
+            databaseLeases.enter(database);
+            if (databaseStorage.get(databaseName) == database) {
+                return database;
+            }
+            databaseLeases.exit(database);
+            databaseStorage.release(databaseName, database);
+        }
+    }
+
     @Nonnull
     private Database getDatabase(@Nonnull String databaseName) {
         Database database = databaseStorage.get(databaseName);
-        if (database == null) {
-            database = databaseFactory.create(databaseName);
-            databaseStorage.set(databaseName, database);
+        if (database != null) {
+            return database;
+        }
+
+        // only one thread per name may build the instance, everyone else waits on the same task
+        FutureTask<Database> task = new FutureTask<>(new DatabaseCreator(databaseName));
+        FutureTask<Database> pending = pendingDatabases.putIfAbsent(databaseName, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                pendingDatabases.remove(databaseName, task);
+            }
+        }
+
+        return awaitDatabase(databaseName, pending);
+    }
+
+    @Nonnull
+    private Database awaitDatabase(@Nonnull String databaseName, @Nonnull FutureTask<Database> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // the build is shared with other callers, keep waiting and restore the flag afterwards
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeDatabaseException(databaseName, (Exception) cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class DatabaseCreator implements Callable<Database> {
+        private final String databaseName;
+
+        private DatabaseCreator(@Nonnull String databaseName) {
+            this.databaseName = databaseName;
+        }
+
+        @Override
+        public Database call() {
+            // another caller may have stored the instance after our fast path check
+            Database database = databaseStorage.get(databaseName);
+            if (database == null) {
+                if (!databaseFactory.getDatabaseNames().contains(databaseName)) {
+                    throw new IllegalArgumentException("Database '" + databaseName + "' is not configured");
+                }
+                database = databaseFactory.create(databaseName);
+                databaseStorage.set(databaseName, database);
+            }
+            return database;
+        }
+    }
+
+    private class AsyncCall<R> implements Runnable {
+        private final String databaseName;
+        private final DatabaseCallback<R> callback;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private AsyncCall(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) {
+            this.databaseName = databaseName;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                // cancelled while waiting in the queue
+                return;
+            }
+
+            try {
+                // admitted on submission, queued calls still run while shutdown drains the executor
+                future.complete(execute(databaseName, callback, false));
+            } catch (Throwable t) {
+                // complete with the raw exception so dependent stages don't see a CompletionException wrapper
+                future.completeExceptionally(t);
+            }
         }
-        return database;
     }
 }
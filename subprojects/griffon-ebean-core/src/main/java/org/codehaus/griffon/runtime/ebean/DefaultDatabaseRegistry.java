@@ -0,0 +1,378 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.GriffonApplication;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseRegistry;
+import griffon.plugins.ebean.DatabaseStorage;
+import griffon.plugins.ebean.StartupMode;
+import griffon.plugins.ebean.events.DatabaseAddedEvent;
+import griffon.plugins.ebean.events.DatabaseRemovedEvent;
+import griffon.plugins.ebean.exceptions.DatabaseShutdownException;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+import io.ebean.Database;
+import io.ebean.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs registry operations on a background pool, chaining the operations of each database name so they never overlap.
+ * The drain timeout is read from the top level {@code registry} block. Replacement instances are checked for a valid
+ * connection before they are swapped in.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultDatabaseRegistry implements DatabaseRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultDatabaseRegistry.class);
+    private static final String ERROR_DATABASE_NAME_BLANK = "Argument 'databaseName' must not be blank";
+    private static final String ERROR_CONFIG_NULL = "Argument 'config' must not be null";
+    private static final String KEY_REGISTRY = "registry";
+    private static final String KEY_DRAIN_TIMEOUT = "drain_timeout";
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30000L;
+    private static final int WARM_UP_TIMEOUT = 5;
+
+    private final DatabaseFactory databaseFactory;
+    private final DatabaseStorage databaseStorage;
+    private final DatabaseHandler databaseHandler;
+    private final DatabaseExecutors databaseExecutors;
+    private final DatabaseBulkheads databaseBulkheads;
+    private final DatabaseTxDefaults databaseTxDefaults;
+    private final DatabaseLeases databaseLeases;
+    private final ResourceBundle resourceBundle;
+    private final GriffonApplication application;
+    private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("ebean-registry"));
+    private final ConcurrentMap<String, CompletableFuture<?>> operations = new ConcurrentHashMap<>();
+
+    @Inject
+    public DefaultDatabaseRegistry(@Nonnull DatabaseFactory databaseFactory,
+                                   @Nonnull DatabaseStorage databaseStorage,
+                                   @Nonnull DatabaseHandler databaseHandler,
+                                   @Nonnull DatabaseExecutors databaseExecutors,
+                                   @Nonnull DatabaseBulkheads databaseBulkheads,
+                                   @Nonnull DatabaseTxDefaults databaseTxDefaults,
+                                   @Nonnull DatabaseLeases databaseLeases,
+                                   @Nonnull @Named("ebean") ResourceBundle resourceBundle,
+                                   @Nonnull GriffonApplication application) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.databaseStorage = requireNonNull(databaseStorage, "Argument 'databaseStorage' must not be null");
+        this.databaseHandler = requireNonNull(databaseHandler, "Argument 'databaseHandler' must not be null");
+        this.databaseExecutors = requireNonNull(databaseExecutors, "Argument 'databaseExecutors' must not be null");
+        this.databaseBulkheads = requireNonNull(databaseBulkheads, "Argument 'databaseBulkheads' must not be null");
+        this.databaseTxDefaults = requireNonNull(databaseTxDefaults, "Argument 'databaseTxDefaults' must not be null");
+        this.databaseLeases = requireNonNull(databaseLeases, "Argument 'databaseLeases' must not be null");
+        this.resourceBundle = requireNonNull(resourceBundle, "Argument 'resourceBundle' must not be null");
+        this.application = requireNonNull(application, "Argument 'application' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Database> registerDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        requireNonNull(config, ERROR_CONFIG_NULL);
+        return schedule(databaseName, () -> {
+            if (databaseFactory.getDatabaseNames().contains(databaseName)) {
+                throw new IllegalArgumentException("Database '" + databaseName + "' is already configured");
+            }
+
+            databaseFactory.defineDatabase(databaseName, config);
+            invalidate(databaseName);
+            Database database;
+            try {
+                // created through the handler so that concurrent callers share the same instance
+                database = databaseHandler.withEbean(databaseName, (name, instance) -> instance);
+            } catch (RuntimeException e) {
+                databaseFactory.undefineDatabase(databaseName);
+                throw e;
+            }
+            application.getEventRouter().publishEvent(DatabaseAddedEvent.of(databaseName));
+            return database;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> reconfigureDatabase(@Nonnull String databaseName, @Nonnull Map<String, Object> config) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        requireNonNull(config, ERROR_CONFIG_NULL);
+        return schedule(databaseName, () -> {
+            requireConfigured(databaseName);
+            databaseFactory.defineDatabase(databaseName, config);
+            rebuild(databaseName);
+            return null;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> unregisterDatabase(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        return schedule(databaseName, () -> {
+            requireConfigured(databaseName);
+            databaseFactory.undefineDatabase(databaseName);
+            remove(databaseName);
+            LOG.info("Database '{}' has been unregistered", databaseName);
+            return null;
+        });
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Set<String>> reloadDatabases() {
+        if (!(resourceBundle instanceof ReloadableResourceBundle)) {
+            CompletableFuture<Set<String>> result = new CompletableFuture<>();
+            result.completeExceptionally(new UnsupportedOperationException("The ebean configuration can not be reloaded"));
+            return result;
+        }
+
+        CompletableFuture<Reload> reload;
+        try {
+            reload = CompletableFuture.supplyAsync(this::reloadConfiguration, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<Set<String>> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        return reload
+            .thenCompose(reloaded -> {
+                List<CompletableFuture<Void>> pending = new ArrayList<>();
+                for (String databaseName : reloaded.changed) {
+                    pending.add(schedule(databaseName, () -> {
+                        rebuild(databaseName);
+                        return null;
+                    }));
+                }
+                for (String databaseName : reloaded.added) {
+                    pending.add(schedule(databaseName, () -> {
+                        // lazy databases are monitored from the start as well
+                        application.getEventRouter().publishEvent(DatabaseAddedEvent.of(databaseName));
+                        connect(databaseName);
+                        return null;
+                    }));
+                }
+                for (String databaseName : reloaded.removed) {
+                    pending.add(schedule(databaseName, () -> {
+                        remove(databaseName);
+                        LOG.info("Database '{}' has been removed", databaseName);
+                        return null;
+                    }));
+                }
+
+                Set<String> names = new LinkedHashSet<>(reloaded.changed);
+                names.addAll(reloaded.added);
+                names.addAll(reloaded.removed);
+                return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> Collections.unmodifiableSet(names));
+            });
+    }
+
+    @Nonnull
+    private Reload reloadConfiguration() {
+        synchronized (resourceBundle) {
+            Map<String, Map<String, Object>> previous = new LinkedHashMap<>();
+            for (String databaseName : databaseFactory.getDatabaseNames()) {
+                previous.put(databaseName, databaseFactory.getConfigurationFor(databaseName));
+            }
+
+            // settings with unknown properties are rejected as a whole, the ones in use are kept
+            Set<String> added = new LinkedHashSet<>();
+            ((ReloadableResourceBundle) resourceBundle).reload(() -> added.addAll(databaseFactory.refreshDatabaseNames()));
+
+            // runtime definitions take precedence over the configuration, they never show up as changed or removed
+            Set<String> changed = new LinkedHashSet<>();
+            Set<String> removed = new LinkedHashSet<>();
+            Set<String> databaseNames = databaseFactory.getDatabaseNames();
+            for (Map.Entry<String, Map<String, Object>> e : previous.entrySet()) {
+                if (!databaseNames.contains(e.getKey())) {
+                    removed.add(e.getKey());
+                } else if (!e.getValue().equals(databaseFactory.getConfigurationFor(e.getKey()))) {
+                    changed.add(e.getKey());
+                }
+            }
+            LOG.info("Reloaded ebean configuration, changed databases: {}, added databases: {}, removed databases: {}", changed, added, removed);
+            return new Reload(changed, added, removed);
+        }
+    }
+
+    private void connect(@Nonnull String databaseName) {
+        if (databaseFactory.getStartupMode(databaseName) != StartupMode.LAZY) {
+            // created through the handler so that concurrent callers share the same instance
+            databaseHandler.withEbean(databaseName, (name, database) -> database);
+            LOG.info("Database '{}' has been added", databaseName);
+        }
+    }
+
+    private void remove(@Nonnull String databaseName) throws InterruptedException {
+        Database previous = databaseStorage.remove(databaseName);
+        // cancels queued asynchronous callbacks, the instance itself is closed once drained
+        databaseHandler.closeEbean(databaseName);
+        invalidate(databaseName);
+        if (previous != null) {
+            retire(databaseName, previous);
+        }
+        application.getEventRouter().publishEvent(DatabaseRemovedEvent.of(databaseName));
+    }
+
+    private void rebuild(@Nonnull String databaseName) throws InterruptedException {
+        invalidate(databaseName);
+        databaseExecutors.retire(databaseName);
+
+        Database previous = databaseStorage.get(databaseName);
+        if (previous == null) {
+            // not connected yet, the new settings apply on first use
+            return;
+        }
+
+        Database replacement = databaseFactory.createReplacement(databaseName);
+        try {
+            warmUp(databaseName, replacement);
+        } catch (RuntimeException e) {
+            databaseFactory.destroy(databaseName, replacement);
+            throw e;
+        }
+
+        databaseStorage.set(databaseName, replacement);
+        LOG.info("Database '{}' has been rebuilt", databaseName);
+        retire(databaseName, previous);
+    }
+
+    private static void warmUp(@Nonnull String databaseName, @Nonnull Database database) {
+        // make sure the new instance can reach its data source before it takes any traffic
+        Transaction transaction = database.createTransaction();
+        try {
+            if (!transaction.getConnection().isValid(WARM_UP_TIMEOUT)) {
+                throw new RuntimeDatabaseException(databaseName, new SQLException("Connection is not valid"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeDatabaseException(databaseName, e);
+        } finally {
+            transaction.end();
+        }
+    }
+
+    private void requireConfigured(@Nonnull String databaseName) {
+        if (!databaseFactory.getDatabaseNames().contains(databaseName)) {
+            throw new IllegalArgumentException("Database '" + databaseName + "' is not configured");
+        }
+    }
+
+    private void invalidate(@Nonnull String databaseName) {
+        databaseBulkheads.invalidate(databaseName);
+        databaseTxDefaults.invalidate(databaseName);
+    }
+
+    private void retire(@Nonnull String databaseName, @Nonnull Database database) throws InterruptedException {
+        long drainTimeout = getDrainTimeout();
+        if (!databaseLeases.drain(database, drainTimeout, TimeUnit.MILLISECONDS)) {
+            LOG.warn("Database '{}' still runs callbacks after {} ms, closing it anyway", databaseName, drainTimeout);
+        }
+        databaseFactory.destroy(databaseName, database);
+    }
+
+    private long getDrainTimeout() {
+        Object registry = databaseFactory.getConfiguration().get(KEY_REGISTRY);
+        return getConfigValueAsLong(registry instanceof Map ? asMap(registry) : Collections.<String, Object>emptyMap(), KEY_DRAIN_TIMEOUT, DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(@Nonnull Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Stops accepting operations and waits for the scheduled ones to finish, for up to the given timeout in milliseconds.
+     * Operations requested afterwards fail with a {@code DatabaseShutdownException}.
+     *
+     * @return {@code true} if every scheduled operation finished in time.
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Nonnull
+    private <R> CompletableFuture<R> schedule(@Nonnull String databaseName, @Nonnull Callable<R> operation) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(operation.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        CompletableFuture<?> tail;
+        try {
+            tail = operations.compute(databaseName, (name, previous) -> previous == null
+                ? CompletableFuture.runAsync(task, executor)
+                : previous.handle((r, e) -> null).thenRunAsync(task, executor));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new DatabaseShutdownException(databaseName));
+            return result;
+        }
+        tail.whenComplete((r, e) -> {
+            operations.remove(databaseName, tail);
+            if (e != null) {
+                // rejected by an executor that was shut down while the operation waited for its turn
+                result.completeExceptionally(new DatabaseShutdownException(databaseName));
+            }
+        });
+        return result;
+    }
+
+    private static final class Reload {
+        private final Set<String> changed;
+        private final Set<String> added;
+        private final Set<String> removed;
+
+        private Reload(@Nonnull Set<String> changed, @Nonnull Set<String> added, @Nonnull Set<String> removed) {
+            this.changed = changed;
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.QueryCallback;
+import griffon.plugins.ebean.QueryStream;
+import griffon.plugins.ebean.QueryStreamOptions;
+import griffon.plugins.ebean.TxOptions;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+import io.ebean.Database;
+import io.ebean.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs a query on the executor of a database and hands its rows over to the consuming thread
+ * through a bounded queue of batches.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class DefaultQueryStream<T> implements QueryStream<T> {
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    private final String databaseName;
+    private final QueryCallback<T> queryCallback;
+    private final QueryStreamOptions options;
+    private final TxOptions txOptions;
+    private final BlockingQueue<List<T>> queue;
+    private final Semaphore batchSlots;
+    private final List<T> end = Collections.emptyList();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean closed;
+    private volatile boolean endPublished;
+    private CompletableFuture<Void> producer;
+
+    // producer side, only touched by the thread running the query
+    private List<T> batch;
+
+    // consumer side
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean finished;
+
+    DefaultQueryStream(@Nonnull String databaseName, @Nonnull QueryCallback<T> queryCallback, @Nonnull QueryStreamOptions options, @Nonnull TxOptions txOptions) {
+        this.databaseName = databaseName;
+        this.queryCallback = queryCallback;
+        this.options = options;
+        this.txOptions = txOptions;
+        // batches may only take the buffered slots, the extra one is kept for the end marker
+        this.batchSlots = new Semaphore(options.getBufferedBatches());
+        this.queue = new ArrayBlockingQueue<>(options.getBufferedBatches() + 1);
+    }
+
+    void start(@Nonnull DatabaseHandler databaseHandler) {
+        producer = databaseHandler.<Void>withEbeanAsync(databaseName, this::produce);
+        producer.whenComplete((result, t) -> {
+            if (!endPublished) {
+                // the query never ran or was interrupted before it could say it was done
+                failure.compareAndSet(null, t != null ? t : new CancellationException("Query on database '" + databaseName + "' was interrupted"));
+                queue.clear();
+                queue.offer(end);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current.hasNext()) {
+            return true;
+        }
+        while (!finished) {
+            List<T> next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeDatabaseException(databaseName, e);
+            }
+
+            if (next == end) {
+                finished = true;
+                close();
+                Throwable t = failure.get();
+                if (t != null) {
+                    throw asRuntimeDatabaseException(t);
+                }
+            } else {
+                batchSlots.release();
+                current = next.iterator();
+                if (current.hasNext()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Nonnull
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finished = true;
+        current = Collections.emptyIterator();
+        queue.clear();
+
+        // wait until the query has stopped and its connection went back to the pool
+        boolean interrupted = false;
+        while (true) {
+            try {
+                producer.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nullable
+    private Void produce(@Nonnull String name, @Nonnull Database database) {
+        try {
+            if (!closed) {
+                DefaultDatabaseHandler.inTransaction(name, database, txOptions, this::runQuery);
+            }
+            return null;
+        } catch (RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        } finally {
+            endPublished = publish(end);
+        }
+    }
+
+    @Nullable
+    private Void runQuery(@Nonnull String name, @Nonnull Database database) {
+        Query<T> query = requireNonNull(queryCallback.handle(name, database), "Query callback must not return null");
+        if (options.getFetchSize() != null) {
+            query.setBufferFetchSizeHint(options.getFetchSize());
+        }
+
+        batch = new ArrayList<>(options.getBatchSize());
+        query.findEachWhile(bean -> {
+            batch.add(bean);
+            if (batch.size() < options.getBatchSize()) {
+                return !closed;
+            }
+            List<T> full = batch;
+            batch = new ArrayList<>(options.getBatchSize());
+            return publish(full);
+        });
+        if (!batch.isEmpty()) {
+            publish(batch);
+        }
+        batch = null;
+        return null;
+    }
+
+    private boolean publish(@Nonnull List<T> rows) {
+        if (rows == end) {
+            // never waits, batches leave a slot free for it
+            return queue.offer(end) || closed;
+        }
+
+        while (!closed) {
+            try {
+                if (batchSlots.tryAcquire(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return queue.offer(rows);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    private RuntimeException asRuntimeDatabaseException(@Nonnull Throwable t) {
+        if (t instanceof RuntimeDatabaseException) {
+            return (RuntimeDatabaseException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeDatabaseException(databaseName, t instanceof Exception ? (Exception) t : new RuntimeException(t));
+    }
+}
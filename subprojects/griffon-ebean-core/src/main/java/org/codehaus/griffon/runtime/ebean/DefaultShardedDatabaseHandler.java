@@ -0,0 +1,198 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.DatabaseCallback;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.ShardResolver;
+import griffon.plugins.ebean.ShardedDatabaseHandler;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the shards from the top level {@code shards} entry and dispatches every call through the {@code DatabaseHandler},
+ * which creates each shard lazily and only once.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultShardedDatabaseHandler implements ShardedDatabaseHandler {
+    private static final String KEY_SHARDS = "shards";
+    private static final String ERROR_CALLBACK_NULL = "Argument 'callback' must not be null";
+
+    private final DatabaseHandler databaseHandler;
+    private final ShardResolver shardResolver;
+    private final List<String> shardNames;
+
+    @Inject
+    public DefaultShardedDatabaseHandler(@Nonnull DatabaseHandler databaseHandler, @Nonnull DatabaseFactory databaseFactory, @Nonnull ShardResolver shardResolver) {
+        this.databaseHandler = requireNonNull(databaseHandler, "Argument 'databaseHandler' must not be null");
+        this.shardResolver = requireNonNull(shardResolver, "Argument 'shardResolver' must not be null");
+        requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.shardNames = Collections.unmodifiableList(readShardNames(databaseFactory));
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    @Nonnull
+    @Override
+    public String resolveShard(@Nonnull Object key) {
+        requireNonNull(key, "Argument 'key' must not be null");
+        String shardName = shardResolver.resolveShard(key, shardNames);
+        if (!shardNames.contains(shardName)) {
+            throw new IllegalArgumentException("Key " + key + " resolved to '" + shardName + "' which is not a shard. Shards are " + shardNames);
+        }
+        return shardName;
+    }
+
+    @Nullable
+    @Override
+    public <R> R withShard(@Nonnull Object key, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+        return databaseHandler.withEbean(resolveShard(key), callback);
+    }
+
+    @Nonnull
+    @Override
+    public <R> Map<String, R> withAllShards(@Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+        Map<String, CompletableFuture<R>> futures = scatter(callback);
+        Map<String, R> results = new LinkedHashMap<>();
+        gather(futures, results::put);
+        return results;
+    }
+
+    @Override
+    public <R, A> A withAllShards(@Nonnull DatabaseCallback<R> callback, @Nonnull Collector<? super R, ?, A> collector) throws RuntimeDatabaseException {
+        requireNonNull(callback, ERROR_CALLBACK_NULL);
+        requireNonNull(collector, "Argument 'collector' must not be null");
+        return collect(scatter(callback), collector);
+    }
+
+    @Nonnull
+    private <R> Map<String, CompletableFuture<R>> scatter(@Nonnull DatabaseCallback<R> callback) {
+        if (shardNames.isEmpty()) {
+            throw new IllegalStateException("No shards have been configured");
+        }
+        Map<String, CompletableFuture<R>> futures = new LinkedHashMap<>();
+        for (String shardName : shardNames) {
+            futures.put(shardName, databaseHandler.withEbeanAsync(shardName, callback));
+        }
+        return futures;
+    }
+
+    private <R, C, A> A collect(@Nonnull Map<String, CompletableFuture<R>> futures, @Nonnull Collector<? super R, C, A> collector) {
+        C container = collector.supplier().get();
+        BiConsumer<C, ? super R> accumulator = collector.accumulator();
+        gather(futures, (shardName, result) -> accumulator.accept(container, result));
+        return collector.finisher().apply(container);
+    }
+
+    /**
+     * Waits for every shard, merging results in shard order. The first failure is thrown once all shards are done,
+     * with the failures of other shards attached as suppressed exceptions.
+     */
+    private <R> void gather(@Nonnull Map<String, CompletableFuture<R>> futures, @Nonnull BiConsumer<String, R> consumer) {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<String, CompletableFuture<R>> e : futures.entrySet()) {
+            while (true) {
+                try {
+                    R result = e.getValue().get();
+                    if (failures.isEmpty()) {
+                        consumer.accept(e.getKey(), result);
+                    }
+                    break;
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                } catch (ExecutionException ee) {
+                    failures.put(e.getKey(), ee.getCause());
+                    break;
+                } catch (RuntimeException re) {
+                    failures.put(e.getKey(), re);
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!failures.isEmpty()) {
+            throw asRuntimeDatabaseException(failures);
+        }
+    }
+
+    @Nonnull
+    private static RuntimeDatabaseException asRuntimeDatabaseException(@Nonnull Map<String, Throwable> failures) {
+        RuntimeDatabaseException exception = null;
+        for (Map.Entry<String, Throwable> e : failures.entrySet()) {
+            Throwable failure = e.getValue();
+            if (exception == null) {
+                exception = failure instanceof RuntimeDatabaseException ? (RuntimeDatabaseException) failure :
+                    new RuntimeDatabaseException(e.getKey(), failure instanceof Exception ? (Exception) failure : new RuntimeException(failure));
+            } else {
+                exception.addSuppressed(failure);
+            }
+        }
+        return exception;
+    }
+
+    @Nonnull
+    private static List<String> readShardNames(@Nonnull DatabaseFactory databaseFactory) {
+        Object value = databaseFactory.getConfiguration().get(KEY_SHARDS);
+        List<String> names = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object name : (Collection<?>) value) {
+                names.add(String.valueOf(name).trim());
+            }
+        } else if (value != null) {
+            for (String name : String.valueOf(value).split(",")) {
+                names.add(name.trim());
+            }
+        }
+        names.removeIf(String::isEmpty);
+
+        for (String name : names) {
+            if (!databaseFactory.getDatabaseNames().contains(name)) {
+                throw new IllegalArgumentException("Shard '" + name + "' is not a configured database");
+            }
+        }
+        return names;
+    }
+}
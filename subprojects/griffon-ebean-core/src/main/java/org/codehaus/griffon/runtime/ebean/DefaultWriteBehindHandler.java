@@ -0,0 +1,201 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
+import griffon.plugins.ebean.WriteBehindHandler;
+import griffon.plugins.ebean.exceptions.DatabaseShutdownException;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps one write-behind queue per database name, configured by the {@code write_behind} block of each database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DefaultWriteBehindHandler implements WriteBehindHandler {
+    private static final String ERROR_DATABASE_NAME_BLANK = "Argument 'databaseName' must not be blank";
+    private static final String ERROR_BEAN_NULL = "Argument 'bean' must not be null";
+    private static final String KEY_WRITE_BEHIND = "write_behind";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_MAX_BATCH = "max_batch";
+    private static final String KEY_MAX_DELAY = "max_delay";
+    private static final String KEY_CAPACITY = "capacity";
+    private static final String KEY_OVERFLOW = "overflow";
+    private static final String KEY_OFFER_TIMEOUT = "offer_timeout";
+    private static final int DEFAULT_MAX_BATCH = 500;
+    private static final long DEFAULT_MAX_DELAY = 200L;
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final long DEFAULT_OFFER_TIMEOUT = 1000L;
+
+    private final DatabaseFactory databaseFactory;
+    private final DatabaseHandler databaseHandler;
+    private final DatabaseMetricsRegistry databaseMetricsRegistry;
+    private final DatabaseMetricsRecorder databaseMetricsRecorder;
+    private final ConcurrentMap<String, WriteBehindQueue> queues = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+
+    @Inject
+    public DefaultWriteBehindHandler(@Nonnull DatabaseFactory databaseFactory,
+                                     @Nonnull DatabaseHandler databaseHandler,
+                                     @Nonnull DatabaseMetricsRegistry databaseMetricsRegistry,
+                                     @Nonnull DatabaseMetricsRecorder databaseMetricsRecorder) {
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.databaseHandler = requireNonNull(databaseHandler, "Argument 'databaseHandler' must not be null");
+        this.databaseMetricsRegistry = requireNonNull(databaseMetricsRegistry, "Argument 'databaseMetricsRegistry' must not be null");
+        this.databaseMetricsRecorder = requireNonNull(databaseMetricsRecorder, "Argument 'databaseMetricsRecorder' must not be null");
+    }
+
+    @Override
+    public boolean saveBehind(@Nonnull Object bean) throws RuntimeDatabaseException {
+        return saveBehind(DefaultDatabaseFactory.KEY_DEFAULT, bean);
+    }
+
+    @Override
+    public boolean saveBehind(@Nonnull String databaseName, @Nonnull Object bean) throws RuntimeDatabaseException {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        requireNonNull(bean, ERROR_BEAN_NULL);
+
+        WriteBehindQueue queue = getQueue(databaseName);
+        if (queue == null) {
+            databaseHandler.withEbean(databaseName, (name, database) -> {
+                database.save(bean);
+                return null;
+            });
+            return true;
+        }
+        return queue.offer(bean);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> flushBehind() {
+        return flushBehind(DefaultDatabaseFactory.KEY_DEFAULT);
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> flushBehind(@Nonnull String databaseName) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        WriteBehindQueue queue = queues.get(databaseName);
+        return queue != null ? queue.flush() : CompletableFuture.<Void>completedFuture(null);
+    }
+
+    @Override
+    public boolean closeBehind(@Nonnull String databaseName, long timeout) {
+        requireNonBlank(databaseName, ERROR_DATABASE_NAME_BLANK);
+        WriteBehindQueue queue = queues.remove(databaseName);
+        if (queue == null) {
+            return true;
+        }
+        // counters of a closed queue remain visible until the next one is opened
+        return queue.close(timeout);
+    }
+
+    /**
+     * Closes every queue, sharing the given timeout in milliseconds. No queue can be opened afterwards.
+     *
+     * @return the names of the databases whose queue did not drain in time.
+     */
+    @Nonnull
+    public List<String> shutdown(long timeout) {
+        shutdown = true;
+        long deadline = System.currentTimeMillis() + timeout;
+        List<String> undrained = new ArrayList<>();
+        for (String databaseName : new ArrayList<>(queues.keySet())) {
+            if (!closeBehind(databaseName, Math.max(0L, deadline - System.currentTimeMillis()))) {
+                undrained.add(databaseName);
+            }
+        }
+        return undrained;
+    }
+
+    @Nullable
+    private WriteBehindQueue getQueue(@Nonnull String databaseName) {
+        WriteBehindQueue queue = queues.get(databaseName);
+        if (queue != null) {
+            return queue;
+        }
+
+        if (!databaseFactory.getDatabaseNames().contains(databaseName)) {
+            throw new IllegalArgumentException("Database '" + databaseName + "' is not configured");
+        }
+        if (!isEnabled(databaseName)) {
+            return null;
+        }
+
+        synchronized (queues) {
+            if (shutdown) {
+                throw new DatabaseShutdownException(databaseName);
+            }
+            queue = queues.get(databaseName);
+            if (queue == null) {
+                queue = createQueue(databaseName);
+                queues.put(databaseName, queue);
+                databaseMetricsRegistry.getMetrics(databaseName).setWriteBehindQueue(queue);
+            }
+            return queue;
+        }
+    }
+
+    private boolean isEnabled(@Nonnull String databaseName) {
+        Object value = databaseFactory.getConfigurationFor(databaseName).get(KEY_WRITE_BEHIND);
+        if (value instanceof Map) {
+            return getConfigValueAsBoolean(asMap(value), KEY_ENABLED, true);
+        }
+        return value != null && Boolean.parseBoolean(String.valueOf(value));
+    }
+
+    @Nonnull
+    private WriteBehindQueue createQueue(@Nonnull String databaseName) {
+        Object value = databaseFactory.getConfigurationFor(databaseName).get(KEY_WRITE_BEHIND);
+        Map<String, Object> config = value instanceof Map ? asMap(value) : Collections.<String, Object>emptyMap();
+        return new WriteBehindQueue(databaseName, databaseHandler, databaseMetricsRecorder,
+            getConfigValueAsInt(config, KEY_MAX_BATCH, DEFAULT_MAX_BATCH),
+            getConfigValueAsLong(config, KEY_MAX_DELAY, DEFAULT_MAX_DELAY),
+            getConfigValueAsInt(config, KEY_CAPACITY, DEFAULT_CAPACITY),
+            WriteBehindQueue.Overflow.of(getConfigValueAsString(config, KEY_OVERFLOW, null)),
+            getConfigValueAsLong(config, KEY_OFFER_TIMEOUT, DEFAULT_OFFER_TIMEOUT));
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(@Nonnull Object value) {
+        return (Map<String, Object>) value;
+    }
+}
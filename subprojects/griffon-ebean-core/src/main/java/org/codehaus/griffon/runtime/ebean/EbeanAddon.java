@@ -19,24 +19,47 @@ package org.codehaus.griffon.runtime.ebean;
 
 import griffon.annotations.core.Nonnull;
 import griffon.annotations.inject.DependsOn;
+import griffon.core.Configuration;
 import griffon.core.GriffonApplication;
 import griffon.core.env.Metadata;
 import griffon.core.events.StartupStartEvent;
-import griffon.plugins.ebean.DatabaseCallback;
 import griffon.plugins.ebean.DatabaseFactory;
 import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseRegistry;
 import griffon.plugins.ebean.DatabaseStorage;
+import griffon.plugins.ebean.StartupMode;
+import griffon.plugins.ebean.WriteBehindHandler;
+import griffon.plugins.ebean.events.DatabaseAddedEvent;
+import griffon.plugins.ebean.events.DatabaseRemovedEvent;
 import griffon.plugins.monitor.MBeanManager;
 import io.ebean.Database;
 import org.codehaus.griffon.runtime.core.addon.AbstractGriffonAddon;
+import org.codehaus.griffon.runtime.ebean.cluster.CacheInvalidationBroadcaster;
+import org.codehaus.griffon.runtime.ebean.monitor.AbstractDatabaseMonitor;
+import org.codehaus.griffon.runtime.ebean.monitor.DatabaseBulkheadMonitor;
+import org.codehaus.griffon.runtime.ebean.monitor.DatabaseMonitor;
+import org.codehaus.griffon.runtime.ebean.monitor.DatabaseRegistryMonitor;
 import org.codehaus.griffon.runtime.ebean.monitor.DatabaseStorageMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.application.event.EventHandler;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
 
 /**
  * @author Andres Almiray
@@ -44,6 +67,17 @@ import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
 @DependsOn("datasource")
 @Named("ebean")
 public class EbeanAddon extends AbstractGriffonAddon {
+    private static final Logger LOG = LoggerFactory.getLogger(EbeanAddon.class);
+    private static final String KEY_STARTUP = "startup";
+    private static final String KEY_PARALLEL = "parallel";
+    private static final String KEY_THREADS = "threads";
+    private static final int DEFAULT_STARTUP_THREADS = 4;
+    private static final String KEY_SHUTDOWN = "shutdown";
+    private static final String KEY_DRAIN_TIMEOUT = "drain_timeout";
+    private static final String KEY_CLOSE_TIMEOUT = "close_timeout";
+    private static final long DEFAULT_DRAIN_TIMEOUT = 30000L;
+    private static final long DEFAULT_CLOSE_TIMEOUT = 10000L;
+
     @Inject
     private DatabaseHandler databaseHandler;
 
@@ -53,36 +87,229 @@ public class EbeanAddon extends AbstractGriffonAddon {
     @Inject
     private DatabaseStorage databaseStorage;
 
+    @Inject
+    private DatabaseRegistry databaseRegistry;
+
+    @Inject
+    private DatabaseBulkheads databaseBulkheads;
+
+    @Inject
+    private DatabaseMetricsRegistry databaseMetricsRegistry;
+
+    @Inject
+    private DatabaseExecutors databaseExecutors;
+
+    @Inject
+    private DatabaseLeases databaseLeases;
+
+    @Inject
+    private WriteBehindHandler writeBehindHandler;
+
+    @Inject
+    private CacheInvalidationBroadcaster cacheInvalidationBroadcaster;
+
     @Inject
     private MBeanManager mbeanManager;
 
     @Inject
     private Metadata metadata;
 
+    @Inject
+    @Named("ebean")
+    private Configuration configuration;
+
+    private DatabaseConnector backgroundConnector;
+    private final ConcurrentMap<String, List<AbstractDatabaseMonitor>> databaseMonitors = new ConcurrentHashMap<>();
+
     @Override
     public void init(@Nonnull GriffonApplication application) {
         mbeanManager.registerMBean(new DatabaseStorageMonitor(metadata, databaseStorage));
+        mbeanManager.registerMBean(new DatabaseRegistryMonitor(metadata, databaseRegistry, databaseFactory));
+        for (String databaseName : databaseFactory.getDatabaseNames()) {
+            registerDatabaseMonitors(databaseName);
+        }
+    }
+
+    @EventHandler
+    public void handleDatabaseAddedEvent(@Nonnull DatabaseAddedEvent event) {
+        registerDatabaseMonitors(event.getName());
+    }
+
+    @EventHandler
+    public void handleDatabaseRemovedEvent(@Nonnull DatabaseRemovedEvent event) {
+        List<AbstractDatabaseMonitor> monitors = databaseMonitors.remove(event.getName());
+        if (monitors != null) {
+            for (AbstractDatabaseMonitor monitor : monitors) {
+                monitor.unregister();
+            }
+        }
+    }
+
+    private void registerDatabaseMonitors(@Nonnull String databaseName) {
+        List<AbstractDatabaseMonitor> monitors = Arrays.asList(
+            new DatabaseBulkheadMonitor(metadata, databaseName, databaseBulkheads),
+            new DatabaseMonitor(metadata, databaseMetricsRegistry.getMetrics(databaseName), databaseStorage));
+        if (databaseMonitors.putIfAbsent(databaseName, monitors) == null) {
+            for (AbstractDatabaseMonitor monitor : monitors) {
+                mbeanManager.registerMBean(monitor);
+            }
+        }
     }
 
     @EventHandler
     public void handleStartupStartEvent(@Nonnull StartupStartEvent event) {
+        List<String> databaseNames = new ArrayList<>();
+        List<String> backgroundDatabaseNames = new ArrayList<>();
         for (String databaseName : databaseFactory.getDatabaseNames()) {
-            Map<String, Object> config = databaseFactory.getConfigurationFor(databaseName);
-            if (getConfigValueAsBoolean(config, "connect_on_startup", false)) {
-                databaseHandler.withEbean(databaseName, new DatabaseCallback<Void>() {
-                    @Override
-                    public Void handle(@Nonnull String databaseName, @Nonnull Database database) {
-                        return null;
-                    }
-                });
+            StartupMode startupMode = databaseFactory.getStartupMode(databaseName);
+            if (startupMode == StartupMode.EAGER) {
+                databaseNames.add(databaseName);
+            } else if (startupMode == StartupMode.BACKGROUND) {
+                backgroundDatabaseNames.add(databaseName);
+            }
+        }
+
+        Map<String, Object> startup = getConfigurationBlock(KEY_STARTUP);
+        int threads = Math.max(1, getConfigValueAsInt(startup, KEY_THREADS, DEFAULT_STARTUP_THREADS));
+        if (!backgroundDatabaseNames.isEmpty()) {
+            LOG.debug("Connecting to databases {} in the background", backgroundDatabaseNames);
+            backgroundConnector = new DatabaseConnector(databaseHandler, "ebean-warmup", Math.min(threads, backgroundDatabaseNames.size()));
+            backgroundConnector.connectInBackground(backgroundDatabaseNames);
+        }
+
+        if (databaseNames.size() > 1 && getConfigValueAsBoolean(startup, KEY_PARALLEL, false)) {
+            LOG.debug("Connecting to databases {} in parallel", databaseNames);
+            new DatabaseConnector(databaseHandler, "ebean-startup", Math.min(threads, databaseNames.size())).connectAll(databaseNames);
+        } else {
+            for (String databaseName : databaseNames) {
+                DatabaseConnector.connect(databaseHandler, databaseName);
             }
         }
     }
 
     @Override
     public void onShutdown(@Nonnull GriffonApplication application) {
-        for (String databaseName : databaseFactory.getDatabaseNames()) {
-            databaseHandler.closeEbean(databaseName);
+        Map<String, Object> shutdown = getConfigurationBlock(KEY_SHUTDOWN);
+        long drainTimeout = Math.max(0L, getConfigValueAsLong(shutdown, KEY_DRAIN_TIMEOUT, DEFAULT_DRAIN_TIMEOUT));
+        long closeTimeout = Math.max(0L, getConfigValueAsLong(shutdown, KEY_CLOSE_TIMEOUT, DEFAULT_CLOSE_TIMEOUT));
+        int threads = Math.max(1, getConfigValueAsInt(shutdown, KEY_THREADS, DEFAULT_STARTUP_THREADS));
+
+        stopBackgroundConnections(closeTimeout);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+        stopRegistry(deadline, drainTimeout);
+        if (databaseStorage instanceof BoundedDatabaseStorage) {
+            ((BoundedDatabaseStorage) databaseStorage).shutdown();
+        }
+
+        // queued beans are written through regular callbacks, so they go first
+        if (writeBehindHandler instanceof DefaultWriteBehindHandler) {
+            List<String> undrained = ((DefaultWriteBehindHandler) writeBehindHandler).shutdown(drainTimeout);
+            if (!undrained.isEmpty()) {
+                LOG.warn("Write-behind queues of databases {} did not drain within {} ms", undrained, drainTimeout);
+            }
+        }
+
+        // callbacks already running or queued may finish, new ones are rejected
+        databaseLeases.stopAdmitting();
+        List<String> databaseNames = new ArrayList<>(databaseFactory.getDatabaseNames());
+        if (databaseNames.size() > 1 && threads > 1) {
+            closeInParallel(databaseNames, Math.min(threads, databaseNames.size()), deadline, drainTimeout, closeTimeout);
+        } else {
+            for (String databaseName : databaseNames) {
+                drainAndClose(databaseName, deadline, drainTimeout);
+            }
+        }
+        cacheInvalidationBroadcaster.shutdown();
+    }
+
+    private void closeInParallel(@Nonnull List<String> databaseNames, int threads, final long deadline, final long drainTimeout, long closeTimeout) {
+        LOG.debug("Closing databases {} using {} threads", databaseNames, threads);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("ebean-shutdown"));
+        for (final String databaseName : databaseNames) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drainAndClose(databaseName, deadline, drainTimeout);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Could not close database '{}'", databaseName, e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        try {
+            // shutdown threads are daemons, a database that hangs while closing does not keep the JVM alive
+            long timeout = drainTimeout + closeTimeout;
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Databases {} did not close within {} ms", databaseNames, timeout);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        LOG.info("Closed databases {} in {} ms", databaseNames, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void drainAndClose(@Nonnull String databaseName, long deadline, long drainTimeout) {
+        try {
+            boolean drained = databaseExecutors.drain(databaseName, remaining(deadline), TimeUnit.NANOSECONDS);
+            Database database = databaseStorage.get(databaseName);
+            if (database != null) {
+                drained &= databaseLeases.drain(database, remaining(deadline), TimeUnit.NANOSECONDS);
+            }
+            if (!drained) {
+                LOG.warn("Database '{}' did not drain within {} ms. Closing it with {} callbacks still running and {} asynchronous callbacks still queued",
+                    databaseName, drainTimeout, database != null ? databaseLeases.getLeaseCount(database) : 0, databaseExecutors.getPendingCount(databaseName));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        databaseHandler.closeEbean(databaseName);
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0L, deadline - System.nanoTime());
+    }
+
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getConfigurationBlock(@Nonnull String key) {
+        Object block = configuration.get(key);
+        return block instanceof Map ? (Map<String, Object>) block : Collections.<String, Object>emptyMap();
+    }
+
+    private void stopRegistry(long deadline, long drainTimeout) {
+        if (!(databaseRegistry instanceof DefaultDatabaseRegistry)) {
+            return;
+        }
+
+        // rebuilds in progress swap in their replacement before the databases are closed
+        try {
+            if (!((DefaultDatabaseRegistry) databaseRegistry).shutdown(TimeUnit.NANOSECONDS.toMillis(remaining(deadline)))) {
+                LOG.warn("Database registry operations did not finish within {} ms", drainTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stopBackgroundConnections(long timeout) {
+        if (backgroundConnector == null) {
+            return;
+        }
+
+        // databases still connecting are closed by the connector once they are done
+        backgroundConnector.abandon(false);
+        try {
+            if (!backgroundConnector.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Background database connections did not finish within {} ms. Their databases are closed as they connect", timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
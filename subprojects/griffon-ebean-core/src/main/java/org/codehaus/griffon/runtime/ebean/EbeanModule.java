@@ -21,11 +21,18 @@ import griffon.annotations.inject.DependsOn;
 import griffon.core.Configuration;
 import griffon.core.addon.GriffonAddon;
 import griffon.core.injection.Module;
+import griffon.plugins.ebean.CacheInvalidationTransport;
 import griffon.plugins.ebean.DatabaseFactory;
 import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
+import griffon.plugins.ebean.DatabaseRegistry;
 import griffon.plugins.ebean.DatabaseStorage;
+import griffon.plugins.ebean.ShardResolver;
+import griffon.plugins.ebean.ShardedDatabaseHandler;
+import griffon.plugins.ebean.WriteBehindHandler;
 import org.codehaus.griffon.runtime.core.injection.AbstractModule;
-import org.codehaus.griffon.runtime.util.ResourceBundleProvider;
+import org.codehaus.griffon.runtime.ebean.cluster.CacheInvalidationBroadcaster;
+import org.codehaus.griffon.runtime.ebean.cluster.CacheInvalidationTransportProvider;
 import org.kordamp.jipsy.annotations.ServiceProviderFor;
 
 import javax.inject.Named;
@@ -45,7 +52,7 @@ public class EbeanModule extends AbstractModule {
         // tag::bindings[]
         bind(ResourceBundle.class)
             .withClassifier(named("ebean"))
-            .toProvider(new ResourceBundleProvider("Ebean"))
+            .toProvider(new ReloadableResourceBundleProvider("Ebean"))
             .asSingleton();
 
         bind(Configuration.class)
@@ -54,17 +61,73 @@ public class EbeanModule extends AbstractModule {
             .asSingleton();
 
         bind(DatabaseStorage.class)
-            .to(DefaultDatabaseStorage.class)
+            .toProvider(DatabaseStorageProvider.class)
+            .asSingleton();
+
+        bind(CacheInvalidationTransport.class)
+            .toProvider(CacheInvalidationTransportProvider.class)
+            .asSingleton();
+
+        bind(CacheInvalidationBroadcaster.class)
+            .to(CacheInvalidationBroadcaster.class)
+            .asSingleton();
+
+        bind(DatabaseMetadataCache.class)
+            .to(DatabaseMetadataCache.class)
             .asSingleton();
 
         bind(DatabaseFactory.class)
             .to(DefaultDatabaseFactory.class)
             .asSingleton();
 
+        bind(DatabaseExecutors.class)
+            .to(DatabaseExecutors.class)
+            .asSingleton();
+
+        bind(DatabaseBulkheads.class)
+            .to(DatabaseBulkheads.class)
+            .asSingleton();
+
+        bind(DatabaseMetricsRegistry.class)
+            .to(DatabaseMetricsRegistry.class)
+            .asSingleton();
+
+        bind(DatabaseMetricsRecorder.class)
+            .to(NoopDatabaseMetricsRecorder.class)
+            .asSingleton();
+
+        bind(DatabaseTxDefaults.class)
+            .to(DatabaseTxDefaults.class)
+            .asSingleton();
+
+        bind(DatabaseLeases.class)
+            .to(DatabaseLeases.class)
+            .asSingleton();
+
+        bind(DatabaseResultCaches.class)
+            .to(DatabaseResultCaches.class)
+            .asSingleton();
+
         bind(DatabaseHandler.class)
             .to(DefaultDatabaseHandler.class)
             .asSingleton();
 
+        bind(DatabaseRegistry.class)
+            .to(DefaultDatabaseRegistry.class)
+            .asSingleton();
+
+        bind(ShardResolver.class)
+            .to(HashShardResolver.class)
+            .asSingleton();
+
+        bind(ShardedDatabaseHandler.class)
+            .to(DefaultShardedDatabaseHandler.class)
+            .asSingleton();
+
+        bind(WriteBehindHandler.class)
+            .to(DefaultWriteBehindHandler.class)
+            .asSingleton();
+
         bind(GriffonAddon.class)
             .to(EbeanAddon.class)
             .asSingleton();
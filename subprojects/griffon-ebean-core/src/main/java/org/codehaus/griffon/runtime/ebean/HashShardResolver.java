@@ -0,0 +1,43 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.ShardResolver;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spreads keys over the shards by hash code.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class HashShardResolver implements ShardResolver {
+    @Nonnull
+    @Override
+    public String resolveShard(@Nonnull Object key, @Nonnull List<String> shardNames) {
+        requireNonNull(key, "Argument 'key' must not be null");
+        if (shardNames.isEmpty()) {
+            throw new IllegalStateException("No shards have been configured");
+        }
+        return shardNames.get(Math.floorMod(key.hashCode(), shardNames.size()));
+    }
+}
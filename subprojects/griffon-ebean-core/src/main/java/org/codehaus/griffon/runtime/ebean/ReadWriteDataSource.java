@@ -0,0 +1,136 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Primary {@code DataSource} of a database with replicas. Connections requested while the current thread runs a
+ * {@code withEbeanReadOnly} callback of this very database come from the replicas, every other connection comes
+ * from the primary. Routing is tracked per database name, a nested {@code withEbean} callback on another database,
+ * or on the same one, is not affected by an enclosing read-only callback.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+class ReadWriteDataSource implements DataSource {
+    private static final ThreadLocal<Set<String>> READ_ONLY = new ThreadLocal<>();
+
+    private final String databaseName;
+    private final DataSource primary;
+    private final DataSource replicas;
+
+    ReadWriteDataSource(@Nonnull String databaseName, @Nonnull DataSource primary, @Nonnull DataSource replicas) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.primary = requireNonNull(primary, "Argument 'primary' must not be null");
+        this.replicas = requireNonNull(replicas, "Argument 'replicas' must not be null");
+    }
+
+    /**
+     * Routes connections of the given database requested by the current thread to its replicas, or back to its
+     * primary. Routing of every other database is left as is.
+     *
+     * @return the routing to restore with {@link #restoreRouting(Set)}
+     */
+    @Nullable
+    static Set<String> routeToReplicas(@Nonnull String databaseName, boolean readOnly) {
+        Set<String> previous = READ_ONLY.get();
+        boolean routed = previous != null && previous.contains(databaseName);
+        if (routed != readOnly) {
+            Set<String> routing = previous != null ? new HashSet<>(previous) : new HashSet<>();
+            if (readOnly) {
+                routing.add(databaseName);
+            } else {
+                routing.remove(databaseName);
+            }
+            READ_ONLY.set(routing.isEmpty() ? null : Collections.unmodifiableSet(routing));
+        }
+        return previous;
+    }
+
+    static void restoreRouting(@Nullable Set<String> previous) {
+        if (previous == null) {
+            READ_ONLY.remove();
+        } else {
+            READ_ONLY.set(previous);
+        }
+    }
+
+    private boolean isRoutedToReplicas() {
+        Set<String> routing = READ_ONLY.get();
+        return routing != null && routing.contains(databaseName);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return isRoutedToReplicas() ? replicas.getConnection() : primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return isRoutedToReplicas() ? replicas.getConnection(username, password) : primary.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+}
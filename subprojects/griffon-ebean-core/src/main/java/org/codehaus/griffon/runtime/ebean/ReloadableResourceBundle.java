@@ -0,0 +1,96 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.util.CompositeResourceBundleBuilder;
+
+import java.util.Enumeration;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@code ResourceBundle} that delegates to a bundle built from a basename, which can be built again on demand.
+ * Configurations wrapping this bundle see the new values right after {@link #reload()}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class ReloadableResourceBundle extends ResourceBundle {
+    private final String basename;
+    private final CompositeResourceBundleBuilder resourceBundleBuilder;
+    private volatile ResourceBundle delegate;
+
+    public ReloadableResourceBundle(@Nonnull String basename, @Nonnull CompositeResourceBundleBuilder resourceBundleBuilder) {
+        this.basename = requireNonBlank(basename, "Argument 'basename' must not be blank");
+        this.resourceBundleBuilder = requireNonNull(resourceBundleBuilder, "Argument 'resourceBundleBuilder' must not be null");
+        this.delegate = resourceBundleBuilder.create(basename);
+    }
+
+    @Nonnull
+    public String getBasename() {
+        return basename;
+    }
+
+    /**
+     * Builds the bundle again, picking up changes made to its sources.
+     */
+    public synchronized void reload() {
+        delegate = resourceBundleBuilder.create(basename);
+    }
+
+    /**
+     * Builds the bundle again and keeps the new values only if the given check passes. Otherwise the previous values
+     * are restored and the failure of the check is rethrown.
+     *
+     * @param check runs against the new values.
+     */
+    public synchronized void reload(@Nonnull Runnable check) {
+        requireNonNull(check, "Argument 'check' must not be null");
+        ResourceBundle previous = delegate;
+        delegate = resourceBundleBuilder.create(basename);
+        try {
+            check.run();
+        } catch (RuntimeException | Error e) {
+            delegate = previous;
+            throw e;
+        }
+    }
+
+    @Override
+    protected Object handleGetObject(@Nonnull String key) {
+        ResourceBundle bundle = delegate;
+        return bundle.containsKey(key) ? bundle.getObject(key) : null;
+    }
+
+    @Nonnull
+    @Override
+    public Enumeration<String> getKeys() {
+        return delegate.getKeys();
+    }
+
+    @Nonnull
+    @Override
+    protected Set<String> handleKeySet() {
+        // ResourceBundle caches the key set computed by default, which would outlive a reload
+        return delegate.keySet();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.util.CompositeResourceBundleBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import java.util.ResourceBundle;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class ReloadableResourceBundleProvider implements Provider<ResourceBundle> {
+    private final String basename;
+
+    @Inject
+    private CompositeResourceBundleBuilder resourceBundleBuilder;
+
+    public ReloadableResourceBundleProvider(@Nonnull String basename) {
+        this.basename = requireNonBlank(basename, "Argument 'basename' must not be blank");
+    }
+
+    @Override
+    public ResourceBundle get() {
+        requireNonNull(resourceBundleBuilder, "Argument 'resourceBundleBuilder' must not be null");
+        return new ReloadableResourceBundle(basename, resourceBundleBuilder);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Balances connections over the read replicas of a database. Replicas that fail to hand out a connection are
+ * skipped for a while, as are replicas whose reported lag goes over the limit. When no replica is available
+ * connections come from the primary, unless fallback has been disabled.
+ * <p>
+ * Lag is queried by a background thread every {@code lagCheckIntervalMillis}, connection requests only look at the
+ * last known value. Call {@link #close()} once the database is gone to stop that thread.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class ReplicaDataSource implements DataSource {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_BUSY;
+
+        @Nonnull
+        public static Balancing of(@Nullable String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return ROUND_ROBIN;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        }
+    }
+
+    private final String databaseName;
+    private final List<Replica> replicas;
+    private final DataSource primary;
+    private final Balancing balancing;
+    private final long retryAfterMillis;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+
+    public ReplicaDataSource(@Nonnull String databaseName,
+                             @Nonnull List<String> replicaNames,
+                             @Nonnull List<DataSource> replicaDataSources,
+                             @Nullable DataSource primary,
+                             @Nonnull Balancing balancing,
+                             long retryAfterMillis,
+                             @Nullable String lagQuery,
+                             long maxLagMillis,
+                             long lagCheckIntervalMillis) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(replicaNames, "Argument 'replicaNames' must not be null");
+        requireNonNull(replicaDataSources, "Argument 'replicaDataSources' must not be null");
+        if (replicaNames.isEmpty() || replicaNames.size() != replicaDataSources.size()) {
+            throw new IllegalArgumentException("Replica names and data sources of database '" + databaseName + "' do not match");
+        }
+        List<Replica> list = new ArrayList<>();
+        for (int i = 0; i < replicaNames.size(); i++) {
+            list.add(new Replica(replicaNames.get(i), requireNonNull(replicaDataSources.get(i), "replica")));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.primary = primary;
+        this.balancing = requireNonNull(balancing, "Argument 'balancing' must not be null");
+        this.retryAfterMillis = retryAfterMillis;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+
+        if (lagQuery != null) {
+            lagChecker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ebean-replica-lag-" + databaseName));
+            lagChecker.scheduleWithFixedDelay(this::checkLag, 0L, Math.max(1L, lagCheckIntervalMillis), TimeUnit.MILLISECONDS);
+        } else {
+            lagChecker = null;
+        }
+    }
+
+    /**
+     * Stops the lag checks. Replica data sources are left open, they are owned by their configuration.
+     */
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+    }
+
+    private void checkLag() {
+        for (Replica replica : replicas) {
+            try {
+                replica.checkLag();
+            } catch (RuntimeException e) {
+                LOG.warn("Could not check the lag of replica '{}' of database '{}'", replica.name, databaseName, e);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        SQLException failure = null;
+        for (Replica replica : candidates()) {
+            try {
+                return replica.borrow();
+            } catch (SQLException e) {
+                replica.markDown();
+                LOG.warn("Replica '{}' of database '{}' is unavailable, skipping it for {}ms", replica.name, databaseName, retryAfterMillis, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (primary != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No replica of database '{}' is available, using the primary", databaseName);
+            }
+            return primary.getConnection();
+        }
+        throw failure != null ? failure : new SQLException("No replica of database '" + databaseName + "' is available");
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replicas of database '" + databaseName + "' use the credentials of their own configuration");
+    }
+
+    @Nonnull
+    public List<String> getReplicaNames() {
+        List<String> names = new ArrayList<>();
+        for (Replica replica : replicas) {
+            names.add(replica.name);
+        }
+        return names;
+    }
+
+    /**
+     * Number of replicas currently eligible to hand out connections.
+     */
+    public int getAvailableReplicas() {
+        long now = System.currentTimeMillis();
+        int available = 0;
+        for (Replica replica : replicas) {
+            if (replica.isAvailable(now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @Nonnull
+    private List<Replica> candidates() {
+        long now = System.currentTimeMillis();
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        int offset = balancing == Balancing.ROUND_ROBIN ? Math.floorMod(next.getAndIncrement(), replicas.size()) : 0;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((offset + i) % replicas.size());
+            if (replica.isAvailable(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (balancing == Balancing.LEAST_BUSY) {
+            candidates.sort(Comparator.comparingInt(replica -> replica.active.get()));
+        }
+        return candidates;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return replicas.get(0).dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        for (Replica replica : replicas) {
+            replica.dataSource.setLogWriter(out);
+        }
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        for (Replica replica : replicas) {
+            replica.dataSource.setLoginTimeout(seconds);
+        }
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return replicas.get(0).dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException(getClass().getName() + " does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile long downUntil;
+        private volatile boolean lagging;
+
+        private Replica(@Nonnull String name, @Nonnull DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable(long now) {
+            return now >= downUntil && !lagging;
+        }
+
+        private void markDown() {
+            downUntil = System.currentTimeMillis() + retryAfterMillis;
+        }
+
+        private void checkLag() {
+            boolean wasLagging = lagging;
+            lagging = queryLag() > maxLagMillis;
+            if (lagging && !wasLagging) {
+                LOG.warn("Replica '{}' of database '{}' lags more than {}ms behind the primary", name, databaseName, maxLagMillis);
+            }
+        }
+
+        private long queryLag() {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            } catch (SQLException e) {
+                markDown();
+                LOG.warn("Could not query the lag of replica '{}' of database '{}'", name, databaseName, e);
+                return 0L;
+            }
+        }
+
+        @Nonnull
+        private Connection borrow() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            if (balancing != Balancing.LEAST_BUSY) {
+                return connection;
+            }
+
+            active.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                    return System.identityHashCode(proxy);
+                } else if ("close".equals(method.getName()) && method.getParameterCount() == 0 && closed.compareAndSet(false, true)) {
+                    active.decrementAndGet();
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+}
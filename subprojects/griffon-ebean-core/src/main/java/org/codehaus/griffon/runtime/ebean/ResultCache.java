@@ -0,0 +1,312 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.ResultCacheOptions;
+import org.codehaus.griffon.runtime.ebean.monitor.ResultCacheStatistics;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Memoises callback results of a single database.
+ * <p>
+ * Entries are weighed by the number of elements they hold, collections, maps and arrays count one per element and
+ * everything else counts one. Least recently used entries are evicted once the total weight exceeds the limit.
+ * Concurrent misses on the same key share a single load.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class ResultCache {
+    private final String databaseName;
+    private final long maxWeight;
+    private final long defaultTtl;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, FutureTask<Object>> loads = new ConcurrentHashMap<>();
+    // invalidations are numbered so that a load overlapping one of them does not store a stale result
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private long version;
+    private long anyTableVersion;
+    private long clearVersion;
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder sharedLoads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxWeight  maximum total weight of the entries
+     * @param defaultTtl time to live in milliseconds of entries whose options do not set one
+     */
+    public ResultCache(@Nonnull String databaseName, long maxWeight, long defaultTtl) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.maxWeight = Math.max(1L, maxWeight);
+        this.defaultTtl = Math.max(1L, defaultTtl);
+    }
+
+    /**
+     * Returns the cached result for the options' key, running the loader on a miss.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <R> R get(@Nonnull ResultCacheOptions options, @Nonnull Callable<R> loader) throws Exception {
+        requireNonNull(options, "Argument 'options' must not be null");
+        requireNonNull(loader, "Argument 'loader' must not be null");
+        String key = options.getKey();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.increment();
+                    return (R) entry.value;
+                }
+                remove(key);
+            }
+        }
+        misses.increment();
+
+        FutureTask<Object> task = new FutureTask<>(new Loader(options, loader));
+        FutureTask<Object> pending = loads.putIfAbsent(key, task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+            } finally {
+                loads.remove(key, task);
+            }
+        } else {
+            sharedLoads.increment();
+        }
+
+        return (R) await(pending);
+    }
+
+    /**
+     * Drops the entries read from any of the given tables, as well as those that did not declare their tables.
+     */
+    public void invalidate(@Nonnull Set<String> tables) {
+        requireNonNull(tables, "Argument 'tables' must not be null");
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(table.toLowerCase(Locale.ENGLISH));
+        }
+
+        synchronized (this) {
+            long v = ++version;
+            anyTableVersion = v;
+            for (String name : names) {
+                tableVersions.put(name, v);
+            }
+
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.readsAny(names)) {
+                    it.remove();
+                    weight -= entry.weight;
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public synchronized void clear() {
+        invalidations.add(entries.size());
+        clearVersion = ++version;
+        entries.clear();
+        weight = 0;
+    }
+
+    @Nonnull
+    public synchronized ResultCacheStatistics getStatistics() {
+        long loaded = loadCount.sum();
+        return new ResultCacheStatistics(databaseName, entries.size(), weight, maxWeight,
+            hits.sum(), misses.sum(), sharedLoads.sum(), loaded, loadFailures.sum(),
+            loaded > 0 ? TimeUnit.NANOSECONDS.toMicros(loadNanos.sum() / loaded) : 0L,
+            evictions.sum(), invalidations.sum());
+    }
+
+    private synchronized long currentVersion() {
+        return version;
+    }
+
+    private synchronized void store(@Nonnull ResultCacheOptions options, @Nullable Object value, long loadedAt) {
+        // skip results that may have been read before a modification of their tables
+        Set<String> tables = options.getTables();
+        if (clearVersion > loadedAt) {
+            return;
+        } else if (tables.isEmpty()) {
+            if (anyTableVersion > loadedAt) {
+                return;
+            }
+        } else {
+            for (String table : tables) {
+                Long v = tableVersions.get(table);
+                if (v != null && v > loadedAt) {
+                    return;
+                }
+            }
+        }
+
+        long w = weigh(value);
+        if (w > maxWeight) {
+            return;
+        }
+
+        long ttl = options.getTtl() > 0 ? options.getTtl() : defaultTtl;
+        remove(options.getKey());
+        entries.put(options.getKey(), new Entry(value, w, tables, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl)));
+        weight += w;
+
+        for (Iterator<Entry> it = entries.values().iterator(); weight > maxWeight && it.hasNext(); ) {
+            Entry eldest = it.next();
+            it.remove();
+            weight -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    private void remove(@Nonnull String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    @Nullable
+    private Object await(@Nonnull FutureTask<Object> task) throws Exception {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // the load is shared with other callers, keep waiting and restore the flag afterwards
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (Exception) cause;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static long weigh(@Nullable Object value) {
+        if (value instanceof Collection) {
+            return Math.max(1L, ((Collection<?>) value).size());
+        } else if (value instanceof Map) {
+            return Math.max(1L, ((Map<?, ?>) value).size());
+        } else if (value != null && value.getClass().isArray()) {
+            return Math.max(1L, Array.getLength(value));
+        }
+        return 1L;
+    }
+
+    private class Loader implements Callable<Object> {
+        private final ResultCacheOptions options;
+        private final Callable<?> loader;
+
+        private Loader(@Nonnull ResultCacheOptions options, @Nonnull Callable<?> loader) {
+            this.options = options;
+            this.loader = loader;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            long loadedAt = currentVersion();
+            long start = System.nanoTime();
+            try {
+                Object value = loader.call();
+                store(options, value, loadedAt);
+                return value;
+            } catch (Exception e) {
+                loadFailures.increment();
+                throw e;
+            } finally {
+                loadCount.increment();
+                loadNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long weight;
+        private final Set<String> tables;
+        private final long expiresAt;
+
+        private Entry(@Nullable Object value, long weight, @Nonnull Set<String> tables, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean readsAny(@Nonnull Set<String> modifiedTables) {
+            if (tables.isEmpty()) {
+                return true;
+            }
+            for (String table : tables) {
+                if (modifiedTables.contains(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs every task on its own virtual thread while capping how many of them may run at the same time. Tasks beyond
+ * the cap park cheaply on a semaphore instead of holding a platform thread while waiting for a pooled connection.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class VirtualThreadDatabaseExecutor extends AbstractExecutorService {
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadDatabaseExecutor.class);
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = resolveFactoryMethod();
+
+    private final ExecutorService delegate;
+    private final int maxRunning;
+    private final Semaphore running;
+    private final Semaphore admitted;
+    private final boolean blockWhenFull;
+    private final Set<Runnable> pending = ConcurrentHashMap.newKeySet();
+
+    private VirtualThreadDatabaseExecutor(@Nonnull ExecutorService delegate, int maxRunning, int maxQueued, boolean blockWhenFull) {
+        this.delegate = requireNonNull(delegate, "Argument 'delegate' must not be null");
+        this.maxRunning = maxRunning;
+        this.running = new Semaphore(maxRunning);
+        this.admitted = new Semaphore(maxRunning + maxQueued);
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates a new executor, or returns {@code null} if the running JVM can not create virtual threads.
+     */
+    @Nullable
+    public static VirtualThreadDatabaseExecutor create(int maxRunning, int maxQueued, boolean blockWhenFull) {
+        if (!isSupported()) {
+            return null;
+        }
+
+        try {
+            ExecutorService delegate = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            return new VirtualThreadDatabaseExecutor(delegate, maxRunning, maxQueued, blockWhenFull);
+        } catch (Exception e) {
+            // preview releases expose the method but refuse to run without --enable-preview
+            LOG.debug("Virtual threads are not available", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(@Nonnull final Runnable command) {
+        requireNonNull(command, "Argument 'command' must not be null");
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        acquireAdmission();
+
+        pending.add(command);
+        try {
+            delegate.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        running.acquire();
+                    } catch (InterruptedException e) {
+                        pending.remove(command);
+                        admitted.release();
+                        return;
+                    }
+
+                    try {
+                        // a task drained by shutdownPending() must not run
+                        if (pending.remove(command)) {
+                            command.run();
+                        }
+                    } finally {
+                        running.release();
+                        admitted.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(command);
+            admitted.release();
+            throw e;
+        }
+    }
+
+    private void acquireAdmission() {
+        if (!blockWhenFull) {
+            if (!admitted.tryAcquire()) {
+                throw new RejectedExecutionException("Too many pending tasks");
+            }
+            return;
+        }
+
+        try {
+            admitted.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for admission", e);
+        }
+    }
+
+    /**
+     * Stops accepting tasks and returns those that have not started running yet. They will never be run.
+     */
+    @Nonnull
+    public List<Runnable> shutdownPending() {
+        delegate.shutdown();
+        List<Runnable> drained = new ArrayList<>();
+        for (Runnable runnable : pending) {
+            if (pending.remove(runnable)) {
+                drained.add(runnable);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Counts the tasks that have been submitted but have not started running yet.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Nonnull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> drained = shutdownPending();
+        delegate.shutdownNow();
+        return drained;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Nullable
+    private static Method resolveFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.plugins.ebean.DatabaseHandler;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
+import griffon.plugins.ebean.TxOptions;
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException;
+import griffon.plugins.ebean.exceptions.WriteBehindOverflowException;
+import org.codehaus.griffon.runtime.ebean.monitor.WriteBehindStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Buffers beans of a single database and saves them in batches on a dedicated thread.
+ * <p>
+ * A batch is written once it holds {@code maxBatch} beans or once the oldest of them has waited {@code maxDelay}
+ * milliseconds, whichever comes first. Each batch is saved in one JDBC batched transaction; a bean queued more than
+ * once within the same batch is saved only once.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class WriteBehindQueue {
+    enum Overflow {
+        BLOCK, FAIL, DROP_NEWEST, DROP_OLDEST;
+
+        @Nonnull
+        static Overflow of(@Nullable String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return BLOCK;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private final String databaseName;
+    private final DatabaseHandler databaseHandler;
+    private final DatabaseMetricsRecorder databaseMetricsRecorder;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final int capacity;
+    private final Overflow overflow;
+    private final long offerTimeoutNanos;
+    private final TxOptions txOptions;
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Entry> buffer = new ArrayDeque<>();
+    private final List<Barrier> barriers = new ArrayList<>();
+    // every queued bean gets a sequence number, barriers complete once all beans up to theirs have been processed
+    private long accepted;
+    private long processed;
+    private boolean flushRequested;
+    private boolean closed;
+    private boolean writing;
+    private int droppedWhileWriting;
+
+    private long written;
+    private long combined;
+    private long dropped;
+    private long failed;
+    private long batches;
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    WriteBehindQueue(@Nonnull String databaseName, @Nonnull DatabaseHandler databaseHandler, @Nonnull DatabaseMetricsRecorder databaseMetricsRecorder,
+                     int maxBatch, long maxDelay, int capacity, @Nonnull Overflow overflow, long offerTimeout) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.databaseHandler = requireNonNull(databaseHandler, "Argument 'databaseHandler' must not be null");
+        this.databaseMetricsRecorder = requireNonNull(databaseMetricsRecorder, "Argument 'databaseMetricsRecorder' must not be null");
+        this.overflow = requireNonNull(overflow, "Argument 'overflow' must not be null");
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxDelay));
+        this.capacity = Math.max(1, capacity);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, offerTimeout));
+        this.txOptions = TxOptions.defaults().withBatchMode(true).withBatchSize(this.maxBatch);
+        this.flusher = new NamedThreadFactory("ebean-write-behind-" + databaseName).newThread(this::flushLoop);
+        this.flusher.start();
+    }
+
+    /**
+     * @return {@code true} if the bean was queued, {@code false} if it was dropped.
+     */
+    boolean offer(@Nonnull Object bean) {
+        requireNonNull(bean, "Argument 'bean' must not be null");
+        lock.lock();
+        try {
+            if (closed) {
+                throw new WriteBehindOverflowException(databaseName, "the queue has been closed");
+            }
+            if (buffer.size() >= capacity && !makeRoom()) {
+                dropped++;
+                return false;
+            }
+
+            boolean wasEmpty = buffer.isEmpty();
+            buffer.addLast(new Entry(bean, System.nanoTime()));
+            accepted++;
+            if (wasEmpty || buffer.size() >= maxBatch) {
+                wakeUp.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the overflow policy to a full buffer. Must be called holding the lock.
+     *
+     * @return {@code false} if the new bean must be dropped.
+     */
+    private boolean makeRoom() {
+        switch (overflow) {
+            case DROP_NEWEST:
+                return false;
+            case DROP_OLDEST:
+                buffer.removeFirst();
+                dropped++;
+                if (writing) {
+                    // queued after the batch being written, accounted for once that batch completes
+                    droppedWhileWriting++;
+                } else {
+                    processed++;
+                    completeBarriers();
+                }
+                return true;
+            case FAIL:
+                throw new WriteBehindOverflowException(databaseName, "the queue is full (" + capacity + " beans)");
+            default:
+                long remaining = offerTimeoutNanos;
+                try {
+                    while (buffer.size() >= capacity) {
+                        if (closed) {
+                            throw new WriteBehindOverflowException(databaseName, "the queue has been closed");
+                        }
+                        if (remaining <= 0) {
+                            throw new WriteBehindOverflowException(databaseName, "the queue stayed full for " + TimeUnit.NANOSECONDS.toMillis(offerTimeoutNanos) + " ms");
+                        }
+                        remaining = notFull.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeDatabaseException(databaseName, e);
+                }
+                return true;
+        }
+    }
+
+    @Nonnull
+    CompletableFuture<Void> flush() {
+        lock.lock();
+        try {
+            if (processed >= accepted) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Barrier barrier = new Barrier(accepted);
+            barriers.add(barrier);
+            flushRequested = true;
+            wakeUp.signal();
+            return barrier.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting beans and waits for the queued ones to be written.
+     *
+     * @return {@code true} if the queue drained before the timeout elapsed.
+     */
+    boolean close(long timeout) {
+        lock.lock();
+        try {
+            closed = true;
+            wakeUp.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join(Math.max(1L, timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (flusher.isAlive()) {
+                LOG.warn("Write-behind queue of database '{}' did not drain within {} ms, {} beans are still queued", databaseName, timeout, buffer.size());
+                return false;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nonnull
+    WriteBehindStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new WriteBehindStatistics(databaseName, overflow.name().toLowerCase(Locale.ENGLISH), buffer.size(), capacity,
+                accepted, written, combined, dropped, failed, batches,
+                flushLatency.getPercentileMicros(0.50), flushLatency.getPercentileMicros(0.99), flushLatency.getMaxMicros());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getDepth() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Object> beans;
+            int taken;
+            long oldest;
+            lock.lock();
+            try {
+                while (buffer.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    wakeUp.awaitUninterruptibly();
+                }
+
+                // the window opens when the oldest bean was queued, a flush or close request cuts it short
+                long deadline = buffer.peekFirst().queuedAt + maxDelayNanos;
+                long remaining = deadline - System.nanoTime();
+                while (remaining > 0 && buffer.size() < maxBatch && !flushRequested && !closed) {
+                    try {
+                        remaining = wakeUp.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // only close() stops the flusher
+                        remaining = deadline - System.nanoTime();
+                    }
+                }
+
+                oldest = buffer.peekFirst().queuedAt;
+                taken = Math.min(maxBatch, buffer.size());
+                beans = new ArrayList<>(taken);
+                Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+                for (int i = 0; i < taken; i++) {
+                    Object bean = buffer.removeFirst().bean;
+                    if (seen.add(bean)) {
+                        beans.add(bean);
+                    }
+                }
+                combined += taken - beans.size();
+                if (buffer.isEmpty()) {
+                    flushRequested = false;
+                }
+                writing = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            RuntimeDatabaseException failure = write(beans);
+            long latency = System.nanoTime() - oldest;
+            databaseMetricsRecorder.writeBehindFlushed(databaseName, beans.size(), latency, failure != null);
+
+            lock.lock();
+            try {
+                batches++;
+                flushLatency.record(latency);
+                if (failure != null) {
+                    failed += beans.size();
+                    for (Barrier barrier : barriers) {
+                        if (barrier.failure == null) {
+                            barrier.failure = failure;
+                        }
+                    }
+                } else {
+                    written += beans.size();
+                }
+                processed += taken + droppedWhileWriting;
+                droppedWhileWriting = 0;
+                writing = false;
+                completeBarriers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Nullable
+    private RuntimeDatabaseException write(@Nonnull List<Object> beans) {
+        try {
+            databaseHandler.withEbeanTransaction(databaseName, txOptions, (name, database) -> database.saveAll(beans));
+            return null;
+        } catch (RuntimeException e) {
+            LOG.error("Could not write {} beans queued for database '{}'", beans.size(), databaseName, e);
+            return e instanceof RuntimeDatabaseException ? (RuntimeDatabaseException) e : new RuntimeDatabaseException(databaseName, e);
+        }
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private void completeBarriers() {
+        for (Iterator<Barrier> it = barriers.iterator(); it.hasNext(); ) {
+            Barrier barrier = it.next();
+            if (barrier.target <= processed) {
+                it.remove();
+                if (barrier.failure == null) {
+                    barrier.future.complete(null);
+                } else {
+                    barrier.future.completeExceptionally(barrier.failure);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Object bean;
+        private final long queuedAt;
+
+        private Entry(@Nonnull Object bean, long queuedAt) {
+            this.bean = bean;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private static class Barrier {
+        private final long target;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private RuntimeDatabaseException failure;
+
+        private Barrier(long target) {
+            this.target = target;
+        }
+    }
+}
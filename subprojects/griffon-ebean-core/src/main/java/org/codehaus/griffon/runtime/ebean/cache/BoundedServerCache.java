@@ -0,0 +1,295 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.cache.ServerCache;
+import io.ebean.cache.ServerCacheConfig;
+import io.ebean.cache.ServerCacheOptions;
+import io.ebean.cache.ServerCacheStatistics;
+import io.ebean.config.CurrentTenantProvider;
+import org.codehaus.griffon.runtime.ebean.monitor.CacheStatistics;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An Ebean {@code ServerCache} bounded by entry count, time to live and idle time. Values are serialized into an
+ * {@code OffHeapBlockStore} when one is given, otherwise they are kept on the heap as is. Entries are evicted in
+ * least recently used order, either when the cache is full or when the store runs out of room.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+class BoundedServerCache implements ServerCache {
+    private final String name;
+    private final String type;
+    private final CurrentTenantProvider tenantProvider;
+    private final OffHeapBlockStore store;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long idleNanos;
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long removeCount;
+    private long clearCount;
+    private long evictionCount;
+    private long expirationCount;
+
+    BoundedServerCache(@Nonnull ServerCacheConfig config, @Nullable OffHeapCacheSettings settings, @Nullable OffHeapBlockStore store) {
+        requireNonNull(config, "Argument 'config' must not be null");
+        this.name = config.getCacheKey();
+        this.type = String.valueOf(config.getType());
+        this.tenantProvider = config.getTenantProvider();
+        this.store = store;
+
+        // plugin settings take precedence over the options Ebean derives from @Cache and its own properties
+        ServerCacheOptions options = config.getCacheOptions();
+        int maxEntries = settings != null ? settings.getMaxEntries() : 0;
+        long ttl = settings != null ? settings.getTtl() : 0L;
+        long idleTimeout = settings != null ? settings.getIdleTimeout() : 0L;
+        this.maxEntries = maxEntries > 0 ? maxEntries : (options != null ? options.getMaxSize() : 0);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttl > 0 ? ttl : (options != null ? options.getMaxSecsToLive() : 0));
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleTimeout > 0 ? idleTimeout : (options != null ? options.getMaxIdleSecs() : 0));
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Set<Object> keys) {
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object key : keys) {
+            Object value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Object get(Object id) {
+        Object key = key(id);
+        byte[] data;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+
+            long now = System.nanoTime();
+            if (entry.isExpired(now, ttlNanos, idleNanos)) {
+                drop(key, entry);
+                expirationCount++;
+                missCount++;
+                return null;
+            }
+
+            entry.lastAccess = now;
+            if (store == null) {
+                hitCount++;
+                return entry.value;
+            }
+
+            data = store.read(entry.blocks, entry.length);
+            if (data == null) {
+                // the store has been closed
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        // deserialization happens outside of the lock
+        return CacheValueCodec.decode(data);
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> keyValues) {
+        for (Map.Entry<Object, Object> e : keyValues.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void put(Object id, Object value) {
+        Object key = key(id);
+        byte[] data = null;
+        if (store != null) {
+            data = CacheValueCodec.encode(value);
+        }
+
+        synchronized (this) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                release(previous);
+            }
+            if (store != null && (data == null || data.length > store.getCapacity())) {
+                // values that can't be serialized or won't ever fit are not cached
+                return;
+            }
+
+            while (maxEntries > 0 && entries.size() >= maxEntries && evictEldest()) {
+                // keep evicting
+            }
+
+            Entry entry;
+            if (store != null) {
+                int[] blocks = store.write(data);
+                while (blocks == null && evictEldest()) {
+                    blocks = store.write(data);
+                }
+                if (blocks == null) {
+                    // larger than the whole store, or the store has been closed
+                    return;
+                }
+                entry = new Entry(null, blocks, data.length);
+                usedBytes += data.length;
+            } else {
+                entry = new Entry(value, null, 0);
+            }
+            entries.put(key, entry);
+            putCount++;
+        }
+    }
+
+    @Override
+    public void removeAll(Set<Object> keys) {
+        for (Object key : keys) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Object id) {
+        Object key = key(id);
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+            removeCount++;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            release(entry);
+        }
+        entries.clear();
+        clearCount++;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized int getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (int) (hitCount * 100 / total);
+    }
+
+    @Override
+    public synchronized ServerCacheStatistics getStatistics(boolean reset) {
+        ServerCacheStatistics statistics = new ServerCacheStatistics();
+        statistics.setCacheName(name);
+        statistics.setMaxSize(maxEntries);
+        statistics.setSize(entries.size());
+        statistics.setHitCount(hitCount);
+        statistics.setMissCount(missCount);
+        statistics.setPutCount(putCount);
+        statistics.setRemoveCount(removeCount);
+        statistics.setClearCount(clearCount);
+        statistics.setEvictCount(evictionCount + expirationCount);
+        if (reset) {
+            hitCount = 0;
+            missCount = 0;
+            putCount = 0;
+            removeCount = 0;
+            clearCount = 0;
+            evictionCount = 0;
+            expirationCount = 0;
+        }
+        return statistics;
+    }
+
+    @Nonnull
+    synchronized CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(name, type, store != null, entries.size(), usedBytes,
+            hitCount, missCount, putCount, removeCount, evictionCount, expirationCount);
+    }
+
+    private boolean evictEldest() {
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        Entry eldest = iterator.next().getValue();
+        iterator.remove();
+        release(eldest);
+        evictionCount++;
+        return true;
+    }
+
+    private void drop(@Nonnull Object key, @Nonnull Entry entry) {
+        entries.remove(key);
+        release(entry);
+    }
+
+    private void release(@Nonnull Entry entry) {
+        if (entry.blocks != null) {
+            store.free(entry.blocks);
+            usedBytes -= entry.length;
+        }
+    }
+
+    @Nonnull
+    private Object key(@Nonnull Object id) {
+        // same instance may hold data of several tenants
+        return tenantProvider != null ? Arrays.asList(tenantProvider.currentId(), id) : id;
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final int[] blocks;
+        private final int length;
+        private final long created;
+        private long lastAccess;
+
+        private Entry(@Nullable Object value, @Nullable int[] blocks, int length) {
+            this.value = value;
+            this.blocks = blocks;
+            this.length = length;
+            this.created = System.nanoTime();
+            this.lastAccess = created;
+        }
+
+        private boolean isExpired(long now, long ttlNanos, long idleNanos) {
+            return (ttlNanos > 0 && now - created > ttlNanos) || (idleNanos > 0 && now - lastAccess > idleNanos);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary form of cache values. Ids and natural keys, which are mostly strings, numbers and UUIDs, are written
+ * with a one byte tag; anything else, like Ebean's cached bean data, falls back to Java serialization.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class CacheValueCodec {
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_INTEGER = 3;
+    private static final byte TAG_UUID = 4;
+    private static final byte TAG_SERIALIZED = 5;
+
+    private CacheValueCodec() {
+        // prevent instantiation
+    }
+
+    /**
+     * @return the encoded value or {@code null} if the value can not be serialized.
+     */
+    @Nullable
+    static byte[] encode(@Nullable Object value) {
+        if (value == null) {
+            return new byte[]{TAG_NULL};
+        } else if (value instanceof String) {
+            byte[] chars = ((String) value).getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(1 + chars.length).put(TAG_STRING).put(chars).array();
+        } else if (value instanceof Long) {
+            return ByteBuffer.allocate(9).put(TAG_LONG).putLong((Long) value).array();
+        } else if (value instanceof Integer) {
+            return ByteBuffer.allocate(5).put(TAG_INTEGER).putInt((Integer) value).array();
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            return ByteBuffer.allocate(17).put(TAG_UUID).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+        } else if (!(value instanceof Serializable)) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(TAG_SERIALIZED);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            // some nested value can't be serialized, the value is simply not cached
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    static Object decode(@Nonnull byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+            case TAG_LONG:
+                return buffer.getLong();
+            case TAG_INTEGER:
+                return buffer.getInt();
+            case TAG_UUID:
+                return new UUID(buffer.getLong(), buffer.getLong());
+            case TAG_SERIALIZED:
+                try (ObjectInputStream in = new ContextObjectInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+                    return in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Could not read cached value", e);
+                }
+            default:
+                throw new IllegalStateException("Unknown cache value tag " + tag);
+        }
+    }
+
+    /**
+     * Resolves classes with the context class loader first, entity classes may not be visible to the plugin's loader.
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream {
+        private ContextObjectInputStream(@Nonnull InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
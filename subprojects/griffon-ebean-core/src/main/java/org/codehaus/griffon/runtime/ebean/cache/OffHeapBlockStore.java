@@ -0,0 +1,178 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fixed size blocks carved out of direct or memory-mapped buffers. A value spans as many blocks as it needs, which
+ * don't have to be contiguous. Buffers are allocated one page at a time, as blocks are first used.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class OffHeapBlockStore implements Closeable {
+    private static final int PAGE_SIZE = 1024 * 1024;
+    private static final int[] NO_BLOCKS = new int[0];
+
+    private final int blockSize;
+    private final int blocksPerPage;
+    private final int maxBlocks;
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private final FileChannel channel;
+    private final Path file;
+    private int[] freeBlocks = new int[64];
+    private int freeCount;
+    private int nextBlock;
+    private boolean closed;
+
+    OffHeapBlockStore(@Nonnull OffHeapCacheSettings settings, @Nonnull String name) {
+        requireNonNull(settings, "Argument 'settings' must not be null");
+        this.blockSize = settings.getBlockSize();
+        this.blocksPerPage = Math.max(1, PAGE_SIZE / blockSize);
+        this.maxBlocks = (int) Math.min(Integer.MAX_VALUE, settings.getMaxMemory() / blockSize);
+
+        if (settings.getStore() == OffHeapCacheSettings.Store.MAPPED) {
+            try {
+                Files.createDirectories(settings.getDirectory());
+                file = Files.createTempFile(settings.getDirectory(), name + "-", ".cache");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create cache file in " + settings.getDirectory(), e);
+            }
+        } else {
+            file = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * Copies the given bytes into free blocks.
+     *
+     * @return the blocks holding the bytes or {@code null} if there is not enough room left.
+     */
+    @Nullable
+    synchronized int[] write(@Nonnull byte[] data) {
+        if (closed) {
+            return null;
+        }
+
+        int count = (data.length + blockSize - 1) / blockSize;
+        if (count == 0) {
+            return NO_BLOCKS;
+        } else if (count > freeCount + (maxBlocks - nextBlock)) {
+            return null;
+        }
+
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = freeCount > 0 ? freeBlocks[--freeCount] : nextBlock++;
+            int offset = i * blockSize;
+            ByteBuffer page = pageOf(blocks[i]);
+            page.position((blocks[i] % blocksPerPage) * blockSize);
+            page.put(data, offset, Math.min(blockSize, data.length - offset));
+        }
+        return blocks;
+    }
+
+    @Nullable
+    synchronized byte[] read(@Nonnull int[] blocks, int length) {
+        if (closed) {
+            return null;
+        }
+
+        byte[] data = new byte[length];
+        for (int i = 0; i < blocks.length; i++) {
+            int offset = i * blockSize;
+            ByteBuffer page = pages.get(blocks[i] / blocksPerPage);
+            page.position((blocks[i] % blocksPerPage) * blockSize);
+            page.get(data, offset, Math.min(blockSize, length - offset));
+        }
+        return data;
+    }
+
+    synchronized void free(@Nonnull int[] blocks) {
+        if (closed) {
+            return;
+        }
+        if (freeCount + blocks.length > freeBlocks.length) {
+            freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlocks.length * 2, freeCount + blocks.length));
+        }
+        System.arraycopy(blocks, 0, freeBlocks, freeCount, blocks.length);
+        freeCount += blocks.length;
+    }
+
+    synchronized long getUsedBytes() {
+        return (long) (nextBlock - freeCount) * blockSize;
+    }
+
+    long getCapacity() {
+        return (long) maxBlocks * blockSize;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // buffers are released by the garbage collector once unreachable
+        pages.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close cache file " + file, e);
+            }
+        }
+    }
+
+    @Nonnull
+    private ByteBuffer pageOf(int block) {
+        int index = block / blocksPerPage;
+        while (pages.size() <= index) {
+            // the last page only covers the blocks that fit in the configured memory
+            int pageBytes = Math.min(blocksPerPage, maxBlocks - pages.size() * blocksPerPage) * blockSize;
+            if (channel != null) {
+                try {
+                    pages.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) pages.size() * blocksPerPage * blockSize, pageBytes));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not map cache file " + file, e);
+                }
+            } else {
+                pages.add(ByteBuffer.allocateDirect(pageBytes));
+            }
+        }
+        return pages.get(index);
+    }
+}
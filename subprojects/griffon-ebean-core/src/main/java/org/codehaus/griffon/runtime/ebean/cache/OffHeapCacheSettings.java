@@ -0,0 +1,187 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Settings of the off-heap L2 cache of a database, read from the {@code cache} block of the database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public final class OffHeapCacheSettings {
+    public enum Store {
+        DIRECT, MAPPED;
+
+        @Nonnull
+        public static Store of(@Nullable String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return DIRECT;
+            }
+            return valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_STORE = "store";
+    private static final String KEY_MAX_MEMORY = "max_memory";
+    private static final String KEY_BLOCK_SIZE = "block_size";
+    private static final String KEY_MAX_ENTRIES = "max_entries";
+    private static final String KEY_TTL = "ttl";
+    private static final String KEY_IDLE_TIMEOUT = "idle_timeout";
+    private static final String KEY_DIRECTORY = "directory";
+    private static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+    private static final int DEFAULT_BLOCK_SIZE = 128;
+
+    private final Store store;
+    private final long maxMemory;
+    private final int blockSize;
+    private final int maxEntries;
+    private final long ttl;
+    private final long idleTimeout;
+    private final Path directory;
+
+    public OffHeapCacheSettings(@Nonnull Store store, long maxMemory, int blockSize, int maxEntries, long ttl, long idleTimeout, @Nonnull Path directory) {
+        this.store = requireNonNull(store, "Argument 'store' must not be null");
+        this.directory = requireNonNull(directory, "Argument 'directory' must not be null");
+        if (maxMemory < blockSize) {
+            throw new IllegalArgumentException("Argument 'maxMemory' must be at least one block (" + blockSize + " bytes)");
+        }
+        if (blockSize < 16) {
+            throw new IllegalArgumentException("Argument 'blockSize' must be at least 16 bytes");
+        }
+        this.maxMemory = maxMemory;
+        this.blockSize = blockSize;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttl = Math.max(0L, ttl);
+        this.idleTimeout = Math.max(0L, idleTimeout);
+    }
+
+    /**
+     * Reads the {@code cache} entry of a database configuration. Either a boolean or a block with an
+     * {@code enabled} flag, which defaults to {@code true}.
+     *
+     * @return the settings or {@code null} if the off-heap cache is not enabled.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static OffHeapCacheSettings of(@Nonnull String databaseName, @Nullable Object value) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        Map<String, Object> config;
+        if (value instanceof Map) {
+            config = (Map<String, Object>) value;
+            if (!getConfigValueAsBoolean(config, KEY_ENABLED, true)) {
+                return null;
+            }
+        } else if (value != null && Boolean.parseBoolean(String.valueOf(value))) {
+            config = Collections.emptyMap();
+        } else {
+            return null;
+        }
+
+        String directory = getConfigValueAsString(config, KEY_DIRECTORY, null);
+        return new OffHeapCacheSettings(
+            Store.of(getConfigValueAsString(config, KEY_STORE, null)),
+            parseSize(config.get(KEY_MAX_MEMORY), DEFAULT_MAX_MEMORY),
+            getConfigValueAsInt(config, KEY_BLOCK_SIZE, DEFAULT_BLOCK_SIZE),
+            getConfigValueAsInt(config, KEY_MAX_ENTRIES, 0),
+            getConfigValueAsLong(config, KEY_TTL, 0L),
+            getConfigValueAsLong(config, KEY_IDLE_TIMEOUT, 0L),
+            directory != null ? Paths.get(directory) : Paths.get(System.getProperty("java.io.tmpdir"), "griffon-ebean-cache", databaseName));
+    }
+
+    private static long parseSize(@Nullable Object value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+
+        // accepts plain byte counts as well as '512k', '64m' or '1g'
+        String size = String.valueOf(value).trim().toLowerCase(Locale.ENGLISH);
+        long multiplier = 1L;
+        if (size.endsWith("k")) {
+            multiplier = 1024L;
+        } else if (size.endsWith("m")) {
+            multiplier = 1024L * 1024;
+        } else if (size.endsWith("g")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1L) {
+            size = size.substring(0, size.length() - 1).trim();
+        }
+        return Long.parseLong(size) * multiplier;
+    }
+
+    @Nonnull
+    public Store getStore() {
+        return store;
+    }
+
+    /**
+     * Max number of bytes held off-heap, shared by every cache of the database.
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Max number of entries per cache, {@code 0} to use the limit set by Ebean for each cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Time to live of an entry in seconds, {@code 0} to use the limit set by Ebean for each cache.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Max idle time of an entry in seconds, {@code 0} to use the limit set by Ebean for each cache.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Nonnull
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.cache.ServerCache;
+import io.ebean.cache.ServerCacheConfig;
+import io.ebean.cache.ServerCacheFactory;
+import io.ebean.cache.ServerCacheNotify;
+import io.ebean.cache.ServerCacheType;
+import org.codehaus.griffon.runtime.ebean.monitor.CacheStatistics;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Creates the L2 caches of a single database. Bean, natural key and collection id caches share one off-heap store;
+ * query caches hold lists of live beans and are kept on the heap, bounded by the same limits. Without settings every
+ * cache is kept on the heap, bounded by the options Ebean gives each cache.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class OffHeapServerCacheFactory implements ServerCacheFactory, Closeable {
+    private final OffHeapCacheSettings settings;
+    private final OffHeapBlockStore store;
+    private final UnaryOperator<ServerCacheNotify> notifyDecorator;
+    private final List<BoundedServerCache> caches = new CopyOnWriteArrayList<>();
+
+    public OffHeapServerCacheFactory(@Nonnull String databaseName, @Nullable OffHeapCacheSettings settings) {
+        this(databaseName, settings, null);
+    }
+
+    /**
+     * @param notifyDecorator wraps the listener Ebean notifies of modified tables, may be {@code null}
+     */
+    public OffHeapServerCacheFactory(@Nonnull String databaseName, @Nullable OffHeapCacheSettings settings, @Nullable UnaryOperator<ServerCacheNotify> notifyDecorator) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.settings = settings;
+        this.store = settings != null ? new OffHeapBlockStore(settings, databaseName) : null;
+        this.notifyDecorator = notifyDecorator;
+    }
+
+    @Override
+    public ServerCache createCache(ServerCacheConfig config) {
+        BoundedServerCache cache = new BoundedServerCache(config, settings, config.getType() == ServerCacheType.QUERY ? null : store);
+        caches.add(cache);
+        return cache;
+    }
+
+    @Override
+    public ServerCacheNotify createCacheNotify(ServerCacheNotify listener) {
+        // table modifications are delivered straight to the local caches unless decorated
+        return notifyDecorator != null ? notifyDecorator.apply(listener) : listener;
+    }
+
+    @Nonnull
+    public List<CacheStatistics> getCacheStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (BoundedServerCache cache : caches) {
+            statistics.add(cache.getCacheStatistics());
+        }
+        return statistics;
+    }
+
+    public long getUsedBytes() {
+        return store != null ? store.getUsedBytes() : 0L;
+    }
+
+    public long getCapacity() {
+        return store != null ? store.getCapacity() : 0L;
+    }
+
+    @Override
+    public void close() {
+        for (BoundedServerCache cache : caches) {
+            cache.clear();
+        }
+        caches.clear();
+        if (store != null) {
+            store.close();
+        }
+    }
+}
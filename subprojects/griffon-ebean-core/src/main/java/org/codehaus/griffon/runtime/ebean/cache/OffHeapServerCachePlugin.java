@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import io.ebean.BackgroundExecutor;
+import io.ebean.cache.ServerCacheFactory;
+import io.ebean.cache.ServerCacheNotify;
+import io.ebean.cache.ServerCachePlugin;
+import io.ebean.config.DatabaseConfig;
+import org.codehaus.griffon.runtime.ebean.monitor.CacheStatistics;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+
+/**
+ * Plugs {@code OffHeapServerCacheFactory} into a {@code DatabaseConfig}. Each plugin instance serves a single
+ * database and must be closed once the database is shut down, releasing its off-heap store. Without settings the
+ * caches stay on the heap, which still lets the notify decorator observe table modifications.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class OffHeapServerCachePlugin implements ServerCachePlugin, Closeable {
+    private final String databaseName;
+    private final OffHeapCacheSettings settings;
+    private final UnaryOperator<ServerCacheNotify> notifyDecorator;
+    private volatile OffHeapServerCacheFactory factory;
+
+    public OffHeapServerCachePlugin(@Nonnull String databaseName, @Nullable OffHeapCacheSettings settings) {
+        this(databaseName, settings, null);
+    }
+
+    public OffHeapServerCachePlugin(@Nonnull String databaseName, @Nullable OffHeapCacheSettings settings, @Nullable UnaryOperator<ServerCacheNotify> notifyDecorator) {
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.settings = settings;
+        this.notifyDecorator = notifyDecorator;
+    }
+
+    @Override
+    public synchronized ServerCacheFactory create(DatabaseConfig config, BackgroundExecutor executor) {
+        if (factory == null) {
+            factory = new OffHeapServerCacheFactory(databaseName, settings, notifyDecorator);
+        }
+        return factory;
+    }
+
+    @Nullable
+    public OffHeapCacheSettings getSettings() {
+        return settings;
+    }
+
+    @Nonnull
+    public List<CacheStatistics> getCacheStatistics() {
+        OffHeapServerCacheFactory f = factory;
+        return f != null ? f.getCacheStatistics() : Collections.<CacheStatistics>emptyList();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (factory != null) {
+            factory.close();
+            factory = null;
+        }
+    }
+}
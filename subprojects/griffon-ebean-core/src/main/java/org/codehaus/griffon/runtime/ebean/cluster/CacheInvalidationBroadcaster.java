@@ -0,0 +1,234 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cluster;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.plugins.ebean.CacheInvalidation;
+import griffon.plugins.ebean.CacheInvalidationTransport;
+import io.ebean.Database;
+import io.ebean.cache.ServerCacheNotify;
+import org.codehaus.griffon.runtime.ebean.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static griffon.util.ConfigUtils.getConfigValueAsBoolean;
+import static griffon.util.ConfigUtils.getConfigValueAsLong;
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps the L2 caches of every node in sync. Tables modified by local commits are collected and sent through the
+ * {@code CacheInvalidationTransport} in batches, every {@code batch_interval} milliseconds. Invalidations received
+ * from other nodes are applied as external modifications, which discards the cached beans and queries of each
+ * table without broadcasting them again.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class CacheInvalidationBroadcaster {
+    private static final Logger LOG = LoggerFactory.getLogger(CacheInvalidationBroadcaster.class);
+    private static final String KEY_CLUSTER = "cluster";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_BATCH_INTERVAL = "batch_interval";
+    private static final long DEFAULT_BATCH_INTERVAL = 100L;
+
+    private final CacheInvalidationTransport transport;
+    private final boolean enabled;
+    private final long batchInterval;
+    private final ConcurrentMap<String, Database> databases = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> pending = new LinkedHashMap<>();
+    private final ThreadLocal<Boolean> applyingRemote = new ThreadLocal<>();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private ScheduledExecutorService flusher;
+    private boolean open;
+    private boolean closed;
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public CacheInvalidationBroadcaster(@Nonnull @Named("ebean") Configuration configuration, @Nonnull CacheInvalidationTransport transport) {
+        requireNonNull(configuration, "Argument 'configuration' must not be null");
+        this.transport = requireNonNull(transport, "Argument 'transport' must not be null");
+
+        Object block = configuration.get(KEY_CLUSTER);
+        Map<String, Object> cluster = block instanceof Map ? (Map<String, Object>) block : Collections.<String, Object>emptyMap();
+        this.enabled = block instanceof Map && getConfigValueAsBoolean(cluster, KEY_ENABLED, true);
+        this.batchInterval = getConfigValueAsLong(cluster, KEY_BATCH_INTERVAL, DEFAULT_BATCH_INTERVAL);
+    }
+
+    /**
+     * Whether a {@code cluster} block is configured. Nothing is sent nor received otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * Wraps the listener Ebean notifies of local table modifications so that they are also sent to other nodes.
+     */
+    @Nonnull
+    public ServerCacheNotify decorate(@Nonnull String databaseName, @Nonnull ServerCacheNotify listener) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(listener, "Argument 'listener' must not be null");
+        return notification -> {
+            listener.notify(notification);
+            Set<String> tables = notification.getDependentTables();
+            if (tables != null && !tables.isEmpty() && applyingRemote.get() == null) {
+                enqueue(databaseName, tables);
+            }
+        };
+    }
+
+    /**
+     * Applies invalidations received for the given name to this instance.
+     */
+    public void register(@Nonnull String databaseName, @Nonnull Database database) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(database, "Argument 'database' must not be null");
+        if (!enabled) {
+            return;
+        }
+        databases.put(databaseName, database);
+        open();
+    }
+
+    public void unregister(@Nonnull String databaseName, @Nonnull Database database) {
+        requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        requireNonNull(database, "Argument 'database' must not be null");
+        // a reconfigured database registers its replacement before the previous instance is destroyed
+        databases.remove(databaseName, database);
+    }
+
+    /**
+     * Sends the pending invalidations right away.
+     */
+    public void flush() {
+        List<CacheInvalidation> invalidations;
+        synchronized (this) {
+            if (pending.isEmpty() || !open) {
+                return;
+            }
+            invalidations = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> e : pending.entrySet()) {
+                invalidations.add(new CacheInvalidation(e.getKey(), e.getValue()));
+            }
+            pending.clear();
+        }
+
+        try {
+            transport.send(invalidations);
+            sentCount.add(invalidations.size());
+        } catch (RuntimeException e) {
+            LOG.warn("Could not send cache invalidations {}", invalidations, e);
+        }
+    }
+
+    public void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (!open || closed) {
+                closed = true;
+                return;
+            }
+            executor = flusher;
+        }
+
+        flush();
+        synchronized (this) {
+            closed = true;
+            open = false;
+            pending.clear();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        transport.close();
+        databases.clear();
+    }
+
+    private synchronized void open() {
+        if (open || closed) {
+            return;
+        }
+        transport.open(this::receive);
+        if (batchInterval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ebean-cluster-flush"));
+            flusher.scheduleWithFixedDelay(this::flush, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+        }
+        open = true;
+    }
+
+    private void enqueue(@Nonnull String databaseName, @Nonnull Set<String> tables) {
+        synchronized (this) {
+            if (!open) {
+                return;
+            }
+            pending.computeIfAbsent(databaseName, k -> new LinkedHashSet<>()).addAll(tables);
+        }
+        if (batchInterval <= 0) {
+            flush();
+        }
+    }
+
+    private void receive(@Nonnull List<CacheInvalidation> invalidations) {
+        for (CacheInvalidation invalidation : invalidations) {
+            Database database = databases.get(invalidation.getDatabaseName());
+            if (database == null) {
+                continue;
+            }
+
+            receivedCount.increment();
+            // keeps the resulting local notification from being sent back
+            applyingRemote.set(Boolean.TRUE);
+            try {
+                for (String table : invalidation.getTables()) {
+                    database.externalModification(table, true, true, true);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Could not apply {}", invalidation, e);
+            } finally {
+                applyingRemote.remove();
+            }
+        }
+    }
+}
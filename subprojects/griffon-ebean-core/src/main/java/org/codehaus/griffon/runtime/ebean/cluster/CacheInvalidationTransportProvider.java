@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cluster;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.Configuration;
+import griffon.plugins.ebean.CacheInvalidationTransport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Map;
+
+import static griffon.util.ConfigUtils.getConfigValueAsInt;
+import static griffon.util.ConfigUtils.getConfigValueAsString;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Supplies the transport named by the {@code transport} key of the {@code cluster} block, either {@code multicast}
+ * (the default) or {@code loopback}. Applications with other needs may bind their own {@code CacheInvalidationTransport}.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class CacheInvalidationTransportProvider implements Provider<CacheInvalidationTransport> {
+    private static final String KEY_CLUSTER = "cluster";
+    private static final String KEY_TRANSPORT = "transport";
+    private static final String KEY_GROUP = "group";
+    private static final String KEY_PORT = "port";
+    private static final String KEY_TTL = "ttl";
+    private static final String KEY_CHANNEL = "channel";
+    private static final String DEFAULT_GROUP = "239.255.27.1";
+    private static final int DEFAULT_PORT = 4446;
+    private static final int DEFAULT_TTL = 1;
+
+    private final Configuration configuration;
+
+    @Inject
+    public CacheInvalidationTransportProvider(@Nonnull @Named("ebean") Configuration configuration) {
+        this.configuration = requireNonNull(configuration, "Argument 'configuration' must not be null");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CacheInvalidationTransport get() {
+        Object block = configuration.get(KEY_CLUSTER);
+        Map<String, Object> cluster = block instanceof Map ? (Map<String, Object>) block : Collections.<String, Object>emptyMap();
+
+        String transport = getConfigValueAsString(cluster, KEY_TRANSPORT, "multicast");
+        if ("loopback".equalsIgnoreCase(transport)) {
+            return new LoopbackCacheInvalidationTransport(getConfigValueAsString(cluster, KEY_CHANNEL, "ebean"));
+        } else if (!"multicast".equalsIgnoreCase(transport)) {
+            throw new IllegalArgumentException("Unknown cache invalidation transport '" + transport + "'");
+        }
+
+        String group = getConfigValueAsString(cluster, KEY_GROUP, DEFAULT_GROUP);
+        try {
+            return new MulticastCacheInvalidationTransport(InetAddress.getByName(group),
+                getConfigValueAsInt(cluster, KEY_PORT, DEFAULT_PORT),
+                getConfigValueAsInt(cluster, KEY_TTL, DEFAULT_TTL));
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid multicast group '" + group + "'", e);
+        }
+    }
+}
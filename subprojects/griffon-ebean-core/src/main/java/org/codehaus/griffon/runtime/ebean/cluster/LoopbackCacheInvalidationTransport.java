@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cluster;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.CacheInvalidation;
+import griffon.plugins.ebean.CacheInvalidationTransport;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Delivers invalidations to the other transports opened on the same channel within the JVM, on the sender's thread.
+ * Meant for tests that run several nodes side by side.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+    private static final ConcurrentMap<String, Set<LoopbackCacheInvalidationTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<List<CacheInvalidation>> receiver;
+
+    public LoopbackCacheInvalidationTransport(@Nonnull String channel) {
+        this.channel = requireNonBlank(channel, "Argument 'channel' must not be blank");
+    }
+
+    @Nonnull
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void open(@Nonnull Consumer<List<CacheInvalidation>> receiver) {
+        this.receiver = requireNonNull(receiver, "Argument 'receiver' must not be null");
+        CHANNELS.computeIfAbsent(channel, k -> new CopyOnWriteArraySet<>()).add(this);
+    }
+
+    @Override
+    public void send(@Nonnull List<CacheInvalidation> invalidations) {
+        requireNonNull(invalidations, "Argument 'invalidations' must not be null");
+        List<CacheInvalidation> batch = Collections.unmodifiableList(invalidations);
+        for (LoopbackCacheInvalidationTransport peer : CHANNELS.getOrDefault(channel, Collections.<LoopbackCacheInvalidationTransport>emptySet())) {
+            Consumer<List<CacheInvalidation>> r = peer.receiver;
+            if (peer != this && r != null) {
+                r.accept(batch);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        receiver = null;
+        CHANNELS.computeIfPresent(channel, (k, peers) -> {
+            peers.remove(this);
+            return peers.isEmpty() ? null : peers;
+        });
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cluster;
+
+import griffon.annotations.core.Nonnull;
+import griffon.plugins.ebean.CacheInvalidation;
+import griffon.plugins.ebean.CacheInvalidationTransport;
+import org.codehaus.griffon.runtime.ebean.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends invalidations as UDP multicast datagrams. Every node joins the same group and port; a node recognizes and
+ * drops its own datagrams by the random id written in each one. Batches that don't fit in a single datagram are split
+ * across several.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class MulticastCacheInvalidationTransport implements CacheInvalidationTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(MulticastCacheInvalidationTransport.class);
+    private static final int MAGIC = 0x45424349;
+    private static final int MAX_DATAGRAM_SIZE = 8192;
+    private static final int HEADER_SIZE = 4 + 16 + 4;
+
+    private final InetAddress group;
+    private final int port;
+    private final int timeToLive;
+    private final UUID nodeId = UUID.randomUUID();
+    private MulticastSocket socket;
+    private Thread listener;
+
+    public MulticastCacheInvalidationTransport(@Nonnull InetAddress group, int port, int timeToLive) {
+        this.group = requireNonNull(group, "Argument 'group' must not be null");
+        if (!group.isMulticastAddress()) {
+            throw new IllegalArgumentException("Address " + group.getHostAddress() + " is not a multicast address");
+        }
+        this.port = port;
+        this.timeToLive = timeToLive;
+    }
+
+    @Nonnull
+    public InetAddress getGroup() {
+        return group;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public synchronized void open(@Nonnull Consumer<List<CacheInvalidation>> receiver) {
+        requireNonNull(receiver, "Argument 'receiver' must not be null");
+        if (socket != null) {
+            throw new IllegalStateException("Transport is already open");
+        }
+
+        try {
+            socket = new MulticastSocket(port);
+            socket.setTimeToLive(timeToLive);
+            socket.joinGroup(group);
+        } catch (IOException e) {
+            if (socket != null) {
+                socket.close();
+                socket = null;
+            }
+            throw new UncheckedIOException("Could not join multicast group " + group.getHostAddress() + ":" + port, e);
+        }
+
+        MulticastSocket s = socket;
+        listener = new NamedThreadFactory("ebean-cluster").newThread(() -> receive(s, receiver));
+        listener.start();
+    }
+
+    @Override
+    public void send(@Nonnull List<CacheInvalidation> invalidations) {
+        requireNonNull(invalidations, "Argument 'invalidations' must not be null");
+        MulticastSocket s;
+        synchronized (this) {
+            s = socket;
+        }
+        if (s == null) {
+            return;
+        }
+
+        for (byte[] datagram : encode(invalidations)) {
+            try {
+                s.send(new DatagramPacket(datagram, datagram.length, group, port));
+            } catch (IOException e) {
+                // best effort, other nodes keep stale entries until they expire
+                LOG.warn("Could not send cache invalidations to {}:{}", group.getHostAddress(), port, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.leaveGroup(group);
+        } catch (IOException e) {
+            LOG.debug("Could not leave multicast group {}:{}", group.getHostAddress(), port, e);
+        }
+        // unblocks the listener thread
+        socket.close();
+        socket = null;
+        listener = null;
+    }
+
+    private void receive(@Nonnull MulticastSocket s, @Nonnull Consumer<List<CacheInvalidation>> receiver) {
+        byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+        while (!s.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                s.receive(packet);
+                List<CacheInvalidation> invalidations = decode(packet.getData(), packet.getLength());
+                if (!invalidations.isEmpty()) {
+                    receiver.accept(invalidations);
+                }
+            } catch (SocketException e) {
+                // socket closed
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not process cache invalidations received from {}", packet.getSocketAddress(), e);
+            }
+        }
+    }
+
+    @Nonnull
+    List<byte[]> encode(@Nonnull List<CacheInvalidation> invalidations) {
+        List<byte[]> datagrams = new ArrayList<>();
+        List<CacheInvalidation> pending = new ArrayList<>();
+        int size = HEADER_SIZE;
+        for (CacheInvalidation invalidation : invalidations) {
+            for (String table : invalidation.getTables()) {
+                int entrySize = utfSize(invalidation.getDatabaseName()) + utfSize(table);
+                if (size + entrySize > MAX_DATAGRAM_SIZE && !pending.isEmpty()) {
+                    datagrams.add(toDatagram(pending));
+                    pending.clear();
+                    size = HEADER_SIZE;
+                }
+                pending.add(new CacheInvalidation(invalidation.getDatabaseName(), Collections.singleton(table)));
+                size += entrySize;
+            }
+        }
+        if (!pending.isEmpty()) {
+            datagrams.add(toDatagram(pending));
+        }
+        return datagrams;
+    }
+
+    @Nonnull
+    private byte[] toDatagram(@Nonnull List<CacheInvalidation> entries) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeLong(nodeId.getMostSignificantBits());
+            out.writeLong(nodeId.getLeastSignificantBits());
+            out.writeInt(entries.size());
+            for (CacheInvalidation entry : entries) {
+                out.writeUTF(entry.getDatabaseName());
+                out.writeUTF(entry.getTables().iterator().next());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Nonnull
+    List<CacheInvalidation> decode(@Nonnull byte[] data, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+        if (length < HEADER_SIZE || in.readInt() != MAGIC) {
+            return Collections.emptyList();
+        }
+        UUID sender = new UUID(in.readLong(), in.readLong());
+        if (nodeId.equals(sender)) {
+            return Collections.emptyList();
+        }
+
+        // entries of the same database are merged back together
+        List<String> databaseNames = new ArrayList<>();
+        List<Set<String>> tables = new ArrayList<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String databaseName = in.readUTF();
+            String table = in.readUTF();
+            int index = databaseNames.indexOf(databaseName);
+            if (index == -1) {
+                databaseNames.add(databaseName);
+                tables.add(new LinkedHashSet<>());
+                index = databaseNames.size() - 1;
+            }
+            tables.get(index).add(table);
+        }
+
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        for (int i = 0; i < databaseNames.size(); i++) {
+            invalidations.add(new CacheInvalidation(databaseNames.get(i), tables.get(i)));
+        }
+        return invalidations;
+    }
+
+    private static int utfSize(@Nonnull String s) {
+        // upper bound of the modified UTF-8 encoding, plus its length prefix
+        return 2 + s.length() * 3;
+    }
+}
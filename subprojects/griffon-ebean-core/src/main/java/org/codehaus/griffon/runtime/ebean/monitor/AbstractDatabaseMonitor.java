@@ -0,0 +1,81 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import org.codehaus.griffon.runtime.monitor.AbstractMBeanRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Base class of the monitors bound to a single database. They are unregistered on their own when the database is
+ * removed, while the application keeps running.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public abstract class AbstractDatabaseMonitor extends AbstractMBeanRegistration {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractDatabaseMonitor.class);
+
+    private volatile MBeanServer server;
+    private volatile ObjectName objectName;
+
+    protected AbstractDatabaseMonitor(@Nonnull Metadata metadata) {
+        super(metadata);
+    }
+
+    @Override
+    public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
+        this.server = server;
+        this.objectName = createObjectName();
+        return objectName;
+    }
+
+    @Override
+    public void postDeregister() {
+        server = null;
+    }
+
+    @Nonnull
+    protected abstract ObjectName createObjectName() throws MalformedObjectNameException;
+
+    /**
+     * Unregisters this monitor from the server it was registered with. Does nothing if it is not registered.
+     */
+    public void unregister() {
+        MBeanServer mbeanServer = server;
+        if (mbeanServer == null) {
+            return;
+        }
+
+        try {
+            mbeanServer.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (MBeanRegistrationException e) {
+            LOG.warn("Could not unregister {}", objectName, e);
+        }
+    }
+}
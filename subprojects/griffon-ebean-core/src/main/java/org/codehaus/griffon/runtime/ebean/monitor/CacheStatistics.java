@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the counters of a single L2 cache managed by the plugin.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class CacheStatistics {
+    private final String name;
+    private final String type;
+    private final boolean offHeap;
+    private final int size;
+    private final long usedBytes;
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long removeCount;
+    private final long evictionCount;
+    private final long expirationCount;
+
+    @ConstructorProperties({"name", "type", "offHeap", "size", "usedBytes", "hitCount", "missCount", "putCount", "removeCount", "evictionCount", "expirationCount"})
+    public CacheStatistics(@Nonnull String name, @Nonnull String type, boolean offHeap, int size, long usedBytes,
+                           long hitCount, long missCount, long putCount, long removeCount, long evictionCount, long expirationCount) {
+        this.name = name;
+        this.type = type;
+        this.offHeap = offHeap;
+        this.size = size;
+        this.usedBytes = usedBytes;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.removeCount = removeCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nonnull
+    public String getType() {
+        return type;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Bytes taken by the serialized entries, always {@code 0} for caches kept on the heap.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getPutCount() {
+        return putCount;
+    }
+
+    public long getRemoveCount() {
+        return removeCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * Hit ratio as a percentage.
+     */
+    public int getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (int) (hitCount * 100 / total);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import org.codehaus.griffon.runtime.ebean.DatabaseBulkheads;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import static griffon.util.GriffonNameUtils.requireNonBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseBulkheadMonitor extends AbstractDatabaseMonitor implements DatabaseBulkheadMonitorMXBean {
+    private final String databaseName;
+    private final DatabaseBulkheads bulkheads;
+
+    public DatabaseBulkheadMonitor(@Nonnull Metadata metadata, @Nonnull String databaseName, @Nonnull DatabaseBulkheads bulkheads) {
+        super(metadata);
+        this.databaseName = requireNonBlank(databaseName, "Argument 'databaseName' must not be blank");
+        this.bulkheads = requireNonNull(bulkheads, "Argument 'bulkheads' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    protected ObjectName createObjectName() throws MalformedObjectNameException {
+        return new ObjectName("griffon.plugins:type=ebean,application=" + metadata.getApplicationName() + ",kind=bulkhead,name=" + databaseName);
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @Override
+    public boolean isLimited() {
+        return bulkheads.getBulkhead(databaseName).isLimited();
+    }
+
+    @Override
+    public int getMaxConcurrent() {
+        return bulkheads.getBulkhead(databaseName).getMaxConcurrent();
+    }
+
+    @Override
+    public int getMaxQueued() {
+        return bulkheads.getBulkhead(databaseName).getMaxQueued();
+    }
+
+    @Override
+    public long getAcquireTimeout() {
+        return bulkheads.getBulkhead(databaseName).getAcquireTimeout();
+    }
+
+    @Override
+    public int getInFlight() {
+        return bulkheads.getBulkhead(databaseName).getInFlight();
+    }
+
+    @Override
+    public int getQueued() {
+        return bulkheads.getBulkhead(databaseName).getQueued();
+    }
+
+    @Override
+    public long getRejected() {
+        return bulkheads.getBulkhead(databaseName).getRejected();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import griffon.plugins.ebean.DatabaseStorage;
+import io.ebean.Database;
+import org.codehaus.griffon.runtime.ebean.DatabaseMetrics;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseMonitor extends AbstractDatabaseMonitor implements DatabaseMonitorMXBean {
+    private final DatabaseMetrics metrics;
+    private final DatabaseStorage databaseStorage;
+
+    public DatabaseMonitor(@Nonnull Metadata metadata, @Nonnull DatabaseMetrics metrics, @Nonnull DatabaseStorage databaseStorage) {
+        super(metadata);
+        this.metrics = requireNonNull(metrics, "Argument 'metrics' must not be null");
+        this.databaseStorage = requireNonNull(databaseStorage, "Argument 'databaseStorage' must not be null");
+    }
+
+    @Nonnull
+    @Override
+    protected ObjectName createObjectName() throws MalformedObjectNameException {
+        return new ObjectName("griffon.plugins:type=ebean,application=" + metadata.getApplicationName() + ",kind=database,name=" + metrics.getDatabaseName());
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return metrics.getDatabaseName();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return databaseStorage.get(metrics.getDatabaseName()) != null;
+    }
+
+    @Override
+    public long getCallCount() {
+        return metrics.getCallCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return metrics.getErrorCount();
+    }
+
+    @Override
+    public long getBulkheadRejectedCount() {
+        return metrics.getBulkheadRejectedCount();
+    }
+
+    @Override
+    public int getInFlight() {
+        return metrics.getInFlight();
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return metrics.getLatency().getPercentileMicros(0.50);
+    }
+
+    @Override
+    public long getLatencyP95Micros() {
+        return metrics.getLatency().getPercentileMicros(0.95);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return metrics.getLatency().getPercentileMicros(0.99);
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return metrics.getLatency().getMaxMicros();
+    }
+
+    @Override
+    public long getCreationCount() {
+        return metrics.getCreationCount();
+    }
+
+    @Override
+    public long getDestructionCount() {
+        return metrics.getDestructionCount();
+    }
+
+    @Override
+    public long getLastCreationMillis() {
+        return metrics.getLastCreationMillis();
+    }
+
+    @Override
+    public long getLastWarmupMillis() {
+        return metrics.getLastWarmupMillis();
+    }
+
+    @Override
+    public long getLastDestructionMillis() {
+        return metrics.getLastDestructionMillis();
+    }
+
+    @Override
+    public long getTransactionCount() {
+        collectEbeanMetrics();
+        return metrics.getTransactionCount();
+    }
+
+    @Override
+    public QueryPlanStatistics[] getQueryPlanStatistics() {
+        collectEbeanMetrics();
+        List<QueryPlanStatistics> statistics = metrics.getQueryPlanStatistics();
+        return statistics.toArray(new QueryPlanStatistics[statistics.size()]);
+    }
+
+    @Override
+    public boolean isMetadataCached() {
+        return metrics.isMetadataCached();
+    }
+
+    @Override
+    public long getMetadataCacheSavedMillis() {
+        return metrics.getMetadataCacheSavedMillis();
+    }
+
+    @Override
+    public CacheStatistics[] getCacheStatistics() {
+        List<CacheStatistics> statistics = metrics.getCacheStatistics();
+        return statistics.toArray(new CacheStatistics[statistics.size()]);
+    }
+
+    @Override
+    public ResultCacheStatistics getResultCacheStatistics() {
+        return metrics.getResultCacheStatistics();
+    }
+
+    @Override
+    public WriteBehindStatistics getWriteBehindStatistics() {
+        return metrics.getWriteBehindStatistics();
+    }
+
+    @Override
+    public Map<String, Integer> getCacheHitRatios() {
+        collectEbeanMetrics();
+        return metrics.getCacheHitRatios();
+    }
+
+    private void collectEbeanMetrics() {
+        Database database = databaseStorage.get(metrics.getDatabaseName());
+        if (database != null) {
+            metrics.collectEbeanMetrics(database);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import java.util.Map;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public interface DatabaseMonitorMXBean {
+    String getDatabaseName();
+
+    boolean isConnected();
+
+    long getCallCount();
+
+    long getErrorCount();
+
+    long getBulkheadRejectedCount();
+
+    int getInFlight();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP95Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyMaxMicros();
+
+    long getCreationCount();
+
+    long getDestructionCount();
+
+    long getLastCreationMillis();
+
+    long getLastWarmupMillis();
+
+    long getLastDestructionMillis();
+
+    boolean isMetadataCached();
+
+    long getMetadataCacheSavedMillis();
+
+    long getTransactionCount();
+
+    QueryPlanStatistics[] getQueryPlanStatistics();
+
+    Map<String, Integer> getCacheHitRatios();
+
+    CacheStatistics[] getCacheStatistics();
+
+    ResultCacheStatistics getResultCacheStatistics();
+
+    WriteBehindStatistics getWriteBehindStatistics();
+}
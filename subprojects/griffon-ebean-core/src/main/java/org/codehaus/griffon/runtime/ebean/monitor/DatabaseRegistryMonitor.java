@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.core.env.Metadata;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseRegistry;
+import org.codehaus.griffon.runtime.monitor.AbstractMBeanRegistration;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class DatabaseRegistryMonitor extends AbstractMBeanRegistration implements DatabaseRegistryMonitorMXBean {
+    private final DatabaseRegistry databaseRegistry;
+    private final DatabaseFactory databaseFactory;
+
+    public DatabaseRegistryMonitor(@Nonnull Metadata metadata, @Nonnull DatabaseRegistry databaseRegistry, @Nonnull DatabaseFactory databaseFactory) {
+        super(metadata);
+        this.databaseRegistry = requireNonNull(databaseRegistry, "Argument 'databaseRegistry' must not be null");
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+    }
+
+    @Override
+    public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
+        return new ObjectName("griffon.plugins:type=ebean,application=" + metadata.getApplicationName() + ",kind=registry");
+    }
+
+    @Override
+    public String[] getDatabaseNames() {
+        Set<String> databaseNames = databaseFactory.getDatabaseNames();
+        return databaseNames.toArray(new String[0]);
+    }
+
+    @Override
+    public String[] reloadDatabases() {
+        try {
+            return databaseRegistry.reloadDatabases().get().toArray(new String[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reloading databases", e);
+        } catch (ExecutionException e) {
+            // JMX clients may not have the plugin classes, report the failure as plain text
+            throw new IllegalStateException("Could not reload databases: " + e.getCause());
+        }
+    }
+}
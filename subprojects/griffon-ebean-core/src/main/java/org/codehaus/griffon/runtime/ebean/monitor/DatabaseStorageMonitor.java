@@ -21,14 +21,48 @@ import griffon.annotations.core.Nonnull;
 import griffon.core.env.Metadata;
 import griffon.plugins.ebean.DatabaseStorage;
 import io.ebean.Database;
+import org.codehaus.griffon.runtime.ebean.BoundedDatabaseStorage;
 import org.codehaus.griffon.runtime.monitor.AbstractObjectStorageMonitor;
 
 /**
  * @author Andres Almiray
  */
 public class DatabaseStorageMonitor extends AbstractObjectStorageMonitor<Database> implements DatabaseStorageMonitorMXBean {
+    private final BoundedDatabaseStorage boundedStorage;
+
     public DatabaseStorageMonitor(@Nonnull Metadata metadata, @Nonnull DatabaseStorage delegate) {
         super(metadata, delegate);
+        this.boundedStorage = delegate instanceof BoundedDatabaseStorage ? (BoundedDatabaseStorage) delegate : null;
+    }
+
+    @Override
+    public boolean isBounded() {
+        return boundedStorage != null;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return boundedStorage != null ? boundedStorage.getMaxSize() : -1;
+    }
+
+    @Override
+    public long getIdleTimeout() {
+        return boundedStorage != null ? boundedStorage.getIdleTimeout() : -1L;
+    }
+
+    @Override
+    public int getPinnedCount() {
+        return boundedStorage != null ? boundedStorage.getPinnedCount() : 0;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return boundedStorage != null ? boundedStorage.getEvictionCount() : 0L;
+    }
+
+    @Override
+    public long getRecreationCount() {
+        return boundedStorage != null ? boundedStorage.getRecreationCount() : 0L;
     }
 
     @Override
@@ -23,4 +23,15 @@ import org.codehaus.griffon.runtime.monitor.ObjectStorageMonitorMXBean;
  * @author Andres Almiray
  */
 public interface DatabaseStorageMonitorMXBean extends ObjectStorageMonitorMXBean {
+    boolean isBounded();
+
+    int getMaxSize();
+
+    long getIdleTimeout();
+
+    int getPinnedCount();
+
+    long getEvictionCount();
+
+    long getRecreationCount();
 }
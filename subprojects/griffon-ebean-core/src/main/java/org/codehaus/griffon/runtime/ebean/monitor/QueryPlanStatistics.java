@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Accumulated execution statistics of a single Ebean query plan. Times are expressed in microseconds.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class QueryPlanStatistics {
+    private final String name;
+    private final String sql;
+    private long count;
+    private long totalMicros;
+    private long maxMicros;
+
+    public QueryPlanStatistics(@Nonnull String name, @Nullable String sql) {
+        this.name = name;
+        this.sql = sql;
+    }
+
+    @ConstructorProperties({"name", "sql", "count", "totalMicros", "maxMicros"})
+    public QueryPlanStatistics(@Nonnull String name, @Nullable String sql, long count, long totalMicros, long maxMicros) {
+        this.name = name;
+        this.sql = sql;
+        this.count = count;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+    }
+
+    public void add(long count, long totalMicros, long maxMicros) {
+        this.count += count;
+        this.totalMicros += totalMicros;
+        this.maxMicros = Math.max(this.maxMicros, maxMicros);
+    }
+
+    @Nonnull
+    public QueryPlanStatistics copy() {
+        return new QueryPlanStatistics(name, sql, count, totalMicros, maxMicros);
+    }
+
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getMeanMicros() {
+        return count == 0 ? 0 : totalMicros / count;
+    }
+}
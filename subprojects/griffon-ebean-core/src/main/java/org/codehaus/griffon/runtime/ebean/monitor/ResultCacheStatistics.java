@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the counters of the result cache of a database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class ResultCacheStatistics {
+    private final String databaseName;
+    private final int size;
+    private final long weight;
+    private final long maxWeight;
+    private final long hitCount;
+    private final long missCount;
+    private final long sharedLoadCount;
+    private final long loadCount;
+    private final long loadFailureCount;
+    private final long averageLoadMicros;
+    private final long evictionCount;
+    private final long invalidationCount;
+
+    @ConstructorProperties({"databaseName", "size", "weight", "maxWeight", "hitCount", "missCount", "sharedLoadCount", "loadCount", "loadFailureCount", "averageLoadMicros", "evictionCount", "invalidationCount"})
+    public ResultCacheStatistics(@Nonnull String databaseName, int size, long weight, long maxWeight, long hitCount, long missCount,
+                                 long sharedLoadCount, long loadCount, long loadFailureCount, long averageLoadMicros, long evictionCount, long invalidationCount) {
+        this.databaseName = databaseName;
+        this.size = size;
+        this.weight = weight;
+        this.maxWeight = maxWeight;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.sharedLoadCount = sharedLoadCount;
+        this.loadCount = loadCount;
+        this.loadFailureCount = loadFailureCount;
+        this.averageLoadMicros = averageLoadMicros;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+    }
+
+    @Nonnull
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Total weight of the entries, each one weighs as many elements as it holds.
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Misses that waited for a load already started by another caller instead of running the callback.
+     */
+    public long getSharedLoadCount() {
+        return sharedLoadCount;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long getAverageLoadMicros() {
+        return averageLoadMicros;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * Hit ratio as a percentage.
+     */
+    public int getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (int) (hitCount * 100 / total);
+    }
+}
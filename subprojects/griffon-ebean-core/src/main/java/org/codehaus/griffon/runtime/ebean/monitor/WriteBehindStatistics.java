@@ -0,0 +1,126 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.monitor;
+
+import griffon.annotations.core.Nonnull;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the counters of the write-behind queue of a database.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class WriteBehindStatistics {
+    private final String databaseName;
+    private final String overflowPolicy;
+    private final int depth;
+    private final int capacity;
+    private final long acceptedCount;
+    private final long writtenCount;
+    private final long combinedCount;
+    private final long droppedCount;
+    private final long failedCount;
+    private final long batchCount;
+    private final long flushLatencyP50Micros;
+    private final long flushLatencyP99Micros;
+    private final long flushLatencyMaxMicros;
+
+    @ConstructorProperties({"databaseName", "overflowPolicy", "depth", "capacity", "acceptedCount", "writtenCount", "combinedCount", "droppedCount", "failedCount", "batchCount", "flushLatencyP50Micros", "flushLatencyP99Micros", "flushLatencyMaxMicros"})
+    public WriteBehindStatistics(@Nonnull String databaseName, @Nonnull String overflowPolicy, int depth, int capacity,
+                                 long acceptedCount, long writtenCount, long combinedCount, long droppedCount, long failedCount, long batchCount,
+                                 long flushLatencyP50Micros, long flushLatencyP99Micros, long flushLatencyMaxMicros) {
+        this.databaseName = databaseName;
+        this.overflowPolicy = overflowPolicy;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.acceptedCount = acceptedCount;
+        this.writtenCount = writtenCount;
+        this.combinedCount = combinedCount;
+        this.droppedCount = droppedCount;
+        this.failedCount = failedCount;
+        this.batchCount = batchCount;
+        this.flushLatencyP50Micros = flushLatencyP50Micros;
+        this.flushLatencyP99Micros = flushLatencyP99Micros;
+        this.flushLatencyMaxMicros = flushLatencyMaxMicros;
+    }
+
+    @Nonnull
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    @Nonnull
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Beans waiting to be written.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * Beans queued more than once within a batch and therefore saved only once.
+     */
+    public long getCombinedCount() {
+        return combinedCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Flush latency is measured from the moment the oldest bean of a batch was queued until the batch is committed.
+     */
+    public long getFlushLatencyP50Micros() {
+        return flushLatencyP50Micros;
+    }
+
+    public long getFlushLatencyP99Micros() {
+        return flushLatencyP99Micros;
+    }
+
+    public long getFlushLatencyMaxMicros() {
+        return flushLatencyMaxMicros;
+    }
+}
@@ -18,6 +18,7 @@
 package griffon.plugins.ebean
 
 import griffon.plugins.ebean.domain.Person
+import griffon.plugins.ebean.exceptions.BulkImportException
 import griffon.plugins.ebean.exceptions.RuntimeDatabaseException
 import griffon.annotations.inject.BindTo
 import griffon.core.GriffonApplication
@@ -31,12 +32,24 @@ import griffon.plugins.ebean.events.DatabaseDisconnectEndEvent
 import griffon.plugins.ebean.events.DatabaseDisconnectStartEvent
 import griffon.test.core.GriffonUnitRule
 import io.ebean.Database
+import org.codehaus.griffon.runtime.ebean.DatabaseMetricsRegistry
+import org.h2.jdbcx.JdbcDataSource
 import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import javax.application.event.EventHandler
 import javax.inject.Inject
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.Collectors
 
 @Unroll
 class EbeanSpec extends Specification {
@@ -53,6 +66,15 @@ class EbeanSpec extends Specification {
     @Inject
     private GriffonApplication application
 
+    @Inject
+    private DatabaseMetricsRegistry databaseMetricsRegistry
+
+    @Inject
+    private ShardedDatabaseHandler shardedDatabaseHandler
+
+    @Inject
+    private DatabaseRegistry databaseRegistry
+
     void 'Open and close default ebean'() {
         given:
         List eventNames = [
@@ -170,6 +192,404 @@ class EbeanSpec extends Specification {
         thrown(RuntimeDatabaseException)
     }
 
+    void 'Read-only callbacks are routed to the replicas of a database'() {
+        given:
+        String sql = "select count(*) from information_schema.tables where table_name = 'PERSON'"
+
+        when:
+        Long onPrimary = databaseHandler.withEbean('reporting') { String databaseName, Database database ->
+            database.sqlQuery(sql).mapToScalar(Long).findOne()
+        }
+        Long onReplica = databaseHandler.withEbeanReadOnly('reporting') { String databaseName, Database database ->
+            database.sqlQuery(sql).mapToScalar(Long).findOne()
+        }
+
+        then:
+        onPrimary == 1
+        onReplica == 0
+    }
+
+    void 'Key #key is dispatched to shard #shard'() {
+        when:
+        String result = shardedDatabaseHandler.withShard(key) { String databaseName, Database database ->
+            databaseName
+        }
+
+        then:
+        result == shard
+
+        where:
+        key | shard
+        0   | 'internal'
+        1   | 'people'
+        2   | 'internal'
+    }
+
+    void 'Callbacks run on every shard and their results are merged'() {
+        when:
+        Map<String, String> results = shardedDatabaseHandler.withAllShards { String databaseName, Database database ->
+            databaseName.toUpperCase()
+        }
+        Set<String> names = shardedDatabaseHandler.withAllShards({ String databaseName, Database database ->
+            databaseName
+        } as DatabaseCallback<String>, Collectors.toSet())
+
+        then:
+        results == [internal: 'INTERNAL', people: 'PEOPLE']
+        names == ['internal', 'people'] as Set
+    }
+
+    void 'Register and unregister a database at runtime'() {
+        given:
+        Map<String, Object> config = [datasource: tenantDataSource('tenant_a'), schema: 'create']
+
+        when:
+        Database registered = databaseRegistry.registerDatabase('tenant_a', config).get(30, TimeUnit.SECONDS)
+        Integer count = databaseHandler.withEbean('tenant_a') { String databaseName, Database database ->
+            assert database.is(registered)
+            database.save(new Person(id: 1, name: 'Danno', lastname: 'Ferrin'))
+            database.find(Person).findCount()
+        }
+
+        then:
+        count == 1
+        application.injector.getInstance(DatabaseFactory).databaseNames.contains('tenant_a')
+
+        when:
+        databaseRegistry.unregisterDatabase('tenant_a').get(30, TimeUnit.SECONDS)
+        databaseHandler.withEbean('tenant_a') { String databaseName, Database database -> database }
+
+        then:
+        thrown(IllegalArgumentException)
+        !application.injector.getInstance(DatabaseFactory).databaseNames.contains('tenant_a')
+    }
+
+    void 'Reconfiguring a database waits for running callbacks before closing the previous instance'() {
+        given:
+        Map<String, Object> config = [datasource: tenantDataSource('tenant_b'), schema: 'create']
+        Database previous = databaseRegistry.registerDatabase('tenant_b', config).get(30, TimeUnit.SECONDS)
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch proceed = new CountDownLatch(1)
+        ExecutorService executor = Executors.newSingleThreadExecutor()
+
+        when:
+        Future<Database> running = executor.submit({
+            databaseHandler.withEbean('tenant_b') { String databaseName, Database database ->
+                started.countDown()
+                proceed.await()
+                database
+            }
+        } as Callable<Database>)
+        started.await()
+        Future<Void> reconfigured = databaseRegistry.reconfigureDatabase('tenant_b', config + [lazyLoadBatchSize: 50])
+        Database replacement = previous
+        long deadline = System.currentTimeMillis() + 30000
+        while (replacement.is(previous) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+            replacement = databaseHandler.withEbean('tenant_b') { String databaseName, Database database -> database }
+        }
+        boolean doneWhileRunning = reconfigured.done
+        proceed.countDown()
+        reconfigured.get(30, TimeUnit.SECONDS)
+
+        then:
+        !doneWhileRunning
+        running.get(30, TimeUnit.SECONDS).is(previous)
+        !replacement.is(previous)
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    void 'Rebuilding a database keeps the rows written through the previous instance'() {
+        given:
+        Map<String, Object> config = [datasource: tenantDataSource('tenant_f'), schema: 'create']
+        Database previous = databaseRegistry.registerDatabase('tenant_f', config).get(30, TimeUnit.SECONDS)
+        databaseHandler.withEbean('tenant_f') { String databaseName, Database database ->
+            database.save(new Person(id: 1, name: 'Danno', lastname: 'Ferrin'))
+        }
+
+        when:
+        databaseRegistry.reconfigureDatabase('tenant_f', config + [lazyLoadBatchSize: 50]).get(30, TimeUnit.SECONDS)
+        List<Map> people = databaseHandler.withEbean('tenant_f') { String databaseName, Database database ->
+            assert !database.is(previous)
+            database.find(Person).findList()*.asMap()
+        }
+
+        then:
+        people == [[id: 1, name: 'Danno', lastname: 'Ferrin']]
+
+        cleanup:
+        databaseRegistry.unregisterDatabase('tenant_f').get(30, TimeUnit.SECONDS)
+    }
+
+    void 'Reloading an unchanged configuration keeps connected databases'() {
+        given:
+        Database connected = databaseHandler.withEbean('people') { String databaseName, Database database -> database }
+
+        when:
+        Set<String> changed = databaseRegistry.reloadDatabases().get(30, TimeUnit.SECONDS)
+        Database current = databaseHandler.withEbean('people') { String databaseName, Database database -> database }
+
+        then:
+        changed.empty
+        current.is(connected)
+    }
+
+    void 'A configured database cannot be registered twice'() {
+        when:
+        databaseRegistry.registerDatabase('people', [:]).get(30, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown(ExecutionException)
+        e.cause instanceof IllegalArgumentException
+    }
+
+    void 'A database with unknown properties cannot be registered'() {
+        when:
+        databaseRegistry.registerDatabase('tenant_c', [datasource: tenantDataSource('tenant_c'), lazyLoadBatchSise: 50]).get(30, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown(ExecutionException)
+        e.cause instanceof IllegalArgumentException
+        e.cause.message.contains('lazyLoadBatchSise')
+    }
+
+    void 'A database is warmed up before it is handed out'() {
+        given:
+        Map<String, Object> config = [
+            datasource: tenantDataSource('tenant_d'),
+            schema    : 'create',
+            warmup    : [connections: 3, queries: ['select 1'], entities: true, caches: [Person.name]]
+        ]
+
+        when:
+        databaseRegistry.registerDatabase('tenant_d', config).get(30, TimeUnit.SECONDS)
+
+        then:
+        databaseMetricsRegistry.getMetrics('tenant_d').creationCount == 1
+
+        cleanup:
+        databaseRegistry.unregisterDatabase('tenant_d').get(30, TimeUnit.SECONDS)
+    }
+
+    void 'A failing warm-up fails creation when fail_on_error is set'() {
+        given:
+        Map<String, Object> config = [
+            datasource: tenantDataSource('tenant_e'),
+            schema    : 'create',
+            warmup    : [queries: ['select * from missing_table'], fail_on_error: true]
+        ]
+
+        when:
+        databaseRegistry.registerDatabase('tenant_e', config).get(30, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown(ExecutionException)
+        e.cause instanceof RuntimeDatabaseException
+        !application.injector.getInstance(DatabaseFactory).databaseNames.contains('tenant_e')
+    }
+
+    void 'Statements executed with withEbeanTransaction are committed'() {
+        when:
+        Map settings = databaseHandler.withEbeanTransaction(TxOptions.defaults().withBatchSize(10)) { String databaseName, Database database ->
+            [[id: 1, name: 'Danno', lastname: 'Ferrin'],
+             [id: 2, name: 'Andres', lastname: 'Almiray']].each { data ->
+                database.save(new Person(data))
+            }
+            [batchMode: database.currentTransaction().batchMode, batchSize: database.currentTransaction().batchSize]
+        }
+
+        int count = databaseHandler.withEbean { String databaseName, Database database ->
+            database.find(Person).findCount()
+        }
+
+        then:
+        settings == [batchMode: true, batchSize: 10]
+        count == 2
+    }
+
+    void 'A failing withEbeanTransaction call is rolled back'() {
+        when:
+        databaseHandler.withEbeanTransaction(TxOptions.defaults()) { String databaseName, Database database ->
+            database.save(new Person(id: 1, name: 'Danno', lastname: 'Ferrin'))
+            throw new IllegalStateException('boom')
+        }
+
+        then:
+        RuntimeDatabaseException e = thrown(RuntimeDatabaseException)
+        e.cause instanceof IllegalStateException
+        0 == databaseHandler.withEbean { String databaseName, Database database ->
+            database.find(Person).findCount()
+        }
+    }
+
+    void 'Bulk import saves every chunk with parallelism #parallelism'() {
+        given:
+        Iterator<Person> people = (1..25).collect { new Person(id: it, name: "name$it", lastname: "lastname$it") }.iterator()
+
+        when:
+        BulkImportResult result = databaseHandler.bulkImport(people, BulkImportOptions.defaults()
+            .withChunkSize(10)
+            .withParallelism(parallelism))
+
+        int count = databaseHandler.withEbean { String databaseName, Database database ->
+            database.find(Person).findCount()
+        }
+
+        then:
+        result.rows == 25
+        result.chunks == 3
+        result.nextChunk == 3
+        count == 25
+
+        where:
+        parallelism << [1, 2]
+    }
+
+    void 'A failed bulk import resumes from the first chunk that was not committed'() {
+        given:
+        List<Person> people = (1..25).collect { new Person(id: it, name: "name$it", lastname: "lastname$it") }
+        Iterator<Person> feed = people.iterator()
+        Iterator<Person> failing = [
+            hasNext: { feed.hasNext() },
+            next   : {
+                Person person = feed.next()
+                if (person.id == 13) throw new IllegalStateException('feed interrupted')
+                person
+            }
+        ] as Iterator<Person>
+
+        when:
+        databaseHandler.bulkImport(failing, BulkImportOptions.defaults().withChunkSize(10))
+
+        then:
+        BulkImportException e = thrown(BulkImportException)
+        e.resumeChunk == 1
+        e.rowsImported == 10
+
+        when:
+        BulkImportResult result = databaseHandler.bulkImport(people.iterator(), BulkImportOptions.defaults()
+            .withChunkSize(10)
+            .withStartChunk(1))
+
+        int count = databaseHandler.withEbean { String databaseName, Database database ->
+            database.find(Person).findCount()
+        }
+
+        then:
+        result.rows == 15
+        result.nextChunk == 3
+        count == 25
+    }
+
+    void 'Stream every row of a query'() {
+        given:
+        databaseHandler.bulkImport((1..25).collect { new Person(id: it, name: "name$it", lastname: "lastname$it") }.iterator(),
+            BulkImportOptions.defaults())
+
+        when:
+        List<Integer> ids = []
+        QueryStream<Person> rows = databaseHandler.streamQuery({ String databaseName, Database database ->
+            database.find(Person).orderBy('id')
+        } as QueryCallback<Person>, QueryStreamOptions.defaults().withFetchSize(10).withBatchSize(4).withBufferedBatches(1))
+        try {
+            rows.each { Person person -> ids << person.id }
+        } finally {
+            rows.close()
+        }
+
+        then:
+        ids == (1..25).toList()
+        databaseMetricsRegistry.getMetrics('default').inFlight == 0
+    }
+
+    void 'Closing a query stream early releases its connection'() {
+        given:
+        databaseHandler.bulkImport((1..25).collect { new Person(id: it, name: "name$it", lastname: "lastname$it") }.iterator(),
+            BulkImportOptions.defaults())
+
+        when:
+        QueryStream<Person> rows = databaseHandler.streamQuery({ String databaseName, Database database ->
+            database.find(Person).orderBy('id')
+        } as QueryCallback<Person>, QueryStreamOptions.defaults().withBatchSize(2).withBufferedBatches(1))
+        List<Integer> ids = rows.stream().limit(3).map { Person person -> person.id }.collect(Collectors.toList())
+        rows.close()
+
+        then:
+        ids == [1, 2, 3]
+        databaseMetricsRegistry.getMetrics('default').inFlight == 0
+        !rows.hasNext()
+    }
+
+    void 'Execute statements asynchronously on #name Database'() {
+        when:
+        String result = databaseHandler.withEbeanAsync(name) { String databaseName, Database database ->
+            databaseName
+        }.get(30, TimeUnit.SECONDS)
+
+        then:
+        result == name
+
+        where:
+        name       | _
+        'default'  | _
+        'internal' | _
+        'people'   | _
+    }
+
+    void 'A runtime exception thrown asynchronously is not wrapped twice'() {
+        when:
+        databaseHandler.withEbeanAsync { String databaseName, Database database ->
+            database.save(null)
+        }.get(30, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown(ExecutionException)
+        e.cause instanceof RuntimeDatabaseException
+        !(e.cause.cause instanceof RuntimeDatabaseException)
+    }
+
+    void 'Concurrent access to #name Database creates a single instance'() {
+        given:
+        int threads = 16
+        ConnectStartEventCounter counter = new ConnectStartEventCounter()
+        application.eventRouter.subscribe(counter)
+        CountDownLatch start = new CountDownLatch(1)
+        ExecutorService executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        List<Future<Database>> futures = (1..threads).collect {
+            executor.submit({
+                start.await()
+                databaseHandler.withEbean(name) { String databaseName, Database database -> database }
+            } as Callable<Database>)
+        }
+        start.countDown()
+        List<Database> databases = futures.collect { it.get(30, TimeUnit.SECONDS) }
+
+        then:
+        counter.counts[name].get() == 1
+        databases.every { it.is(databases[0]) }
+
+        cleanup:
+        executor.shutdownNow()
+
+        where:
+        name       | _
+        'default'  | _
+        'internal' | _
+        'people'   | _
+    }
+
+    private static JdbcDataSource tenantDataSource(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource()
+        dataSource.URL = "jdbc:h2:mem:${name}-${System.nanoTime()};DB_CLOSE_DELAY=-1"
+        dataSource.user = 'sa'
+        dataSource.password = ''
+        dataSource
+    }
+
     @BindTo(EbeanBootstrap)
     private TestEbeanBootstrap bootstrap = new TestEbeanBootstrap()
 
@@ -216,4 +636,13 @@ class EbeanSpec extends Specification {
             events << event.class.simpleName
         }
     }
+
+    private class ConnectStartEventCounter {
+        Map<String, AtomicInteger> counts = new ConcurrentHashMap<>()
+
+        @EventHandler
+        void handleDatabaseConnectStartEvent(DatabaseConnectStartEvent event) {
+            counts.computeIfAbsent(event.name, { new AtomicInteger() }).incrementAndGet()
+        }
+    }
 }
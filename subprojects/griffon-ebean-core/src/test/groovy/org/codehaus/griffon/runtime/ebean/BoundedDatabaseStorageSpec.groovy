@@ -0,0 +1,175 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.DatabaseFactory
+import io.ebean.Database
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+class BoundedDatabaseStorageSpec extends Specification {
+    private final ExecutorService executor = Executors.newCachedThreadPool()
+
+    void cleanup() {
+        executor.shutdownNow()
+    }
+
+    void 'The least recently used database is evicted when full'() {
+        given:
+        DatabaseFactory factory = Mock(DatabaseFactory)
+        BoundedDatabaseStorage storage = new BoundedDatabaseStorage(factory, 2, 0L, 0L)
+        Database first = Mock(Database)
+        Database second = Mock(Database)
+        Database third = Mock(Database)
+
+        when:
+        storage.set('first', first)
+        storage.set('second', second)
+        storage.release('first', storage.acquire('first'))
+        storage.set('third', third)
+
+        then:
+        1 * factory.destroy('second', second)
+        storage.keys == ['first', 'third'] as Set
+        storage.evictionCount == 1
+    }
+
+    void 'A pinned database is not evicted'() {
+        given:
+        DatabaseFactory factory = Mock(DatabaseFactory)
+        BoundedDatabaseStorage storage = new BoundedDatabaseStorage(factory, 1, 0L, 0L)
+        Database first = Mock(Database)
+        Database second = Mock(Database)
+
+        when:
+        storage.set('first', first)
+        storage.acquire('first')
+        storage.set('second', second)
+
+        then:
+        0 * factory.destroy(*_)
+        storage.keys == ['first', 'second'] as Set
+        storage.pinnedCount == 1
+
+        when:
+        storage.release('first', first)
+        storage.set('second', second)
+
+        then:
+        1 * factory.destroy('first', first)
+        storage.keys == ['second'] as Set
+        storage.pinnedCount == 0
+    }
+
+    void 'Idle databases are evicted and re-creations are counted'() {
+        given:
+        DatabaseFactory factory = Mock(DatabaseFactory)
+        BoundedDatabaseStorage storage = new BoundedDatabaseStorage(factory, 0, 10L, 0L)
+        Database idle = Mock(Database)
+        Database busy = Mock(Database)
+        storage.set('idle', idle)
+        storage.set('busy', busy)
+        storage.acquire('busy')
+
+        when:
+        Thread.sleep(50)
+        int evicted = storage.evictIdle()
+
+        then:
+        evicted == 1
+        1 * factory.destroy('idle', idle)
+        storage.get('idle') == null
+        storage.get('busy') == busy
+
+        when:
+        storage.set('idle', Mock(Database))
+
+        then:
+        storage.evictionCount == 1
+        storage.recreationCount == 1
+    }
+
+    void 'Lookups do not keep a database from going idle'() {
+        given:
+        DatabaseFactory factory = Mock(DatabaseFactory)
+        BoundedDatabaseStorage storage = new BoundedDatabaseStorage(factory, 0, 10L, 0L)
+        Database database = Mock(Database)
+        storage.set('polled', database)
+
+        when:
+        5.times {
+            Thread.sleep(5)
+            assert storage.get('polled') == database
+        }
+        int evicted = storage.evictIdle()
+
+        then:
+        evicted == 1
+        1 * factory.destroy('polled', database)
+        storage.get('polled') == null
+    }
+
+    @Timeout(10)
+    void 'Evicted databases are closed outside the lock and re-created only once closed'() {
+        given:
+        CountDownLatch destroying = new CountDownLatch(1)
+        CountDownLatch proceed = new CountDownLatch(1)
+        DatabaseFactory factory = Stub(DatabaseFactory) {
+            destroy(_, _) >> {
+                destroying.countDown()
+                proceed.await()
+            }
+        }
+        BoundedDatabaseStorage storage = new BoundedDatabaseStorage(factory, 0, 500L, 0L)
+        Database idle = Mock(Database)
+        Database other = Mock(Database)
+        storage.set('idle', idle)
+        Thread.sleep(600)
+        storage.set('other', other)
+
+        when:
+        Future<Integer> eviction = executor.submit({ storage.evictIdle() } as Callable<Integer>)
+        destroying.await()
+
+        then: 'other databases remain usable while the instance is closed'
+        storage.get('idle') == null
+        storage.acquire('other') == other
+
+        when: 'a re-creation waits for the close to finish'
+        Future<Database> reacquire = executor.submit({ storage.acquire('idle') } as Callable<Database>)
+        Thread.sleep(100)
+
+        then:
+        !reacquire.done
+
+        when:
+        proceed.countDown()
+
+        then:
+        eviction.get(5, TimeUnit.SECONDS) == 1
+        reacquire.get(5, TimeUnit.SECONDS) == null
+        storage.evictionCount == 1
+    }
+}
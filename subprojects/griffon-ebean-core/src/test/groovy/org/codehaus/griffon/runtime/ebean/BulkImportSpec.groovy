@@ -0,0 +1,156 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.BulkImportOptions
+import griffon.plugins.ebean.BulkImportResult
+import griffon.plugins.ebean.DatabaseCallback
+import griffon.plugins.ebean.DatabaseHandler
+import griffon.plugins.ebean.TxOptions
+import griffon.plugins.ebean.exceptions.BulkImportException
+import io.ebean.Database
+import io.ebean.Transaction
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Supplier
+
+class BulkImportSpec extends Specification {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4)
+    private final Set<Integer> saved = ConcurrentHashMap.newKeySet()
+    private final List<Integer> beans = (0..<20).collect { it }
+    private volatile Integer failOn
+    private final AtomicInteger inFlight = new AtomicInteger()
+    private final AtomicInteger maxInFlight = new AtomicInteger()
+
+    private Database database() {
+        Stub(Database) {
+            beginTransaction() >> Stub(Transaction)
+            saveAll(_) >> { args ->
+                Collection<Integer> chunk = args[0] as Collection<Integer>
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet()) { int a, int b -> Math.max(a, b) }
+                Thread.sleep(10)
+                inFlight.decrementAndGet()
+                if (failOn != null && chunk.contains(failOn)) {
+                    // later chunks get a chance to commit before this one fails
+                    Thread.sleep(50)
+                    throw new IllegalStateException('chunk failed')
+                }
+                chunk.each { assert saved.add(it), "bean $it saved twice" }
+                chunk.size()
+            }
+        }
+    }
+
+    private DatabaseHandler databaseHandler() {
+        Database database = database()
+        Stub(DatabaseHandler) {
+            withEbean(_ as String, _ as DatabaseCallback) >> { String databaseName, DatabaseCallback callback ->
+                callback.handle(databaseName, database)
+            }
+            withEbeanAsync(_ as String, _ as DatabaseCallback) >> { String databaseName, DatabaseCallback callback ->
+                if (databaseName == 'bogus') {
+                    throw new IllegalArgumentException("Database '$databaseName' is not configured")
+                }
+                CompletableFuture.supplyAsync({ callback.handle(databaseName, database) } as Supplier, executor)
+            }
+        }
+    }
+
+    private BulkImportResult bulkImport(String databaseName, BulkImportOptions options, int concurrency = 4) {
+        new BulkImport<Integer>(databaseHandler(), databaseName, beans.iterator(), options, TxOptions.defaults(), concurrency).execute()
+    }
+
+    void cleanup() {
+        executor.shutdownNow()
+    }
+
+    @Timeout(10)
+    void 'A parallel import fails instead of waiting forever when chunks can not be submitted'() {
+        when:
+        bulkImport('bogus', BulkImportOptions.defaults().withChunkSize(5).withParallelism(2))
+
+        then:
+        BulkImportException e = thrown(BulkImportException)
+        e.cause instanceof IllegalArgumentException
+        e.resumeChunk == 0
+        e.committedChunks.empty
+        saved.empty
+    }
+
+    void 'The parallelism of an import is capped by the threads of the database executor'() {
+        when:
+        BulkImportResult result = bulkImport('test', BulkImportOptions.defaults().withChunkSize(2).withParallelism(4), 2)
+
+        then:
+        result.rows == 20
+        saved.sort() == beans
+        maxInFlight.get() <= 2
+    }
+
+    void 'A failed parallel import reports the chunks committed past the failed one'() {
+        given:
+        failOn = 4
+
+        when:
+        bulkImport('test', BulkImportOptions.defaults().withChunkSize(2).withParallelism(4))
+
+        then:
+        BulkImportException e = thrown(BulkImportException)
+        e.resumeChunk == 2
+        !e.committedChunks.empty
+        e.committedChunks.every { it > 2 }
+        e.rowsImported == saved.size()
+        saved.containsAll([0, 1, 2, 3])
+        !saved.contains(4)
+
+        when:
+        failOn = null
+        BulkImportResult result = bulkImport('test', BulkImportOptions.defaults()
+            .withChunkSize(2)
+            .withParallelism(4)
+            .withResumeFrom(e))
+
+        then: 'no bean is saved twice'
+        saved.sort() == beans
+        result.rows + e.rowsImported == 20
+        result.nextChunk == 10
+    }
+
+    void 'A sequential import skips the given chunks and reports them when it fails'() {
+        given:
+        failOn = 8
+
+        when:
+        bulkImport('test', BulkImportOptions.defaults()
+            .withChunkSize(2)
+            .withStartChunk(1)
+            .withSkippedChunks([2L, 6L]))
+
+        then:
+        BulkImportException e = thrown(BulkImportException)
+        saved.sort() == [2, 3, 6, 7]
+        e.resumeChunk == 4
+        e.committedChunks == [6L] as SortedSet
+    }
+}
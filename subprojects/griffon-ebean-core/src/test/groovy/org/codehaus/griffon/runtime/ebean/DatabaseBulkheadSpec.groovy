@@ -0,0 +1,146 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.exceptions.DatabaseBulkheadFullException
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DatabaseBulkheadSpec extends Specification {
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+    private final List<CountDownLatch> holders = []
+
+    private void hold(DatabaseBulkhead bulkhead) {
+        CountDownLatch acquired = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        holders << release
+        Thread.start {
+            bulkhead.acquire()
+            acquired.countDown()
+            release.await()
+            bulkhead.release()
+        }
+        assert acquired.await(5, TimeUnit.SECONDS)
+    }
+
+    void cleanup() {
+        holders*.countDown()
+    }
+
+    void 'Callers beyond the limit are rejected when they can not be queued'() {
+        given:
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead('test', 2, 0, 1000)
+        2.times { hold(bulkhead) }
+
+        when:
+        bulkhead.acquire()
+
+        then:
+        DatabaseBulkheadFullException e = thrown(DatabaseBulkheadFullException)
+        e.message.contains('too many queued callers')
+        bulkhead.inFlight == 2
+        bulkhead.rejected == 1
+    }
+
+    void 'Queued callers get the next free slot while the queue is bounded'() {
+        given:
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead('test', 1, 1, 5000)
+        hold(bulkhead)
+        CountDownLatch waited = new CountDownLatch(1)
+        Thread waiter = Thread.start {
+            bulkhead.acquire()
+            waited.countDown()
+            bulkhead.release()
+        }
+        conditions.eventually {
+            assert bulkhead.queued == 1
+        }
+
+        when:
+        bulkhead.acquire()
+
+        then:
+        thrown(DatabaseBulkheadFullException)
+        waited.count == 1
+
+        when:
+        holders*.countDown()
+        waiter.join(5000)
+
+        then:
+        waited.count == 0
+        bulkhead.queued == 0
+        bulkhead.rejected == 1
+    }
+
+    void 'Queued callers give up after the acquire timeout'() {
+        given:
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead('test', 1, 1, 50)
+        hold(bulkhead)
+        long start = System.nanoTime()
+
+        when:
+        bulkhead.acquire()
+
+        then:
+        DatabaseBulkheadFullException e = thrown(DatabaseBulkheadFullException)
+        e.message.contains('no slot available after 50 ms')
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50
+        bulkhead.queued == 0
+    }
+
+    void 'Nested callbacks reuse the slot of the outer callback'() {
+        given:
+        DatabaseBulkhead bulkhead = new DatabaseBulkhead('test', 1, 0, 1000)
+
+        when:
+        bulkhead.acquire()
+        bulkhead.acquire()
+
+        then:
+        bulkhead.inFlight == 1
+
+        when:
+        bulkhead.release()
+
+        then: 'the outer callback still holds the slot'
+        bulkhead.inFlight == 1
+
+        when:
+        Thread.start {
+            try {
+                bulkhead.acquire()
+            } catch (DatabaseBulkheadFullException ignored) {
+            }
+        }.join()
+
+        then:
+        bulkhead.rejected == 1
+
+        when:
+        bulkhead.release()
+        hold(bulkhead)
+
+        then:
+        bulkhead.inFlight == 1
+        bulkhead.rejected == 1
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import io.ebean.annotation.PersistBatch
+import io.ebean.config.DatabaseConfig
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DatabaseConfigBinderSpec extends Specification {
+    @Unroll
+    void 'Property #property is bound from #value'() {
+        given:
+        DatabaseConfig databaseConfig = new DatabaseConfig()
+
+        when:
+        DatabaseConfigBinder.bind(databaseConfig, property, value)
+
+        then:
+        databaseConfig."$property" == expected
+
+        where:
+        property            | value   | expected
+        'lazyLoadBatchSize' | 50      | 50
+        'lazyLoadBatchSize' | 50L     | 50
+        'lazyLoadBatchSize' | '50'    | 50
+        'ddlGenerate'       | true    | true
+        'ddlGenerate'       | 'true'  | true
+        'name'              | 'spec'  | 'spec'
+        'persistBatch'      | 'ALL'   | PersistBatch.ALL
+        'persistBatch'      | PersistBatch.NONE | PersistBatch.NONE
+    }
+
+    void 'Unknown properties are rejected'() {
+        when:
+        DatabaseConfigBinder.bind(new DatabaseConfig(), 'lazyLoadBatchSise', 50)
+
+        then:
+        thrown(IllegalArgumentException)
+        !DatabaseConfigBinder.isBindable('lazyLoadBatchSise')
+        DatabaseConfigBinder.isBindable('lazyLoadBatchSize')
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.DatabaseCallback
+import griffon.plugins.ebean.DatabaseHandler
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DatabaseConnectorSpec extends Specification {
+    private final List<String> connected = new CopyOnWriteArrayList<>()
+    private final List<String> closed = new CopyOnWriteArrayList<>()
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    private DatabaseHandler databaseHandler(Map<String, Closure> behaviour) {
+        Stub(DatabaseHandler) {
+            withEbean(_ as String, _ as DatabaseCallback) >> { String databaseName, DatabaseCallback callback ->
+                behaviour.get(databaseName)?.call()
+                connected << databaseName
+                null
+            }
+            closeEbean(_ as String) >> { String databaseName -> closed << databaseName }
+        }
+    }
+
+    private static void awaitIgnoringInterrupts(CountDownLatch latch) {
+        // creating a database does not react to interruption either
+        boolean interrupted = false
+        while (true) {
+            try {
+                latch.await()
+                break
+            } catch (InterruptedException ignored) {
+                interrupted = true
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    void 'Databases are connected in parallel'() {
+        given:
+        CountDownLatch together = new CountDownLatch(2)
+        DatabaseHandler databaseHandler = databaseHandler(
+            one: { together.countDown(); assert together.await(5, TimeUnit.SECONDS) },
+            two: { together.countDown(); assert together.await(5, TimeUnit.SECONDS) })
+
+        when:
+        new DatabaseConnector(databaseHandler, 'test', 2).connectAll(['one', 'two'])
+
+        then:
+        connected.sort() == ['one', 'two']
+        closed.empty
+    }
+
+    void 'A failing parallel connect fails fast and closes the databases that did connect'() {
+        given:
+        CountDownLatch slowStarted = new CountDownLatch(1)
+        CountDownLatch releaseSlow = new CountDownLatch(1)
+        DatabaseHandler databaseHandler = databaseHandler(
+            fast: {},
+            slow: { slowStarted.countDown(); awaitIgnoringInterrupts(releaseSlow) },
+            broken: { slowStarted.await(); throw new IllegalStateException('broken') })
+
+        when:
+        new DatabaseConnector(databaseHandler, 'test', 3).connectAll(['fast', 'slow', 'broken'])
+
+        then:
+        IllegalStateException e = thrown(IllegalStateException)
+        e.message == 'broken'
+        !connected.contains('slow')
+        conditions.eventually {
+            assert closed == ['fast']
+        }
+
+        when:
+        releaseSlow.countDown()
+
+        then:
+        conditions.eventually {
+            assert closed.sort() == ['fast', 'slow']
+        }
+        !closed.contains('broken')
+    }
+
+    void 'Background connects do not block the caller and complete ahead of first use'() {
+        given:
+        CountDownLatch release = new CountDownLatch(1)
+        DatabaseHandler databaseHandler = databaseHandler(warm: { release.await() })
+        DatabaseConnector connector = new DatabaseConnector(databaseHandler, 'test', 1)
+
+        when:
+        connector.connectInBackground(['warm'])
+
+        then:
+        connected.empty
+
+        when:
+        release.countDown()
+
+        then:
+        connector.awaitTermination(5, TimeUnit.SECONDS)
+        connected == ['warm']
+        closed.empty
+    }
+
+    void 'Databases connecting in the background at shutdown are closed once they connect'() {
+        given:
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        DatabaseHandler databaseHandler = databaseHandler(
+            done: {},
+            connecting: { started.countDown(); awaitIgnoringInterrupts(release) })
+        DatabaseConnector connector = new DatabaseConnector(databaseHandler, 'test', 1)
+
+        when:
+        connector.connectInBackground(['done', 'connecting', 'queued'])
+        started.await()
+        connector.abandon(false)
+
+        then:
+        !connector.awaitTermination(50, TimeUnit.MILLISECONDS)
+        closed.empty
+
+        when:
+        release.countDown()
+
+        then:
+        connector.awaitTermination(5, TimeUnit.SECONDS)
+        connected == ['done', 'connecting']
+        closed == ['connecting']
+    }
+
+    void 'Abandoning lets builds in progress finish without interrupting them and skips queued ones'() {
+        given:
+        CountDownLatch started = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        List<Boolean> interrupted = new CopyOnWriteArrayList<>()
+        DatabaseHandler databaseHandler = databaseHandler(
+            building: {
+                started.countDown()
+                awaitIgnoringInterrupts(release)
+                interrupted << Thread.currentThread().isInterrupted()
+            })
+        DatabaseConnector connector = new DatabaseConnector(databaseHandler, 'test', 1)
+
+        when:
+        connector.connectInBackground(['building', 'queued'])
+        started.await()
+        connector.abandon(true)
+        release.countDown()
+
+        then:
+        connector.awaitTermination(5, TimeUnit.SECONDS)
+        interrupted == [false]
+        connected == ['building']
+        closed == ['building']
+    }
+}
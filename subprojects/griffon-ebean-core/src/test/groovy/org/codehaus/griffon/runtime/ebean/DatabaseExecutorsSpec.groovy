@@ -0,0 +1,199 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.core.Configuration
+import griffon.plugins.datasource.DataSourceFactory
+import griffon.plugins.ebean.DatabaseFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.sql.DataSource
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+@Unroll
+class DatabaseExecutorsSpec extends Specification {
+    private DatabaseExecutors executors(Map<String, Object> executor, Map<String, Object> handler = null) {
+        Configuration configuration = Stub(Configuration) {
+            get('handler') >> handler
+        }
+        DatabaseFactory databaseFactory = Stub(DatabaseFactory) {
+            getDatabaseNames() >> (['test'] as Set)
+            getConfigurationFor('test') >> [executor: executor]
+            getConfiguration() >> configuration
+        }
+        DataSourceFactory dataSourceFactory = Stub(DataSourceFactory) {
+            getConfigurationFor(_) >> [pool: [maximumPoolSize: 3]]
+        }
+        new DatabaseExecutors(databaseFactory, dataSourceFactory)
+    }
+
+    private static CountDownLatch occupy(ExecutorService executor) {
+        CountDownLatch release = new CountDownLatch(1)
+        CountDownLatch started = new CountDownLatch(1)
+        executor.execute { started.countDown(); release.await() }
+        started.await()
+        release
+    }
+
+    void 'Callbacks run on a platform thread pool by default'() {
+        when:
+        ExecutorService executor = executors([threads: 3, queue_size: 7]).getExecutor('test')
+
+        then:
+        executor instanceof ThreadPoolExecutor
+        ((ThreadPoolExecutor) executor).maximumPoolSize == 3
+        ((ThreadPoolExecutor) executor).queue.remainingCapacity() == 7
+
+        cleanup:
+        executor?.shutdown()
+    }
+
+    void 'Virtual mode uses virtual threads when the JVM supports them'() {
+        when:
+        ExecutorService executor = executors([:], [mode: 'VIRTUAL']).getExecutor('test')
+
+        then:
+        executor.getClass() == (VirtualThreadDatabaseExecutor.supported ? VirtualThreadDatabaseExecutor : ThreadPoolExecutor)
+
+        cleanup:
+        executor?.shutdown()
+    }
+
+    void 'Invalid settings #settings are rejected'() {
+        when:
+        executors(executor, handler).getExecutor('test')
+
+        then:
+        IllegalArgumentException e = thrown(IllegalArgumentException)
+        e.message.contains(message)
+
+        where:
+        settings               | executor                     | handler           || message
+        'mode'                 | [:]                          | [mode: 'green']   || "Invalid handler mode 'green'"
+        'rejection'            | [rejection: 'discard']       | null              || "Invalid executor rejection policy 'discard'"
+        'virtual rejection'    | [rejection: 'discard']       | [mode: 'virtual'] || "Invalid executor rejection policy 'discard'"
+        'virtual caller_runs'  | [rejection: 'caller_runs']   | [mode: 'virtual'] || 'not supported with virtual threads'
+    }
+
+    void 'The virtual thread cap follows the pool of the #description'() {
+        given:
+        DatabaseFactory databaseFactory = Stub(DatabaseFactory) {
+            getConfigurationFor('test') >> config
+        }
+        DataSourceFactory dataSourceFactory = Stub(DataSourceFactory) {
+            getConfigurationFor('test') >> [pool: [maximumPoolSize: 3]]
+            getConfigurationFor('shared') >> [pool: [maximumPoolSize: 7]]
+        }
+
+        expect:
+        new DatabaseExecutors(databaseFactory, dataSourceFactory).resolveMaximumPoolSize('test') == size
+
+        where:
+        description                     | config                              || size
+        'data source named after it'    | [:]                                 || 3
+        'data source it points to'      | [datasource: ' shared ']            || 7
+        'data source given by instance' | [datasource: [:] as DataSource]     || 10
+    }
+
+    void 'Unknown databases are rejected'() {
+        when:
+        executors([:]).getExecutor('unknown')
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    void 'Policy abort rejects callbacks once the queue is full'() {
+        given:
+        ExecutorService executor = executors([threads: 1, queue_size: 1, rejection: 'abort']).getExecutor('test')
+        CountDownLatch release = occupy(executor)
+        executor.execute {}
+
+        when:
+        executor.execute {}
+
+        then:
+        thrown(RejectedExecutionException)
+
+        cleanup:
+        release?.countDown()
+        executor?.shutdown()
+    }
+
+    void 'Policy caller_runs runs callbacks on the caller once the queue is full'() {
+        given:
+        ExecutorService executor = executors([threads: 1, queue_size: 1, rejection: 'caller_runs']).getExecutor('test')
+        CountDownLatch release = occupy(executor)
+        executor.execute {}
+        Thread runner = null
+
+        when:
+        executor.execute { runner = Thread.currentThread() }
+
+        then:
+        runner == Thread.currentThread()
+
+        cleanup:
+        release?.countDown()
+        executor?.shutdown()
+    }
+
+    void 'Policy caller_runs rejects callbacks once the executor is shut down'() {
+        given:
+        ExecutorService executor = executors([rejection: 'caller_runs']).getExecutor('test')
+        executor.shutdown()
+        boolean ran = false
+
+        when:
+        executor.execute { ran = true }
+
+        then:
+        thrown(RejectedExecutionException)
+        !ran
+    }
+
+    void 'Policy block makes the caller wait for room in the queue'() {
+        given:
+        ExecutorService executor = executors([threads: 1, queue_size: 1, rejection: 'block']).getExecutor('test')
+        CountDownLatch release = occupy(executor)
+        executor.execute {}
+        CountDownLatch submitted = new CountDownLatch(1)
+        Thread.start {
+            executor.execute {}
+            submitted.countDown()
+        }
+
+        expect:
+        !submitted.await(50, TimeUnit.MILLISECONDS)
+
+        when:
+        release.countDown()
+
+        then:
+        submitted.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        release?.countDown()
+        executor?.shutdown()
+    }
+}
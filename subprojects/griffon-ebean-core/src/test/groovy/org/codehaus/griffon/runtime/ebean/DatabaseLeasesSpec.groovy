@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import io.ebean.Database
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DatabaseLeasesSpec extends Specification {
+    void 'Nested callbacks are admitted after admission stops'() {
+        given:
+        DatabaseLeases leases = new DatabaseLeases()
+        Database database = Mock(Database)
+
+        when:
+        leases.enter(database)
+        leases.stopAdmitting()
+
+        then:
+        !leases.admitting
+        leases.admitted
+
+        when:
+        leases.exit(database)
+
+        then:
+        !leases.admitted
+        leases.getLeaseCount(database) == 0
+    }
+
+    void 'Admission is tracked per thread'() {
+        given:
+        DatabaseLeases leases = new DatabaseLeases()
+        Database database = Mock(Database)
+        CountDownLatch entered = new CountDownLatch(1)
+        CountDownLatch release = new CountDownLatch(1)
+        Thread worker = Thread.start {
+            leases.enter(database)
+            entered.countDown()
+            release.await()
+            leases.exit(database)
+        }
+        entered.await()
+
+        when:
+        leases.stopAdmitting()
+
+        then:
+        !leases.admitted
+        !leases.drain(database, 20, TimeUnit.MILLISECONDS)
+
+        when:
+        release.countDown()
+        worker.join()
+
+        then:
+        leases.drain(database, 1, TimeUnit.SECONDS)
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.core.env.Metadata
+import griffon.plugins.ebean.domain.Person
+import io.ebean.Database
+import io.ebean.plugin.BeanType
+import io.ebean.plugin.SpiServer
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class DatabaseMetadataCacheSpec extends Specification {
+    @Shared
+    private Path directory = Files.createTempDirectory('ebean-metadata')
+
+    void cleanupSpec() {
+        directory.toFile().deleteDir()
+    }
+
+    void 'Stored entity classes are loaded back'() {
+        given:
+        DatabaseMetadataCache cache = new DatabaseMetadataCache(metadata('1.0.0'))
+        Map<String, Object> config = [metadata_cache: [directory: directory.toString()]]
+
+        when:
+        cache.store('default', config, database(Person), 1000L)
+        DatabaseMetadataCache.Entry entry = cache.load('default', config)
+
+        then:
+        entry.classes == [Person]
+        entry.bootNanos == 1000L
+        Files.exists(directory.resolve('default.metadata'))
+    }
+
+    void 'Metadata written by another application version is stale'() {
+        given:
+        Map<String, Object> config = [metadata_cache: [directory: directory.toString()]]
+        new DatabaseMetadataCache(metadata('1.0.0')).store('default', config, database(Person), 1000L)
+
+        expect:
+        new DatabaseMetadataCache(metadata('1.0.1')).load('default', config) == null
+    }
+
+    @Unroll
+    void 'Metadata is ignored when #description'() {
+        given:
+        DatabaseMetadataCache cache = new DatabaseMetadataCache(metadata('1.0.0'))
+
+        when:
+        cache.store('ignored', config, database(Person), 1000L)
+
+        then:
+        !cache.isEnabled(config)
+        cache.load('ignored', config) == null
+        !Files.exists(directory.resolve('ignored.metadata'))
+
+        where:
+        description              | config
+        'not configured'         | [:]
+        'disabled'               | [metadata_cache: [enabled: false, directory: directory.toString()]]
+        'classes are configured' | [metadata_cache: [directory: directory.toString()], classes: [Person]]
+    }
+
+    void 'Evicted metadata is gone'() {
+        given:
+        DatabaseMetadataCache cache = new DatabaseMetadataCache(metadata('1.0.0'))
+        Map<String, Object> config = [metadata_cache: [directory: directory.toString()]]
+        cache.store('default', config, database(Person), 1000L)
+
+        when:
+        cache.evict('default', config)
+
+        then:
+        cache.load('default', config) == null
+    }
+
+    private Metadata metadata(String version) {
+        Metadata metadata = Stub(Metadata)
+        metadata.applicationName >> 'spec'
+        metadata.applicationVersion >> version
+        metadata
+    }
+
+    private Database database(Class<?>... types) {
+        SpiServer server = Stub(SpiServer)
+        server.beanTypes() >> types.collect { type ->
+            BeanType beanType = Stub(BeanType)
+            beanType.beanType >> type
+            beanType
+        }
+        Database database = Stub(Database)
+        database.pluginApi() >> server
+        database
+    }
+}
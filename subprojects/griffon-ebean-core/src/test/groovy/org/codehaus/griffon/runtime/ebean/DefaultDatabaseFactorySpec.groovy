@@ -0,0 +1,104 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.core.Configuration
+import griffon.core.GriffonApplication
+import griffon.core.injection.Injector
+import griffon.plugins.ebean.CacheInvalidationTransport
+import griffon.plugins.ebean.EbeanBootstrap
+import io.ebean.Database
+import org.codehaus.griffon.runtime.ebean.cluster.CacheInvalidationBroadcaster
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.lang.reflect.Field
+
+class DefaultDatabaseFactorySpec extends Specification {
+    private final List<String> closed = []
+    private final List<Database> destroyed = []
+
+    void 'Only the replicas acquired before a failure are released'() {
+        given:
+        DataSource replica = Stub(DataSource)
+        DefaultDatabaseFactory factory = new DefaultDatabaseFactory(Stub(Configuration), Stub(GriffonApplication)) {
+            @Override
+            protected DataSource getDataSource(String dataSourceName) {
+                if (dataSourceName == 'replica2') {
+                    throw new IllegalStateException('replica2 is not configured')
+                }
+                replica
+            }
+
+            @Override
+            protected void closeDataSource(String dataSourceName) {
+                closed << dataSourceName
+            }
+        }
+        Map<String, Object> config = [replicas: ['replica1', 'replica2', 'replica3']]
+
+        when:
+        factory.createReplicaDataSource(config, 'people', Stub(DataSource))
+
+        then:
+        thrown(IllegalStateException)
+        closed == ['replica1']
+    }
+
+    void 'A database whose bootstrap fails is destroyed'() {
+        given:
+        Database database = Stub(Database)
+        EbeanBootstrap bootstrap = Stub(EbeanBootstrap) {
+            init(_ as String, _ as Database) >> { throw new IllegalStateException('boom') }
+        }
+        DefaultDatabaseFactory factory = new DefaultDatabaseFactory(Stub(Configuration), Stub(GriffonApplication)) {
+            @Override
+            protected Map<String, Object> narrowConfig(String name) {
+                [:]
+            }
+
+            @Override
+            protected Database createDatabase(Map<String, Object> config, String databaseName, boolean replacement) {
+                database
+            }
+
+            @Override
+            void destroy(String name, Database instance) {
+                destroyed << instance
+            }
+        }
+        inject(factory, 'injector', Stub(Injector) {
+            getInstances(EbeanBootstrap) >> [bootstrap]
+        })
+        inject(factory, 'cacheInvalidationBroadcaster', new CacheInvalidationBroadcaster(Stub(Configuration), Stub(CacheInvalidationTransport)))
+
+        when:
+        factory.create('people')
+
+        then:
+        IllegalStateException e = thrown()
+        e.message == 'boom'
+        destroyed == [database]
+    }
+
+    private static void inject(DefaultDatabaseFactory factory, String fieldName, Object value) {
+        Field field = DefaultDatabaseFactory.getDeclaredField(fieldName)
+        field.accessible = true
+        field.set(factory, value)
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.core.Configuration
+import griffon.core.GriffonApplication
+import griffon.core.event.Event
+import griffon.core.event.EventRouter
+import griffon.plugins.datasource.DataSourceFactory
+import griffon.plugins.ebean.DatabaseCallback
+import griffon.plugins.ebean.DatabaseFactory
+import griffon.plugins.ebean.DatabaseHandler
+import griffon.plugins.ebean.DatabaseStorage
+import griffon.plugins.ebean.StartupMode
+import griffon.plugins.ebean.events.DatabaseAddedEvent
+import griffon.plugins.ebean.events.DatabaseRemovedEvent
+import griffon.plugins.ebean.exceptions.DatabaseShutdownException
+import griffon.util.CompositeResourceBundleBuilder
+import io.ebean.Database
+import io.ebean.Transaction
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.sql.Connection
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+@Timeout(10)
+class DefaultDatabaseRegistrySpec extends Specification {
+    private final DatabaseStorage databaseStorage = new DefaultDatabaseStorage()
+    private final DatabaseLeases databaseLeases = new DatabaseLeases()
+    private final Set<String> databaseNames = (['default', 'people'] as LinkedHashSet).asSynchronized()
+    private final List<Database> destroyed = [].asSynchronized()
+    private final List<String> connected = [].asSynchronized()
+    private final List<Event> events = [].asSynchronized()
+    private ReloadableResourceBundle resourceBundle
+
+    void 'A changed database is rebuilt and its previous instance is retired once drained'() {
+        given:
+        Database previous = Stub(Database)
+        Database replacement = connectable()
+        DefaultDatabaseRegistry registry = registry(replacement,
+            [people: [schema: 'none']],
+            [people: [schema: 'none', databaseBatchSize: 50]])
+        databaseStorage.set('people', previous)
+        databaseLeases.enter(previous)
+
+        when:
+        CompletableFuture<Set<String>> reload = registry.reloadDatabases()
+        waitUntil { databaseStorage.get('people') == replacement }
+        Thread.sleep(100)
+
+        then: 'new callbacks run on the replacement while the previous instance drains'
+        !reload.done
+        destroyed.empty
+
+        when:
+        databaseLeases.exit(previous)
+
+        then:
+        reload.get(5, TimeUnit.SECONDS) == ['people'] as Set
+        destroyed == [previous]
+    }
+
+    void 'Databases added to the configuration are registered and connected unless lazy'() {
+        given:
+        DefaultDatabaseRegistry registry = registry(connectable(),
+            [people: [schema: 'none']],
+            [people: [schema: 'none'], tenants: [connect_on_startup: true], archive: [connect_on_startup: false]])
+
+        when:
+        Set<String> reloaded = registry.reloadDatabases().get(5, TimeUnit.SECONDS)
+
+        then:
+        reloaded == ['tenants', 'archive'] as Set
+        databaseNames == ['default', 'people', 'tenants', 'archive'] as Set
+        connected == ['tenants']
+        destroyed.empty
+        events.findAll { it instanceof DatabaseAddedEvent }*.name as Set == ['tenants', 'archive'] as Set
+    }
+
+    void 'A database dropped from the configuration is closed instead of rebuilt'() {
+        given:
+        Database previous = Stub(Database)
+        DefaultDatabaseRegistry registry = registry(connectable(),
+            [people: [schema: 'none']],
+            [:])
+        databaseStorage.set('people', previous)
+
+        when:
+        Set<String> reloaded = registry.reloadDatabases().get(5, TimeUnit.SECONDS)
+
+        then:
+        reloaded == ['people'] as Set
+        databaseNames == ['default'] as Set
+        databaseStorage.get('people') == null
+        destroyed == [previous]
+        connected.empty
+        events*.class == [DatabaseRemovedEvent]
+        events*.name == ['people']
+    }
+
+    void 'Reloaded settings with unknown properties are rejected and the settings in use are kept'() {
+        given:
+        Database previous = Stub(Database)
+        Map<String, Object> databases = [people: [schema: 'none']]
+        DefaultDatabaseRegistry registry = registry(connectable(),
+            databases,
+            [people: [schema: 'none', bogus: true], tenants: [connect_on_startup: true]])
+        databaseStorage.set('people', previous)
+
+        when:
+        registry.reloadDatabases().get(5, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown()
+        e.cause instanceof IllegalArgumentException
+        resourceBundle.getObject('databases') == databases
+        databaseNames == ['default', 'people'] as Set
+        databaseStorage.get('people') == previous
+        connected.empty
+        destroyed.empty
+    }
+
+    void 'Operations requested after shutdown are rejected'() {
+        given:
+        DefaultDatabaseRegistry registry = registry(connectable(), [people: [schema: 'none']], [people: [schema: 'none']])
+
+        when:
+        boolean terminated = registry.shutdown(1000)
+        registry.reconfigureDatabase('people', [schema: 'none']).get(5, TimeUnit.SECONDS)
+
+        then:
+        terminated
+        ExecutionException e = thrown()
+        e.cause instanceof DatabaseShutdownException
+    }
+
+    private DefaultDatabaseRegistry registry(Database replacement, Map<String, Object> current, Map<String, Object> reloaded) {
+        CompositeResourceBundleBuilder builder = Stub(CompositeResourceBundleBuilder)
+        builder.create('Ebean') >>> [bundle(databases: current), bundle(databases: reloaded)]
+        resourceBundle = new ReloadableResourceBundle('Ebean', builder)
+
+        DatabaseFactory databaseFactory = Stub(DatabaseFactory) {
+            getDatabaseNames() >> databaseNames
+            getConfiguration() >> Stub(Configuration)
+            getConfigurationFor(_ as String) >> { String name -> databases()[name] ?: [:] }
+            getStartupMode(_ as String) >> { String name -> StartupMode.of(databases()[name]?.connect_on_startup) }
+            refreshDatabaseNames() >> {
+                databases().each { String name, Map<String, Object> config ->
+                    if (config.containsKey('bogus')) {
+                        throw new IllegalArgumentException("Unknown properties [bogus] in configuration of database '$name'")
+                    }
+                }
+                databaseNames.retainAll { String name -> name == 'default' || databases().containsKey(name) }
+                Set<String> added = new LinkedHashSet<>(databases().keySet())
+                added.removeAll(databaseNames)
+                databaseNames.addAll(added)
+                added
+            }
+            createReplacement('people') >> replacement
+            destroy(_ as String, _ as Database) >> { String name, Database database -> destroyed << database }
+        }
+        Database added = Stub(Database)
+        GriffonApplication application = Stub(GriffonApplication) {
+            getEventRouter() >> Stub(EventRouter) {
+                publishEvent(_ as Event) >> { Event event -> events << event }
+            }
+        }
+        DatabaseHandler databaseHandler = Stub(DatabaseHandler) {
+            withEbean(_ as String, _ as DatabaseCallback) >> { String name, DatabaseCallback callback ->
+                connected << name
+                callback.handle(name, added)
+            }
+        }
+
+        new DefaultDatabaseRegistry(databaseFactory, databaseStorage, databaseHandler,
+            new DatabaseExecutors(databaseFactory, Stub(DataSourceFactory)),
+            new DatabaseBulkheads(databaseFactory),
+            new DatabaseTxDefaults(databaseFactory),
+            databaseLeases,
+            resourceBundle,
+            application)
+    }
+
+    private Map<String, Map<String, Object>> databases() {
+        resourceBundle.getObject('databases') as Map<String, Map<String, Object>>
+    }
+
+    private Database connectable() {
+        Stub(Database) {
+            createTransaction() >> Stub(Transaction) {
+                getConnection() >> Stub(Connection) {
+                    isValid(_) >> true
+                }
+            }
+        }
+    }
+
+    private static void waitUntil(Closure<Boolean> condition) {
+        while (!condition()) {
+            Thread.sleep(10)
+        }
+    }
+
+    private static ResourceBundle bundle(Map<String, Object> entries) {
+        new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                entries.collect { key, value -> [key, value] as Object[] } as Object[][]
+            }
+        }
+    }
+}
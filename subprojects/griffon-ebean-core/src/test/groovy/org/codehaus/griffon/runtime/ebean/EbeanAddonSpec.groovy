@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.core.Configuration
+import griffon.plugins.ebean.DatabaseCallback
+import griffon.plugins.ebean.DatabaseFactory
+import griffon.plugins.ebean.DatabaseHandler
+import griffon.plugins.ebean.StartupMode
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class EbeanAddonSpec extends Specification {
+    private final List<String> connected = new CopyOnWriteArrayList<>()
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'Eager databases connect during startup, background ones on their own threads and lazy ones on first use'() {
+        given:
+        CountDownLatch release = new CountDownLatch(1)
+        EbeanAddon addon = addon([eager: true, warm: 'background', lazy: false], null) { String databaseName ->
+            if (databaseName == 'warm') {
+                release.await()
+            }
+        }
+
+        when:
+        addon.handleStartupStartEvent(null)
+
+        then: 'startup does not wait for background databases'
+        connected == ['eager']
+
+        when:
+        release.countDown()
+
+        then:
+        conditions.eventually {
+            assert connected == ['eager', 'warm']
+        }
+    }
+
+    void 'Eager databases connect in parallel when enabled'() {
+        given:
+        CountDownLatch together = new CountDownLatch(2)
+        EbeanAddon addon = addon([one: true, two: true, lazy: false], [parallel: true, threads: 2]) { String databaseName ->
+            together.countDown()
+            assert together.await(5, TimeUnit.SECONDS)
+        }
+
+        when:
+        addon.handleStartupStartEvent(null)
+
+        then:
+        connected.sort() == ['one', 'two']
+    }
+
+    private EbeanAddon addon(Map<String, Object> startupModes, Map<String, Object> startup, Closure behaviour) {
+        DatabaseFactory databaseFactory = Stub(DatabaseFactory) {
+            getDatabaseNames() >> new LinkedHashSet<>(startupModes.keySet())
+            getStartupMode(_ as String) >> { String databaseName -> StartupMode.of(startupModes[databaseName]) }
+        }
+        DatabaseHandler databaseHandler = Stub(DatabaseHandler) {
+            withEbean(_ as String, _ as DatabaseCallback) >> { String databaseName, DatabaseCallback callback ->
+                behaviour.call(databaseName)
+                connected << databaseName
+                null
+            }
+        }
+        Configuration configuration = Stub(Configuration) {
+            get('startup') >> startup
+        }
+
+        EbeanAddon addon = new EbeanAddon()
+        addon.@databaseFactory = databaseFactory
+        addon.@databaseHandler = databaseHandler
+        addon.@configuration = configuration
+        addon
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.TimeUnit
+
+@Unroll
+class LatencyHistogramSpec extends Specification {
+    void 'Value #value falls in a bucket whose upper bound is #upperBound'() {
+        expect:
+        LatencyHistogram.upperBoundOf(LatencyHistogram.bucketFor(value)) == upperBound
+
+        where:
+        value | upperBound
+        0     | 0
+        3     | 3
+        7     | 7
+        8     | 9
+        9     | 9
+        15    | 15
+        100   | 111
+        1000  | 1023
+    }
+
+    void 'Percentiles are computed from recorded values'() {
+        given:
+        LatencyHistogram histogram = new LatencyHistogram()
+
+        when:
+        (1..100).each { histogram.record(TimeUnit.MILLISECONDS.toNanos(it)) }
+
+        then:
+        histogram.count == 100
+        histogram.maxMicros == 100000
+        within(histogram.getPercentileMicros(0.50), 50000)
+        within(histogram.getPercentileMicros(0.99), 99000)
+        histogram.getPercentileMicros(1.0) == 100000
+    }
+
+    void 'Empty histogram reports zero'() {
+        expect:
+        new LatencyHistogram().getPercentileMicros(0.99) == 0
+    }
+
+    private static boolean within(long actual, long expected) {
+        actual >= expected && actual <= expected * 1.25
+    }
+}
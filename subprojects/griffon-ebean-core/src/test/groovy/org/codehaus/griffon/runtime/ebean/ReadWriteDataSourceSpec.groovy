@@ -0,0 +1,109 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.Connection
+
+class ReadWriteDataSourceSpec extends Specification {
+    private final Connection primaryA = Stub(Connection)
+    private final Connection replicaA = Stub(Connection)
+    private final Connection primaryB = Stub(Connection)
+    private final Connection replicaB = Stub(Connection)
+    private final ReadWriteDataSource a = new ReadWriteDataSource('a', dataSourceOf(primaryA), dataSourceOf(replicaA))
+    private final ReadWriteDataSource b = new ReadWriteDataSource('b', dataSourceOf(primaryB), dataSourceOf(replicaB))
+
+    void cleanup() {
+        ReadWriteDataSource.restoreRouting(null)
+    }
+
+    void 'Connections come from the primary unless the database is routed to its replicas'() {
+        expect:
+        a.connection == primaryA
+        b.connection == primaryB
+    }
+
+    void 'Routing a database to its replicas leaves other databases on their primary'() {
+        when:
+        Set<String> previous = ReadWriteDataSource.routeToReplicas('a', true)
+
+        then:
+        a.connection == replicaA
+        b.connection == primaryB
+
+        when:
+        ReadWriteDataSource.restoreRouting(previous)
+
+        then:
+        a.connection == primaryA
+    }
+
+    void 'A nested call that is not read-only goes back to the primary'() {
+        given:
+        Set<String> outer = ReadWriteDataSource.routeToReplicas('a', true)
+
+        when:
+        Set<String> inner = ReadWriteDataSource.routeToReplicas('a', false)
+
+        then:
+        a.connection == primaryA
+
+        when:
+        ReadWriteDataSource.restoreRouting(inner)
+
+        then:
+        a.connection == replicaA
+
+        when:
+        ReadWriteDataSource.restoreRouting(outer)
+
+        then:
+        a.connection == primaryA
+    }
+
+    void 'Nested read-only calls on several databases are routed independently'() {
+        given:
+        Set<String> outer = ReadWriteDataSource.routeToReplicas('a', true)
+        Set<String> inner = ReadWriteDataSource.routeToReplicas('b', true)
+
+        expect:
+        a.connection == replicaA
+        b.connection == replicaB
+
+        when:
+        ReadWriteDataSource.restoreRouting(inner)
+
+        then:
+        a.connection == replicaA
+        b.connection == primaryB
+
+        when:
+        ReadWriteDataSource.restoreRouting(outer)
+
+        then:
+        a.connection == primaryA
+    }
+
+    private DataSource dataSourceOf(Connection connection) {
+        DataSource dataSource = Stub(DataSource)
+        dataSource.connection >> connection
+        dataSource
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.util.CompositeResourceBundleBuilder
+import spock.lang.Specification
+
+class ReloadableResourceBundleSpec extends Specification {
+    void 'Reloading picks up changed, added and removed keys'() {
+        given:
+        CompositeResourceBundleBuilder builder = Mock(CompositeResourceBundleBuilder)
+        builder.create('Ebean') >>> [bundle(schema: 'create', shards: 'a'), bundle(schema: 'none', startup: 'parallel')]
+
+        when:
+        ReloadableResourceBundle resourceBundle = new ReloadableResourceBundle('Ebean', builder)
+
+        then:
+        resourceBundle.getObject('schema') == 'create'
+        resourceBundle.containsKey('shards')
+        resourceBundle.keySet() == ['schema', 'shards'] as Set
+
+        when:
+        resourceBundle.reload()
+
+        then:
+        resourceBundle.getObject('schema') == 'none'
+        resourceBundle.getObject('startup') == 'parallel'
+        !resourceBundle.containsKey('shards')
+        resourceBundle.keySet() == ['schema', 'startup'] as Set
+    }
+
+    private static ResourceBundle bundle(Map<String, Object> entries) {
+        new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                entries.collect { key, value -> [key, value] as Object[] } as Object[][]
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.sql.Statement
+
+class ReplicaDataSourceSpec extends Specification {
+    private final PollingConditions conditions = new PollingConditions(timeout: 5)
+    private final List<String> lagQueryThreads = [].asSynchronized()
+    void 'Round robin balancing alternates between replicas'() {
+        given:
+        Connection first = Mock(Connection)
+        Connection second = Mock(Connection)
+        ReplicaDataSource dataSource = replicas(ReplicaDataSource.Balancing.ROUND_ROBIN, null, [dataSourceOf(first), dataSourceOf(second)])
+
+        expect:
+        (1..4).collect { dataSource.connection } == [first, second, first, second]
+    }
+
+    void 'A failing replica is skipped'() {
+        given:
+        Connection healthy = Mock(Connection)
+        ReplicaDataSource dataSource = replicas(ReplicaDataSource.Balancing.ROUND_ROBIN, null, [failingDataSource(), dataSourceOf(healthy)])
+
+        expect:
+        (1..3).collect { dataSource.connection } == [healthy, healthy, healthy]
+        dataSource.availableReplicas == 1
+    }
+
+    void 'Connections come from the primary when no replica is available'() {
+        given:
+        Connection primary = Mock(Connection)
+        ReplicaDataSource dataSource = replicas(ReplicaDataSource.Balancing.ROUND_ROBIN, dataSourceOf(primary), [failingDataSource()])
+
+        expect:
+        dataSource.connection == primary
+    }
+
+    void 'Without fallback the replica failure is reported'() {
+        given:
+        ReplicaDataSource dataSource = replicas(ReplicaDataSource.Balancing.ROUND_ROBIN, null, [failingDataSource()])
+
+        when:
+        dataSource.connection
+
+        then:
+        thrown(SQLException)
+    }
+
+    void 'Least busy balancing picks the replica with fewer open connections'() {
+        given:
+        ReplicaDataSource dataSource = replicas(ReplicaDataSource.Balancing.LEAST_BUSY, null,
+            [dataSourceOf(Mock(Connection)), dataSourceOf(Mock(Connection))])
+
+        when:
+        Connection first = dataSource.connection
+        Connection second = dataSource.connection
+        first.close()
+        Connection third = dataSource.connection
+
+        then:
+        first.unwrap(Connection) != second.unwrap(Connection)
+        third.unwrap(Connection) == first.unwrap(Connection)
+    }
+
+    void 'Lagging replicas are skipped based on the lag checked in the background'() {
+        given:
+        Connection lagging = Stub(Connection)
+        Connection healthy = Stub(Connection)
+        ReplicaDataSource dataSource = new ReplicaDataSource('test', ['replica1', 'replica2'],
+            [lagReporting(lagging, 10000L), lagReporting(healthy, 0L)], null,
+            ReplicaDataSource.Balancing.ROUND_ROBIN, 60000L, 'select lag', 5000L, 60000L)
+
+        when:
+        conditions.eventually {
+            assert dataSource.availableReplicas == 1
+        }
+        List<Connection> connections = (1..4).collect { dataSource.connection }
+
+        then:
+        connections == [healthy, healthy, healthy, healthy]
+        lagQueryThreads.size() == 2
+        lagQueryThreads.every { it.startsWith('ebean-replica-lag-test') }
+
+        cleanup:
+        dataSource?.close()
+    }
+
+    void 'Closing the data source stops the lag checks'() {
+        given:
+        ReplicaDataSource dataSource = new ReplicaDataSource('closing', ['replica1'],
+            [lagReporting(Stub(Connection), 0L)], null,
+            ReplicaDataSource.Balancing.ROUND_ROBIN, 60000L, 'select lag', 5000L, 10L)
+
+        when:
+        dataSource.close()
+
+        then:
+        conditions.eventually {
+            assert !Thread.allStackTraces.keySet().any { it.name.startsWith('ebean-replica-lag-closing') && it.alive }
+        }
+    }
+
+    private ReplicaDataSource replicas(ReplicaDataSource.Balancing balancing, DataSource primary, List<DataSource> replicas) {
+        new ReplicaDataSource('test', (1..replicas.size()).collect { "replica$it".toString() }, replicas, primary,
+            balancing, 60000L, null, 0L, 0L)
+    }
+
+    private DataSource dataSourceOf(Connection connection) {
+        DataSource dataSource = Stub(DataSource)
+        dataSource.connection >> connection
+        connection.unwrap(Connection) >> connection
+        dataSource
+    }
+
+    private DataSource lagReporting(Connection connection, long lag) {
+        ResultSet resultSet = Stub(ResultSet) {
+            next() >> true
+            getLong(1) >> lag
+        }
+        Statement statement = Stub(Statement) {
+            executeQuery(_) >> {
+                lagQueryThreads << Thread.currentThread().name
+                resultSet
+            }
+        }
+        connection.createStatement() >> statement
+        dataSourceOf(connection)
+    }
+
+    private DataSource failingDataSource() {
+        DataSource dataSource = Stub(DataSource)
+        dataSource.connection >> { throw new SQLException('replica is down') }
+        dataSource
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.ResultCacheOptions
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ResultCacheSpec extends Specification {
+    void 'Results are served from the cache until one of their tables is modified'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        AtomicInteger loads = new AtomicInteger()
+        ResultCacheOptions countries = ResultCacheOptions.of('countries').withTables('COUNTRY')
+        ResultCacheOptions people = ResultCacheOptions.of('people').withTables('person')
+
+        when:
+        2.times { cache.get(countries, { loads.incrementAndGet(); ['nl', 'mx'] } as Callable) }
+        cache.get(people, { loads.incrementAndGet(); [] } as Callable)
+
+        then:
+        loads.get() == 2
+        cache.statistics.hitCount == 1
+        cache.statistics.missCount == 2
+
+        when:
+        cache.invalidate(['country'] as Set)
+        cache.get(countries, { loads.incrementAndGet(); ['nl'] } as Callable)
+        cache.get(people, { loads.incrementAndGet(); [] } as Callable)
+
+        then:
+        loads.get() == 3
+        cache.statistics.invalidationCount == 1
+    }
+
+    void 'Results without tables are dropped on any modification'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        cache.get(ResultCacheOptions.of('total'), { 42 } as Callable)
+
+        when:
+        cache.invalidate(['anything'] as Set)
+
+        then:
+        cache.statistics.size == 0
+    }
+
+    void 'Least recently used results are evicted by weight'() {
+        given:
+        ResultCache cache = new ResultCache('test', 5, 60000)
+
+        when:
+        cache.get(ResultCacheOptions.of('a'), { [1, 2] } as Callable)
+        cache.get(ResultCacheOptions.of('b'), { [1, 2] } as Callable)
+        cache.get(ResultCacheOptions.of('a'), { [1, 2] } as Callable)
+        cache.get(ResultCacheOptions.of('c'), { [1, 2] } as Callable)
+        cache.get(ResultCacheOptions.of('too_big'), { (1..10).toList() } as Callable)
+
+        then:
+        cache.statistics.size == 2
+        cache.statistics.weight == 4
+        cache.statistics.evictionCount == 1
+        cache.get(ResultCacheOptions.of('a'), { [] } as Callable) == [1, 2]
+        cache.get(ResultCacheOptions.of('b'), { [] } as Callable) == []
+    }
+
+    void 'Expired results are loaded again'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        cache.get(ResultCacheOptions.of('a').withTtl(1), { 'first' } as Callable)
+        Thread.sleep(10)
+
+        expect:
+        cache.get(ResultCacheOptions.of('a'), { 'second' } as Callable) == 'second'
+    }
+
+    void 'Concurrent misses share a single load'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        ExecutorService executor = Executors.newFixedThreadPool(4)
+        CountDownLatch release = new CountDownLatch(1)
+        AtomicInteger loads = new AtomicInteger()
+        Callable<String> loader = {
+            loads.incrementAndGet()
+            release.await()
+            'value'
+        } as Callable
+
+        when:
+        List<Future<String>> futures = (1..4).collect {
+            executor.submit({ cache.get(ResultCacheOptions.of('key'), loader) } as Callable<String>)
+        }
+        while (cache.statistics.missCount < 4) {
+            Thread.sleep(5)
+        }
+        release.countDown()
+
+        then:
+        futures*.get(5, TimeUnit.SECONDS) == ['value'] * 4
+        loads.get() == 1
+        cache.statistics.sharedLoadCount == 3
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    void 'Results read while their tables were modified are not stored'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        ResultCacheOptions options = ResultCacheOptions.of('countries').withTables('country')
+
+        when:
+        cache.get(options, {
+            cache.invalidate(['country'] as Set)
+            ['stale']
+        } as Callable)
+
+        then:
+        cache.statistics.size == 0
+    }
+
+    void 'Load failures are reported to every waiting caller'() {
+        given:
+        ResultCache cache = new ResultCache('test', 100, 60000)
+
+        when:
+        cache.get(ResultCacheOptions.of('key'), { throw new IllegalStateException('boom') } as Callable)
+
+        then:
+        thrown(IllegalStateException)
+        cache.statistics.loadFailureCount == 1
+        cache.statistics.size == 0
+    }
+
+    void 'Table names match regardless of the default locale'() {
+        given:
+        Locale defaultLocale = Locale.default
+        Locale.default = new Locale('tr', 'TR')
+        ResultCache cache = new ResultCache('test', 100, 60000)
+        AtomicInteger loads = new AtomicInteger()
+        ResultCacheOptions items = ResultCacheOptions.of('items').withTables('ITEMS')
+
+        when:
+        cache.get(items, { loads.incrementAndGet(); [] } as Callable)
+        cache.invalidate(['items'] as Set)
+        cache.get(items, { loads.incrementAndGet(); [] } as Callable)
+
+        then:
+        loads.get() == 2
+
+        cleanup:
+        Locale.default = defaultLocale
+    }
+
+    void 'Closing a previous instance leaves the cache of its replacement untouched'() {
+        given:
+        DatabaseResultCaches caches = new DatabaseResultCaches()
+        ResultCache previous = caches.configure('test', true)
+        ResultCache replacement = caches.configure('test', true)
+        ResultCacheOptions countries = ResultCacheOptions.of('countries')
+        replacement.get(countries, { ['nl'] } as Callable)
+
+        when:
+        caches.clear('test', previous)
+
+        then:
+        caches.getCache('test').is(replacement)
+        replacement.get(countries, { throw new IllegalStateException('should have been cached') } as Callable) == ['nl']
+
+        when:
+        caches.clear('test', replacement)
+
+        then:
+        caches.getCache('test') == null
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean
+
+import griffon.plugins.ebean.DatabaseCallback
+import griffon.plugins.ebean.DatabaseHandler
+import griffon.plugins.ebean.DatabaseMetricsRecorder
+import griffon.plugins.ebean.exceptions.RuntimeDatabaseException
+import griffon.plugins.ebean.exceptions.WriteBehindOverflowException
+import io.ebean.Database
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class WriteBehindQueueSpec extends Specification {
+    private final List<List<Object>> batches = new CopyOnWriteArrayList<>()
+
+    private DatabaseHandler databaseHandler() {
+        Database database = Stub(Database) {
+            saveAll(_) >> { args ->
+                List<Object> beans = new ArrayList<>(args[0] as Collection)
+                if (beans.contains('bad')) throw new IllegalStateException('bad')
+                batches << beans
+                beans.size()
+            }
+        }
+        Stub(DatabaseHandler) {
+            withEbeanTransaction(_, _, _) >> { args ->
+                try {
+                    (args[2] as DatabaseCallback).handle(args[0] as String, database)
+                } catch (RuntimeException e) {
+                    throw new RuntimeDatabaseException(args[0] as String, e)
+                }
+            }
+        }
+    }
+
+    private WriteBehindQueue queue(int maxBatch, int capacity, WriteBehindQueue.Overflow overflow, long offerTimeout = 0) {
+        new WriteBehindQueue('test', databaseHandler(), Stub(DatabaseMetricsRecorder), maxBatch, 10000, capacity, overflow, offerTimeout)
+    }
+
+    void 'Repeated beans are combined and a full batch is written without waiting for the window'() {
+        given:
+        WriteBehindQueue queue = queue(2, 10, WriteBehindQueue.Overflow.BLOCK)
+        Object bean = new Object()
+
+        when:
+        queue.offer(bean)
+        queue.offer(bean)
+        queue.offer('other')
+        queue.flush().get(2, TimeUnit.SECONDS)
+
+        then:
+        batches.flatten() == [bean, 'other']
+        queue.statistics.acceptedCount == 3
+        queue.statistics.combinedCount == 1
+        queue.statistics.writtenCount == 2
+
+        cleanup:
+        queue.close(1000)
+    }
+
+    void 'Flush completes once every bean offered before it has been written'() {
+        given:
+        WriteBehindQueue queue = queue(100, 1000, WriteBehindQueue.Overflow.BLOCK)
+
+        when:
+        (1..5).each { queue.offer(it) }
+        queue.flush().get(2, TimeUnit.SECONDS)
+
+        then:
+        batches == [[1, 2, 3, 4, 5]]
+        queue.depth == 0
+
+        cleanup:
+        queue.close(1000)
+    }
+
+    void 'A failing batch fails the pending flush'() {
+        given:
+        WriteBehindQueue queue = queue(100, 1000, WriteBehindQueue.Overflow.BLOCK)
+
+        when:
+        queue.offer('bad')
+        queue.flush().get(2, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException e = thrown(ExecutionException)
+        e.cause instanceof RuntimeDatabaseException
+        queue.statistics.failedCount == 1
+
+        cleanup:
+        queue.close(1000)
+    }
+
+    void 'Overflow policy drop_newest rejects beans once the queue is full'() {
+        given:
+        WriteBehindQueue queue = queue(100, 3, WriteBehindQueue.Overflow.DROP_NEWEST)
+
+        expect:
+        (1..5).collect { queue.offer(it) } == [true, true, true, false, false]
+        queue.statistics.droppedCount == 2
+
+        cleanup:
+        queue.close(1000)
+    }
+
+    void 'Overflow policy drop_oldest evicts the oldest queued beans'() {
+        given:
+        WriteBehindQueue queue = queue(100, 3, WriteBehindQueue.Overflow.DROP_OLDEST)
+
+        when:
+        (1..5).each { queue.offer(it) }
+        queue.flush().get(2, TimeUnit.SECONDS)
+
+        then:
+        batches == [[3, 4, 5]]
+        queue.statistics.droppedCount == 2
+
+        cleanup:
+        queue.close(1000)
+    }
+
+    void 'Overflow policy #overflow throws once the queue is full'() {
+        given:
+        WriteBehindQueue queue = queue(100, 2, overflow, 50)
+
+        when:
+        3.times { queue.offer(it) }
+
+        then:
+        thrown(WriteBehindOverflowException)
+
+        cleanup:
+        queue.close(1000)
+
+        where:
+        overflow << [WriteBehindQueue.Overflow.FAIL, WriteBehindQueue.Overflow.BLOCK]
+    }
+
+    void 'Close writes pending beans and rejects further offers'() {
+        given:
+        WriteBehindQueue queue = queue(100, 1000, WriteBehindQueue.Overflow.BLOCK)
+
+        when:
+        (1..3).each { queue.offer(it) }
+        boolean drained = queue.close(2000)
+
+        then:
+        drained
+        batches.flatten() == [1, 2, 3]
+
+        when:
+        queue.offer(4)
+
+        then:
+        thrown(WriteBehindOverflowException)
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cache
+
+import io.ebean.cache.ServerCacheConfig
+import io.ebean.cache.ServerCacheOptions
+import io.ebean.cache.ServerCacheType
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BoundedServerCacheSpec extends Specification {
+    @Unroll
+    void 'Values round trip through the #store store'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings(store: store))
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.BEAN))
+        UUID uuid = UUID.randomUUID()
+
+        when:
+        cache.put(1, 'one')
+        cache.put(2, 2L)
+        cache.put(3, uuid)
+        cache.put(4, [a: 1, b: [1, 2, 3]])
+        cache.put(5, 'x' * 1000)
+
+        then:
+        cache.get(1) == 'one'
+        cache.get(2) == 2L
+        cache.get(3) == uuid
+        cache.get(4) == [a: 1, b: [1, 2, 3]]
+        cache.get(5) == 'x' * 1000
+        cache.get(6) == null
+        cache.size() == 5
+        cache.hitRatio == 83
+
+        when:
+        cache.remove(5)
+
+        then:
+        cache.get(5) == null
+        factory.getCacheStatistics()[0].offHeap
+        factory.getCacheStatistics()[0].removeCount == 1
+
+        cleanup:
+        factory.close()
+
+        where:
+        store << ['direct', 'mapped']
+    }
+
+    void 'Query caches are kept on the heap'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings([:]))
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.QUERY))
+        Object value = new Object()
+
+        when:
+        cache.put('key', value)
+
+        then:
+        cache.get('key').is(value)
+        !factory.getCacheStatistics()[0].offHeap
+        factory.usedBytes == 0
+
+        cleanup:
+        factory.close()
+    }
+
+    void 'The least recently used entry is evicted when max_entries is reached'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings(max_entries: 2))
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.BEAN))
+
+        when:
+        cache.put(1, 'one')
+        cache.put(2, 'two')
+        cache.get(1)
+        cache.put(3, 'three')
+
+        then:
+        cache.get(1) == 'one'
+        cache.get(2) == null
+        cache.get(3) == 'three'
+        cache.cacheStatistics.evictionCount == 1
+
+        cleanup:
+        factory.close()
+    }
+
+    void 'Entries are evicted when the store runs out of memory'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings(max_memory: 4096, block_size: 1024))
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.BEAN))
+
+        when:
+        (1..8).each { cache.put(it, 'x' * 1500) }
+
+        then:
+        cache.size() == 2
+        cache.get(8) != null
+        factory.usedBytes <= factory.capacity
+
+        when: 'the value does not fit at all'
+        cache.put(9, 'x' * 8192)
+
+        then:
+        cache.get(9) == null
+        cache.size() == 2
+
+        cleanup:
+        factory.close()
+    }
+
+    void 'Expired entries are dropped on access'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings([:]))
+        ServerCacheOptions options = new ServerCacheOptions()
+        options.maxSecsToLive = 1
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.BEAN, options))
+
+        when:
+        cache.put(1, 'one')
+        Thread.sleep(1100)
+
+        then:
+        cache.get(1) == null
+        cache.cacheStatistics.expirationCount == 1
+        factory.usedBytes == 0
+
+        cleanup:
+        factory.close()
+    }
+
+    void 'Values that are not serializable are skipped'() {
+        given:
+        OffHeapServerCacheFactory factory = new OffHeapServerCacheFactory('default', settings([:]))
+        BoundedServerCache cache = factory.createCache(config(ServerCacheType.BEAN))
+
+        when:
+        cache.put(1, new Object())
+
+        then:
+        cache.get(1) == null
+        cache.size() == 0
+
+        cleanup:
+        factory.close()
+    }
+
+    void 'Settings accept a flag or a map'() {
+        expect:
+        OffHeapCacheSettings.of('default', null) == null
+        OffHeapCacheSettings.of('default', false) == null
+        OffHeapCacheSettings.of('default', [enabled: false]) == null
+        OffHeapCacheSettings.of('default', true).maxMemory == 64L * 1024 * 1024
+        OffHeapCacheSettings.of('default', [max_memory: '16m']).maxMemory == 16L * 1024 * 1024
+        OffHeapCacheSettings.of('default', [store: 'mapped']).store == OffHeapCacheSettings.Store.MAPPED
+    }
+
+    private static OffHeapCacheSettings settings(Map<String, Object> config) {
+        OffHeapCacheSettings.of('default', config)
+    }
+
+    private static ServerCacheConfig config(ServerCacheType type, ServerCacheOptions options = new ServerCacheOptions()) {
+        new ServerCacheConfig(type, 'cache-' + type, type.name(), options, null, null)
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.cluster
+
+import griffon.core.Configuration
+import griffon.plugins.ebean.CacheInvalidation
+import griffon.plugins.ebean.CacheInvalidationTransport
+import io.ebean.Database
+import io.ebean.cache.ServerCacheNotification
+import io.ebean.cache.ServerCacheNotify
+import spock.lang.Specification
+
+class CacheInvalidationBroadcasterSpec extends Specification {
+    void 'Local table modifications are applied on the other nodes'() {
+        given:
+        CacheInvalidationBroadcaster node1 = broadcaster('spec-1')
+        CacheInvalidationBroadcaster node2 = broadcaster('spec-1')
+        Database database1 = Mock(Database)
+        Database database2 = Mock(Database)
+        ServerCacheNotify local = Mock(ServerCacheNotify)
+        node1.register('default', database1)
+        node2.register('default', database2)
+        ServerCacheNotify notify = node1.decorate('default', local)
+        ServerCacheNotification notification = new ServerCacheNotification(System.currentTimeMillis(), ['person', 'address'] as Set)
+
+        when:
+        notify.notify(notification)
+        notify.notify(new ServerCacheNotification(System.currentTimeMillis(), ['person'] as Set))
+        node1.flush()
+
+        then:
+        1 * local.notify(notification)
+        1 * database2.externalModification('person', true, true, true)
+        1 * database2.externalModification('address', true, true, true)
+        0 * database1.externalModification(*_)
+        node1.sentCount == 1
+        node2.receivedCount == 1
+
+        cleanup:
+        node1.shutdown()
+        node2.shutdown()
+    }
+
+    void 'Remote invalidations are not sent back'() {
+        given:
+        CacheInvalidationBroadcaster node1 = broadcaster('spec-2')
+        CacheInvalidationBroadcaster node2 = broadcaster('spec-2')
+        Database database1 = Mock(Database)
+        Database database2 = Mock(Database)
+        ServerCacheNotify notify2 = node2.decorate('default', Mock(ServerCacheNotify))
+        node1.register('default', database1)
+        node2.register('default', database2)
+
+        when:
+        node1.decorate('default', Mock(ServerCacheNotify)).notify(new ServerCacheNotification(0L, ['person'] as Set))
+        node1.flush()
+        node2.flush()
+
+        then:
+        // Ebean notifies the local caches of the external modification
+        1 * database2.externalModification('person', true, true, true) >> {
+            notify2.notify(new ServerCacheNotification(0L, ['person'] as Set))
+        }
+        0 * database1.externalModification(*_)
+        node2.sentCount == 0
+
+        cleanup:
+        node1.shutdown()
+        node2.shutdown()
+    }
+
+    void 'Invalidations for unknown databases are ignored'() {
+        given:
+        CacheInvalidationBroadcaster node1 = broadcaster('spec-3')
+        CacheInvalidationBroadcaster node2 = broadcaster('spec-3')
+        Database database1 = Mock(Database)
+        Database database2 = Mock(Database)
+        node1.register('people', database1)
+        node2.register('default', database2)
+
+        when:
+        node1.decorate('people', Mock(ServerCacheNotify)).notify(new ServerCacheNotification(0L, ['person'] as Set))
+        node1.flush()
+
+        then:
+        0 * database2.externalModification(*_)
+        node2.receivedCount == 0
+
+        cleanup:
+        node1.shutdown()
+        node2.shutdown()
+    }
+
+    void 'Nothing is sent when the cluster block is missing'() {
+        given:
+        Configuration configuration = Mock(Configuration)
+        CacheInvalidationTransport transport = Mock(CacheInvalidationTransport)
+        CacheInvalidationBroadcaster broadcaster = new CacheInvalidationBroadcaster(configuration, transport)
+
+        when:
+        broadcaster.register('default', Mock(Database))
+        broadcaster.decorate('default', Mock(ServerCacheNotify)).notify(new ServerCacheNotification(0L, ['person'] as Set))
+        broadcaster.flush()
+
+        then:
+        !broadcaster.enabled
+        0 * transport.open(_)
+        0 * transport.send(_)
+    }
+
+    void 'Multicast datagrams round trip between nodes'() {
+        given:
+        MulticastCacheInvalidationTransport node1 = new MulticastCacheInvalidationTransport(InetAddress.getByName('239.255.27.1'), 4446, 1)
+        MulticastCacheInvalidationTransport node2 = new MulticastCacheInvalidationTransport(InetAddress.getByName('239.255.27.1'), 4446, 1)
+        List<CacheInvalidation> invalidations = [
+            new CacheInvalidation('default', ['person', 'address'] as Set),
+            new CacheInvalidation('people', (1..2000).collect { 'table_' + it } as Set)
+        ]
+
+        when:
+        List<byte[]> datagrams = node1.encode(invalidations)
+        List<CacheInvalidation> received = datagrams.collectMany { node2.decode(it, it.length) }
+
+        then:
+        datagrams.size() > 1
+        datagrams.every { it.length <= 8192 }
+        received.groupBy { it.databaseName }.collectEntries { k, v -> [(k): v*.tables.flatten() as Set] } ==
+            [default: ['person', 'address'] as Set, people: (1..2000).collect { 'table_' + it } as Set]
+        datagrams.every { node1.decode(it, it.length).isEmpty() }
+    }
+
+    private CacheInvalidationBroadcaster broadcaster(String channel) {
+        Configuration configuration = Mock(Configuration)
+        configuration.get('cluster') >> [transport: 'loopback', batch_interval: 60000]
+        new CacheInvalidationBroadcaster(configuration, new LoopbackCacheInvalidationTransport(channel))
+    }
+}
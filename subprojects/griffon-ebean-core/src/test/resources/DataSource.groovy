@@ -62,4 +62,18 @@ dataSources {
         dbCreate = 'skip'
         url = 'jdbc:h2:mem:${application_name}-people'
     }
+    reporting {
+        driverClassName = 'org.h2.Driver'
+        username = 'sa'
+        password = ''
+        dbCreate = 'skip'
+        url = 'jdbc:h2:mem:${application_name}-reporting'
+    }
+    reporting_replica {
+        driverClassName = 'org.h2.Driver'
+        username = 'sa'
+        password = ''
+        dbCreate = 'skip'
+        url = 'jdbc:h2:mem:${application_name}-reporting-replica'
+    }
 }
\ No newline at end of file
@@ -20,6 +20,8 @@ database {
     // specify any properties from io.ebean.config.DatabaseConfig
 }
 
+shards = ['internal', 'people']
+
 databases {
     internal {
 
@@ -27,6 +29,9 @@ databases {
     people {
 
     }
+    reporting {
+        replicas = ['reporting_replica']
+    }
 }
 
 environments {
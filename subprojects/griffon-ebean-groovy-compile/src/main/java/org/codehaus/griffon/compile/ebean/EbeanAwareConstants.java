@@ -38,13 +38,29 @@ public interface EbeanAwareConstants extends BaseConstants {
     String DATABASE_HANDLER_TYPE = "griffon.plugins.ebean.DatabaseHandler";
     String DATABASE_CALLBACK_TYPE = "griffon.plugins.ebean.DatabaseCallback";
     String RUNTIME_DATABASE_EXCEPTION_TYPE = "griffon.plugins.ebean.exceptions.RuntimeDatabaseException";
+    String TX_OPTIONS_TYPE = "griffon.plugins.ebean.TxOptions";
+    String BULK_IMPORT_OPTIONS_TYPE = "griffon.plugins.ebean.BulkImportOptions";
+    String BULK_IMPORT_RESULT_TYPE = "griffon.plugins.ebean.BulkImportResult";
+    String QUERY_CALLBACK_TYPE = "griffon.plugins.ebean.QueryCallback";
+    String QUERY_STREAM_TYPE = "griffon.plugins.ebean.QueryStream";
+    String QUERY_STREAM_OPTIONS_TYPE = "griffon.plugins.ebean.QueryStreamOptions";
+    String RESULT_CACHE_OPTIONS_TYPE = "griffon.plugins.ebean.ResultCacheOptions";
+    String ITERATOR_TYPE = "java.util.Iterator";
+    String COMPLETABLE_FUTURE_TYPE = "java.util.concurrent.CompletableFuture";
     String DATABASE_HANDLER_PROPERTY = "databaseHandler";
     String DATABASE_HANDLER_FIELD_NAME = "this$" + DATABASE_HANDLER_PROPERTY;
 
     String METHOD_WITH_EBEAN = "withEbean";
+    String METHOD_WITH_EBEAN_READ_ONLY = "withEbeanReadOnly";
+    String METHOD_WITH_EBEAN_TRANSACTION = "withEbeanTransaction";
+    String METHOD_BULK_IMPORT = "bulkImport";
+    String METHOD_STREAM_QUERY = "streamQuery";
+    String METHOD_WITH_EBEAN_CACHED = "withEbeanCached";
+    String METHOD_WITH_EBEAN_ASYNC = "withEbeanAsync";
     String METHOD_CLOSE_EBEAN = "closeEbean";
     String SESSION_FACTORY_NAME = "databaseName";
     String CALLBACK = "callback";
+    String T = "T";
 
     MethodDescriptor[] METHODS = new MethodDescriptor[]{
         method(
@@ -74,6 +90,128 @@ public interface EbeanAwareConstants extends BaseConstants {
                 annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
                 annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
             throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_READ_ONLY,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_READ_ONLY,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_TRANSACTION,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), TX_OPTIONS_TYPE),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_TRANSACTION,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), TX_OPTIONS_TYPE),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(BULK_IMPORT_RESULT_TYPE),
+            typeParams(T),
+            METHOD_BULK_IMPORT,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), ITERATOR_TYPE, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), BULK_IMPORT_OPTIONS_TYPE)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(BULK_IMPORT_RESULT_TYPE),
+            typeParams(T),
+            METHOD_BULK_IMPORT,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), ITERATOR_TYPE, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), BULK_IMPORT_OPTIONS_TYPE)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(QUERY_STREAM_TYPE, T),
+            typeParams(T),
+            METHOD_STREAM_QUERY,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), QUERY_CALLBACK_TYPE, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), QUERY_STREAM_OPTIONS_TYPE))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(QUERY_STREAM_TYPE, T),
+            typeParams(T),
+            METHOD_STREAM_QUERY,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), QUERY_CALLBACK_TYPE, T),
+                annotatedType(annotations(ANNOTATION_NONNULL), QUERY_STREAM_OPTIONS_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_CACHED,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), RESULT_CACHE_OPTIONS_TYPE),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_CACHED,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), RESULT_CACHE_OPTIONS_TYPE),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R)),
+            throwing(type(RUNTIME_DATABASE_EXCEPTION_TYPE))
+        ),
+
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(COMPLETABLE_FUTURE_TYPE, R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_ASYNC,
+            args(annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R))
+        ),
+        annotatedMethod(
+            annotations(ANNOTATION_NONNULL),
+            type(COMPLETABLE_FUTURE_TYPE, R),
+            typeParams(R),
+            METHOD_WITH_EBEAN_ASYNC,
+            args(
+                annotatedType(annotations(ANNOTATION_NONNULL), JAVA_LANG_STRING),
+                annotatedType(annotations(ANNOTATION_NONNULL), DATABASE_CALLBACK_TYPE, R))
         )
     };
 }
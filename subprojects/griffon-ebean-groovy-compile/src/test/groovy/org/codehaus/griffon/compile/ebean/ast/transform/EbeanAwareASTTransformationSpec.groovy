@@ -58,8 +58,17 @@ class EbeanAwareASTTransformationSpec extends Specification {
         import griffon.plugins.ebean.DatabaseCallback
         import griffon.plugins.ebean.exceptions.RuntimeDatabaseException
         import griffon.plugins.ebean.DatabaseHandler
+        import griffon.plugins.ebean.TxOptions
+        import griffon.plugins.ebean.BulkImportOptions
+        import griffon.plugins.ebean.BulkImportResult
+        import griffon.plugins.ebean.QueryCallback
+        import griffon.plugins.ebean.QueryStream
+        import griffon.plugins.ebean.QueryStreamOptions
+        import griffon.plugins.ebean.ResultCacheOptions
         import griffon.annotations.core.Nonnull
-        
+        import java.util.Iterator
+        import java.util.concurrent.CompletableFuture
+
         @griffon.transform.ebean.EbeanAware
         class EbeanHandlerBean implements DatabaseHandler {
             @Override
@@ -71,6 +80,54 @@ class EbeanAwareASTTransformationSpec extends Specification {
                 return null
             }
             @Override
+            public <R> R withEbeanReadOnly(@Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <R> R withEbeanReadOnly(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <R> R withEbeanTransaction(@Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <R> R withEbeanTransaction(@Nonnull String databaseName, @Nonnull TxOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <T> BulkImportResult bulkImport(@Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <T> BulkImportResult bulkImport(@Nonnull String databaseName, @Nonnull Iterator<T> beans, @Nonnull BulkImportOptions options) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <T> QueryStream<T> streamQuery(@Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options) {
+                return null
+            }
+            @Override
+            public <T> QueryStream<T> streamQuery(@Nonnull String databaseName, @Nonnull QueryCallback<T> query, @Nonnull QueryStreamOptions options) {
+                return null
+            }
+            @Override
+            public <R> R withEbeanCached(@Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <R> R withEbeanCached(@Nonnull String databaseName, @Nonnull ResultCacheOptions options, @Nonnull DatabaseCallback<R> callback) throws RuntimeDatabaseException {
+                return null
+            }
+            @Override
+            public <R> CompletableFuture<R> withEbeanAsync(@Nonnull DatabaseCallback<R> callback) {
+                return null
+            }
+            @Override
+            public <R> CompletableFuture<R> withEbeanAsync(@Nonnull String databaseName, @Nonnull DatabaseCallback<R> callback) {
+                return null
+            }
+            @Override
             void closeEbean(){}
             @Override
             void closeEbean(@Nonnull String databaseName){}
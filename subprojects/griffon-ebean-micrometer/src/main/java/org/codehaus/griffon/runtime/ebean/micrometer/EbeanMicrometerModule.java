@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.micrometer;
+
+import griffon.annotations.inject.DependsOn;
+import griffon.core.injection.Module;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
+import org.codehaus.griffon.runtime.core.injection.AbstractModule;
+import org.kordamp.jipsy.annotations.ServiceProviderFor;
+
+import javax.inject.Named;
+
+/**
+ * Binds a recorder that publishes to the {@code MeterRegistry} bound by the application, or to
+ * {@code Metrics.globalRegistry} when there is none.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+@DependsOn("ebean")
+@Named("ebean-micrometer")
+@ServiceProviderFor(Module.class)
+public class EbeanMicrometerModule extends AbstractModule {
+    @Override
+    protected void doConfigure() {
+        // tag::bindings[]
+        bind(DatabaseMetricsRecorder.class)
+            .to(MicrometerDatabaseMetricsRecorder.class)
+            .asSingleton();
+        // end::bindings[]
+    }
+}
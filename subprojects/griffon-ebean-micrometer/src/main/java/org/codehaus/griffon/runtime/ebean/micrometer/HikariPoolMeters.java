@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.micrometer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import griffon.annotations.core.Nonnull;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Publishes connection pool usage. Kept apart so HikariCP is only loaded when pool meters are registered.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+final class HikariPoolMeters {
+    private HikariPoolMeters() {
+        // prevent instantiation
+    }
+
+    static void register(@Nonnull MeterRegistry registry, @Nonnull Tags tags, @Nonnull DataSource dataSource, @Nonnull List<Meter> meters) {
+        HikariPoolMXBean pool;
+        try {
+            if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+                return;
+            }
+            pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        } catch (SQLException e) {
+            return;
+        }
+        if (pool == null) {
+            return;
+        }
+
+        meters.add(Gauge.builder("ebean.pool.active", pool, HikariPoolMXBean::getActiveConnections)
+            .description("Connections in use")
+            .tags(tags)
+            .register(registry));
+        meters.add(Gauge.builder("ebean.pool.idle", pool, HikariPoolMXBean::getIdleConnections)
+            .description("Idle connections")
+            .tags(tags)
+            .register(registry));
+        meters.add(Gauge.builder("ebean.pool.total", pool, HikariPoolMXBean::getTotalConnections)
+            .description("Open connections")
+            .tags(tags)
+            .register(registry));
+        meters.add(Gauge.builder("ebean.pool.pending", pool, HikariPoolMXBean::getThreadsAwaitingConnection)
+            .description("Threads waiting for a connection")
+            .tags(tags)
+            .register(registry));
+    }
+}
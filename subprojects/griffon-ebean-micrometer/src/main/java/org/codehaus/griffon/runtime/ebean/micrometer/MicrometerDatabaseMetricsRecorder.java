@@ -0,0 +1,316 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.micrometer;
+
+import griffon.annotations.core.Nonnull;
+import griffon.annotations.core.Nullable;
+import griffon.core.injection.Injector;
+import griffon.plugins.datasource.DataSourceStorage;
+import griffon.plugins.ebean.DatabaseFactory;
+import griffon.plugins.ebean.DatabaseMetricsRecorder;
+import io.ebean.Database;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.codehaus.griffon.runtime.ebean.DatabaseMetrics;
+import org.codehaus.griffon.runtime.ebean.DatabaseMetricsRegistry;
+import org.codehaus.griffon.runtime.ebean.NamedThreadFactory;
+import org.codehaus.griffon.runtime.ebean.monitor.QueryPlanStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes plugin metrics to a Micrometer {@code MeterRegistry}. Every meter is tagged with the database name.
+ * <p>
+ * The registry bound by the application is used when there is one, {@code Metrics.globalRegistry} otherwise. Note that
+ * the global registry publishes nothing until registries are added to it.
+ *
+ * @author Andres Almiray
+ * @since 3.0.0
+ */
+public class MicrometerDatabaseMetricsRecorder implements DatabaseMetricsRecorder {
+    private static final Logger LOG = LoggerFactory.getLogger(MicrometerDatabaseMetricsRecorder.class);
+    private static final String TAG_DATABASE = "database";
+    private static final String TAG_OUTCOME = "outcome";
+    private static final String TAG_QUERY = "query";
+    private static final long QUERY_PLAN_REFRESH_SECONDS = 30;
+    private static final String KEY_DATASOURCE = "datasource";
+
+    private final Injector<?> injector;
+    private final DatabaseMetricsRegistry databaseMetricsRegistry;
+    private final DatabaseFactory databaseFactory;
+    private final DataSourceStorage dataSourceStorage;
+    private volatile MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, CallbackTimers> callbackTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DatabaseMeters> databaseMeters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public MicrometerDatabaseMetricsRecorder(@Nonnull Injector<?> injector,
+                                             @Nonnull DatabaseMetricsRegistry databaseMetricsRegistry,
+                                             @Nonnull DatabaseFactory databaseFactory,
+                                             @Nonnull DataSourceStorage dataSourceStorage) {
+        this.injector = requireNonNull(injector, "Argument 'injector' must not be null");
+        this.databaseMetricsRegistry = requireNonNull(databaseMetricsRegistry, "Argument 'databaseMetricsRegistry' must not be null");
+        this.databaseFactory = requireNonNull(databaseFactory, "Argument 'databaseFactory' must not be null");
+        this.dataSourceStorage = requireNonNull(dataSourceStorage, "Argument 'dataSourceStorage' must not be null");
+    }
+
+    /**
+     * Returns the registry meters are published to, looked up on first use so that the application may bind its own.
+     */
+    @Nonnull
+    public MeterRegistry getMeterRegistry() {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            Collection<MeterRegistry> registries = injector.getInstances(MeterRegistry.class);
+            registry = registries.isEmpty() ? Metrics.globalRegistry : registries.iterator().next();
+            meterRegistry = registry;
+        }
+        return registry;
+    }
+
+    @Override
+    public void callbackExecuted(@Nonnull String databaseName, long durationNanos, boolean failed) {
+        CallbackTimers timers = callbackTimers.get(databaseName);
+        if (timers == null) {
+            timers = new CallbackTimers(databaseName);
+            CallbackTimers existing = callbackTimers.putIfAbsent(databaseName, timers);
+            if (existing != null) {
+                timers = existing;
+            }
+        }
+        (failed ? timers.failure : timers.success).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void databaseCreated(@Nonnull String databaseName, @Nonnull Database database, long durationNanos) {
+        Timer.builder("ebean.database.create")
+            .description("Time spent creating a database")
+            .tags(Tags.of(TAG_DATABASE, databaseName))
+            .register(getMeterRegistry())
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        DatabaseMeters meters = new DatabaseMeters(databaseName, database);
+        DatabaseMeters previous = databaseMeters.put(databaseName, meters);
+        if (previous != null) {
+            previous.remove();
+        }
+        meters.register();
+        startQueryPlanRefresh();
+    }
+
+    @Override
+    public void databaseWarmedUp(@Nonnull String databaseName, @Nonnull Database database, long durationNanos) {
+        Timer.builder("ebean.database.warmup")
+            .description("Time spent warming up a database")
+            .tags(Tags.of(TAG_DATABASE, databaseName))
+            .register(getMeterRegistry())
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void writeBehindFlushed(@Nonnull String databaseName, int beans, long latencyNanos, boolean failed) {
+        Tags tags = Tags.of(TAG_DATABASE, databaseName, TAG_OUTCOME, failed ? "error" : "success");
+        Timer.builder("ebean.writebehind.flush")
+            .description("Time beans waited in the write-behind queue until their batch was written")
+            .tags(tags)
+            .register(getMeterRegistry())
+            .record(latencyNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("ebean.writebehind.beans")
+            .description("Beans written by the write-behind queue")
+            .tags(tags)
+            .register(getMeterRegistry())
+            .increment(beans);
+    }
+
+    @Override
+    public void databaseDestroyed(@Nonnull String databaseName, @Nonnull Database database, long durationNanos) {
+        Timer.builder("ebean.database.destroy")
+            .description("Time spent destroying a database")
+            .tags(Tags.of(TAG_DATABASE, databaseName))
+            .register(getMeterRegistry())
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        DatabaseMeters meters = databaseMeters.remove(databaseName);
+        if (meters != null) {
+            meters.remove();
+        }
+        if (databaseMeters.isEmpty()) {
+            stopQueryPlanRefresh();
+        }
+    }
+
+    private synchronized void startQueryPlanRefresh() {
+        if (scheduler != null) {
+            return;
+        }
+        // query plans show up over time, new ones get their own meter on every refresh
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ebean-micrometer"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (DatabaseMeters meters : databaseMeters.values()) {
+                    try {
+                        meters.refreshQueryPlans();
+                    } catch (RuntimeException e) {
+                        LOG.debug("Could not collect query plans of database '{}'", meters.databaseName, e);
+                    }
+                }
+            }
+        }, QUERY_PLAN_REFRESH_SECONDS, QUERY_PLAN_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopQueryPlanRefresh() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private class CallbackTimers {
+        private final Timer success;
+        private final Timer failure;
+
+        private CallbackTimers(@Nonnull String databaseName) {
+            success = callbackTimer(databaseName, "success");
+            failure = callbackTimer(databaseName, "error");
+        }
+
+        @Nonnull
+        private Timer callbackTimer(@Nonnull String databaseName, @Nonnull String outcome) {
+            return Timer.builder("ebean.callback")
+                .description("Time spent executing withEbean callbacks")
+                .tags(Tags.of(TAG_DATABASE, databaseName, TAG_OUTCOME, outcome))
+                .register(getMeterRegistry());
+        }
+    }
+
+    private class DatabaseMeters {
+        private final String databaseName;
+        private final Database database;
+        private final DatabaseMetrics metrics;
+        private final Tags tags;
+        private final List<Meter> meters = new CopyOnWriteArrayList<>();
+        private final Set<String> queryPlans = ConcurrentHashMap.newKeySet();
+
+        private DatabaseMeters(@Nonnull String databaseName, @Nonnull Database database) {
+            this.databaseName = databaseName;
+            this.database = database;
+            this.metrics = databaseMetricsRegistry.getMetrics(databaseName);
+            this.tags = Tags.of(TAG_DATABASE, databaseName);
+        }
+
+        private void register() {
+            meters.add(Gauge.builder("ebean.callback.active", metrics, DatabaseMetrics::getInFlight)
+                .description("Callbacks currently running")
+                .tags(tags)
+                .register(getMeterRegistry()));
+            meters.add(Gauge.builder("ebean.writebehind.depth", metrics, DatabaseMetrics::getWriteBehindDepth)
+                .description("Beans waiting in the write-behind queue")
+                .tags(tags)
+                .register(getMeterRegistry()));
+            meters.add(FunctionCounter.builder("ebean.transactions", this, DatabaseMeters::collectTransactionCount)
+                .description("Transactions executed by Ebean")
+                .tags(tags)
+                .register(getMeterRegistry()));
+
+            DataSource dataSource = resolveDataSource(databaseName);
+            if (dataSource != null) {
+                try {
+                    HikariPoolMeters.register(getMeterRegistry(), tags, dataSource, meters);
+                } catch (NoClassDefFoundError e) {
+                    LOG.debug("HikariCP is not available, pool usage of database '{}' will not be published", databaseName);
+                }
+            }
+        }
+
+        private double collectTransactionCount() {
+            metrics.collectEbeanMetrics(database);
+            return metrics.getTransactionCount();
+        }
+
+        private void refreshQueryPlans() {
+            metrics.collectEbeanMetrics(database);
+            for (QueryPlanStatistics statistics : metrics.getQueryPlanStatistics()) {
+                if (queryPlans.add(statistics.getName())) {
+                    final String name = statistics.getName();
+                    meters.add(FunctionTimer.builder("ebean.query", metrics,
+                        m -> queryPlanCount(m, name),
+                        m -> queryPlanTotalMicros(m, name),
+                        TimeUnit.MICROSECONDS)
+                        .description("Queries executed by Ebean, per query plan")
+                        .tags(tags.and(TAG_QUERY, name))
+                        .register(getMeterRegistry()));
+                }
+            }
+        }
+
+        private void remove() {
+            for (Meter meter : meters) {
+                getMeterRegistry().remove(meter);
+            }
+            meters.clear();
+        }
+    }
+
+    /**
+     * Finds the primary data source of a database, which may be shared with other databases or named differently than
+     * the database itself.
+     */
+    @Nullable
+    DataSource resolveDataSource(@Nonnull String databaseName) {
+        Map<String, Object> config = databaseFactory.getConfigurationFor(databaseName);
+        Object value = config.get(KEY_DATASOURCE);
+        if (value instanceof DataSource) {
+            return (DataSource) value;
+        }
+        return dataSourceStorage.get(value != null ? String.valueOf(value).trim() : databaseName);
+    }
+
+    private static long queryPlanCount(@Nonnull DatabaseMetrics metrics, @Nonnull String name) {
+        QueryPlanStatistics statistics = metrics.getQueryPlanStatistics(name);
+        return statistics != null ? statistics.getCount() : 0L;
+    }
+
+    private static double queryPlanTotalMicros(@Nonnull DatabaseMetrics metrics, @Nonnull String name) {
+        QueryPlanStatistics statistics = metrics.getQueryPlanStatistics(name);
+        return statistics != null ? statistics.getTotalMicros() : 0D;
+    }
+}
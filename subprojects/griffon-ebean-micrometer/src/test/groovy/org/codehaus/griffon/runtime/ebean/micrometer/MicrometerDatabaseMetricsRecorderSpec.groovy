@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2014-2021 The author and/or original authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.griffon.runtime.ebean.micrometer
+
+import griffon.core.injection.Injector
+import griffon.plugins.datasource.DataSourceStorage
+import griffon.plugins.ebean.DatabaseFactory
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.codehaus.griffon.runtime.ebean.DatabaseMetricsRegistry
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.util.concurrent.TimeUnit
+
+class MicrometerDatabaseMetricsRecorderSpec extends Specification {
+    private final DataSource primary = Stub(DataSource)
+    private final DataSource shared = Stub(DataSource)
+    private final DataSource defined = Stub(DataSource)
+
+    private MicrometerDatabaseMetricsRecorder recorder(List<MeterRegistry> registries, Map<String, Object> config = [:]) {
+        Injector injector = Stub(Injector) {
+            getInstances(MeterRegistry) >> registries
+        }
+        DatabaseFactory databaseFactory = Stub(DatabaseFactory) {
+            getConfigurationFor('test') >> config
+        }
+        DataSourceStorage dataSourceStorage = Stub(DataSourceStorage) {
+            get('test') >> primary
+            get('shared') >> shared
+        }
+        new MicrometerDatabaseMetricsRecorder(injector, new DatabaseMetricsRegistry(), databaseFactory, dataSourceStorage)
+    }
+
+    void 'Meters are published to the registry bound by the application'() {
+        given:
+        MeterRegistry registry = new SimpleMeterRegistry()
+        MicrometerDatabaseMetricsRecorder recorder = recorder([registry])
+
+        when:
+        recorder.callbackExecuted('test', TimeUnit.MILLISECONDS.toNanos(5), false)
+        recorder.callbackExecuted('test', TimeUnit.MILLISECONDS.toNanos(7), true)
+
+        then:
+        recorder.meterRegistry.is(registry)
+        registry.get('ebean.callback').tags('database', 'test', 'outcome', 'success').timer().count() == 1
+        registry.get('ebean.callback').tags('database', 'test', 'outcome', 'error').timer().count() == 1
+    }
+
+    void 'Meters are published to the global registry when the application binds none'() {
+        expect:
+        recorder([]).meterRegistry.is(Metrics.globalRegistry)
+    }
+
+    void 'Pool meters look up the data source named after the database by default'() {
+        expect:
+        recorder([]).resolveDataSource('test').is(primary)
+    }
+
+    void 'Pool meters look up a shared data source by its configured name'() {
+        expect:
+        recorder([], [datasource: ' shared ']).resolveDataSource('test').is(shared)
+    }
+
+    void 'Pool meters use a data source given in the database definition'() {
+        expect:
+        recorder([], [datasource: defined]).resolveDataSource('test').is(defined)
+    }
+}